@@ -1,6 +1,19 @@
 package nu.takacs.partifles;
 
+import nu.takacs.partifles.capture.FrameCapture;
+import nu.takacs.partifles.capture.FrameEncoder;
+import nu.takacs.partifles.capture.PngSequenceEncoder;
+import nu.takacs.partifles.capture.RawRgbEncoder;
+import nu.takacs.partifles.capture.Y4mEncoder;
+import nu.takacs.partifles.metrics.CsvMetricsSink;
+import nu.takacs.partifles.metrics.FrameMetrics;
+import nu.takacs.partifles.metrics.JmxMetricsSink;
+import nu.takacs.partifles.metrics.Slf4jMetricsSink;
 import nu.takacs.partifles.window.GlfwWindow;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.nio.file.Path;
 
 /**
  * Hello world!
@@ -8,12 +21,94 @@ import nu.takacs.partifles.window.GlfwWindow;
  */
 public class App 
 {
+    // Frames that can wait for the capture writer
+    private static final int CAPTURE_RING_SIZE = 8;
 
     public static void main( String[] args )
     {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            runHeadless(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+            return;
+        }
+
         final var listener = new ParticlesWindowListener();
         final var window = new GlfwWindow(listener, 1600, 1200, 800, 600, "Rayworld");
+        window.setMetrics(createMetrics(listener.getParticleEngine()));
+        window.setCapture(createCapture(800, 600, window.getPixelFormat(), FrameCapture.Backpressure.DROP));
         window.init();
         window.start();
     }
+
+    // Renders offscreen on a 60 Hz virtual clock and reports the frame rate
+    private static void runHeadless(final int frames) {
+        final var engine = new ParticleEngine(1000);
+        final var listener = new ParticlesWindowListener(engine, 0);
+        final var window = new OffscreenWindow(listener, 800, 600);
+        window.setFixedFrameInterval(1000000000L / 60);
+        window.setMetrics(createMetrics(engine));
+        window.setCapture(createCapture(800, 600, window.getPixelFormat(), FrameCapture.Backpressure.BLOCK));
+        window.init();
+        window.run(frames);
+        window.terminate();
+    }
+
+    /**
+     * Frame metrics for -Dpartifles.metrics, a comma separated list of sinks:
+     * log, jmx and csv:<file>. Null, so no timing at all, when not set.
+     */
+    private static FrameMetrics createMetrics(final ParticleEngine engine) {
+        final String sinks = System.getProperty("partifles.metrics");
+        if (sinks == null || sinks.isBlank()) {
+            return null;
+        }
+
+        final var metrics = new FrameMetrics(1000000000L);
+        metrics.addGauge("particles", engine::getLiveCount);
+        metrics.addCounter("emitted", engine::getEmittedCount);
+        metrics.addCounter("expired", engine::getExpiredCount);
+
+        for (final String sink : sinks.split(",")) {
+            final String trimmed = sink.trim();
+            if (trimmed.equals("log")) {
+                metrics.addSink(new Slf4jMetricsSink());
+            } else if (trimmed.equals("jmx")) {
+                metrics.addSink(new JmxMetricsSink());
+            } else if (trimmed.startsWith("csv:")) {
+                metrics.addSink(new CsvMetricsSink(Path.of(trimmed.substring("csv:".length()))));
+            } else {
+                throw new IllegalArgumentException("Unknown metrics sink " + trimmed);
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Frame capture for -Dpartifles.capture, a .y4m or .rgb file or else a
+     * directory of PNGs. -Dpartifles.capture.backpressure=DROP|BLOCK overrides
+     * what happens when the writer falls behind. Null when not set.
+     */
+    private static FrameCapture createCapture(final int width, final int height,
+                                              final PixelFormat pixelFormat,
+                                              final FrameCapture.Backpressure defaultBackpressure) {
+        final String target = System.getProperty("partifles.capture");
+        if (target == null || target.isBlank()) {
+            return null;
+        }
+
+        final Path path = Path.of(target);
+        final FrameEncoder encoder;
+        if (target.endsWith(".y4m")) {
+            encoder = new Y4mEncoder(path, 60);
+        } else if (target.endsWith(".rgb")) {
+            encoder = new RawRgbEncoder(path);
+        } else {
+            encoder = new PngSequenceEncoder(path);
+        }
+
+        final FrameCapture.Backpressure backpressure = FrameCapture.Backpressure.valueOf(
+                System.getProperty("partifles.capture.backpressure", defaultBackpressure.name()));
+
+        return new FrameCapture(encoder, width, height, pixelFormat, CAPTURE_RING_SIZE, backpressure);
+    }
 }
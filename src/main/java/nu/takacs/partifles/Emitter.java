@@ -0,0 +1,291 @@
+package nu.takacs.partifles;
+
+import nu.takacs.partifles.random.RandomSource;
+import nu.takacs.partifles.window.SpriteAtlas;
+
+import java.util.Arrays;
+
+/**
+ * A source of particles in a ParticleEngine: where they appear, how fast, how
+ * they move and look, and how many of the shared pool it may use. The
+ * defaults are the engine's original fountain.
+ * <p>
+ * Settings can be changed at any time from the thread that updates the
+ * engine. An emitter belongs to at most one engine at a time.
+ */
+public class Emitter {
+    public enum Shape {
+        // Every particle starts at the emitter position
+        POINT,
+        // Uniform in a rectangle of half extents (width, height) around the position
+        BOX,
+        // Uniform in an ellipse of radii (width, height) around the position
+        ELLIPSE
+    }
+
+    public enum Distribution {
+        // Base velocity plus an offset in [-spread, spread]
+        UNIFORM,
+        // Normal around the base velocity with spread as the standard deviation
+        GAUSSIAN
+    }
+
+    /**
+     * What happens to particles an emitter owes but can not place, because it
+     * is at its budget or the shared pool is full.
+     */
+    public enum OverflowPolicy {
+        // Skipped for good, the emitter just runs thinner while short of room
+        DROP,
+        // Owed until room frees up, at most one second's worth
+        DEFER
+    }
+
+    private double x = 0;
+    private double y = 0;
+    private Shape shape = Shape.BOX;
+    private double shapeWidth = 100;
+    private double shapeHeight = 5;
+
+    private double rate = 200;
+    private double minTtl = 5.0;
+    private double maxTtl = 5.0;
+
+    // Velocity is base plus a random offset per axis, see Distribution
+    private double velocityX = 0;
+    private double velocityY = 30;
+    private double spreadX = 20;
+    private double spreadY = 20;
+    private Distribution velocityDistribution = Distribution.UNIFORM;
+
+    private int radius = 50;
+    private int startColor = 0x963C00;
+    private int endColor = 0x963C00;
+
+    // Null draws gradient circles
+    private SpriteAtlas sprite = null;
+    private double spriteFramesPerSecond = 0;
+
+    private int budget = Integer.MAX_VALUE;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    private long seed = System.nanoTime();
+
+    // Engine bookkeeping. Slot is -1 while not in an engine.
+    int slot = -1;
+    boolean removed = false;
+    int liveCount = 0;
+    double remainder = 0;
+    long emittedCount = 0;
+
+    public void setPosition(final double x, final double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public void setShape(final Shape shape, final double width, final double height) {
+        this.shape = shape;
+        this.shapeWidth = width;
+        this.shapeHeight = height;
+    }
+
+    // Particles per second
+    public void setRate(final double rate) {
+        this.rate = rate;
+    }
+
+    // Every particle lives a uniformly random time in [minTtl, maxTtl]
+    public void setTtl(final double minTtl, final double maxTtl) {
+        if (minTtl <= 0 || maxTtl < minTtl) {
+            throw new IllegalArgumentException("Need 0 < minTtl <= maxTtl");
+        }
+
+        this.minTtl = minTtl;
+        this.maxTtl = maxTtl;
+    }
+
+    public void setVelocity(final double velocityX, final double velocityY,
+                            final double spreadX, final double spreadY) {
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        this.spreadX = spreadX;
+        this.spreadY = spreadY;
+    }
+
+    public void setVelocityDistribution(final Distribution velocityDistribution) {
+        this.velocityDistribution = velocityDistribution;
+    }
+
+    public void setRadius(final int radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Colour ramp, 0xRRGGBB at birth blending linearly to endColor at death.
+     */
+    public void setColors(final int startColor, final int endColor) {
+        this.startColor = startColor;
+        this.endColor = endColor;
+    }
+
+    /**
+     * Draws particles as frames of sprite, as wide as their diameter and
+     * tinted by the colour ramp. A positive framesPerSecond loops the frames
+     * at that rate from birth, zero plays them once over the lifetime.
+     * Null goes back to gradient circles.
+     */
+    public void setSprite(final SpriteAtlas sprite, final double framesPerSecond) {
+        this.sprite = sprite;
+        this.spriteFramesPerSecond = framesPerSecond;
+    }
+
+    // Most particles this emitter may have alive at once
+    public void setBudget(final int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget can not be negative");
+        }
+
+        this.budget = budget;
+    }
+
+    public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void setSeed(final long seed) {
+        this.seed = seed;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public SpriteAtlas getSprite() {
+        return sprite;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    // Live particles as of the last engine update
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    public boolean isAttached() {
+        return slot >= 0;
+    }
+
+    /**
+     * Fills in the particles [from, to), whose age the engine has already set
+     * to the time since their birth. Every property is drawn for the whole
+     * range at once, straight into the particle arrays.
+     */
+    void spawn(final ParticleStore particles, final int from, final int to, final RandomSource random) {
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+        final double[] vx = particles.vx;
+        final double[] vy = particles.vy;
+        final double[] age = particles.age;
+
+        fillVelocity(vx, from, to, velocityX, spreadX, random);
+        fillVelocity(vy, from, to, velocityY, spreadY, random);
+
+        // Offsets from the emitter position go in x and y for now
+        switch (shape) {
+            case BOX:
+                random.fillUniform(x, from, to, -shapeWidth, shapeWidth);
+                random.fillUniform(y, from, to, -shapeHeight, shapeHeight);
+                break;
+            case ELLIPSE:
+                // Angle and squared distance fraction, the square root keeps the density uniform
+                random.fillUniform(x, from, to, 0, 2.0 * Math.PI);
+                random.fillUniform(y, from, to, 0, 1);
+                for (int i = from; i < to; ++i) {
+                    final double distance = Math.sqrt(y[i]);
+                    final double angle = x[i];
+                    x[i] = Math.cos(angle) * distance * shapeWidth;
+                    y[i] = Math.sin(angle) * distance * shapeHeight;
+                }
+                break;
+            default:
+                Arrays.fill(x, from, to, 0);
+                Arrays.fill(y, from, to, 0);
+                break;
+        }
+
+        for (int i = from; i < to; ++i) {
+            x[i] += this.x + vx[i] * age[i];
+            y[i] += this.y + vy[i] * age[i];
+        }
+
+        if (minTtl == maxTtl) {
+            Arrays.fill(particles.ttl, from, to, minTtl);
+        } else {
+            random.fillUniform(particles.ttl, from, to, minTtl, maxTtl);
+        }
+
+        Arrays.fill(particles.emitter, from, to, slot);
+    }
+
+    private void fillVelocity(final double[] target, final int from, final int to,
+                              final double base, final double spread, final RandomSource random) {
+        if (velocityDistribution == Distribution.GAUSSIAN) {
+            random.fillGaussian(target, from, to, base, spread);
+        } else {
+            random.fillUniform(target, from, to, base - spread, base + spread);
+        }
+    }
+
+    /**
+     * Sprite frame of a particle age seconds old and a fraction life through its lifetime.
+     */
+    public int frameAt(final double age, final double life) {
+        if (sprite == null) {
+            return 0;
+        }
+
+        final int frameCount = sprite.getFrameCount();
+        if (spriteFramesPerSecond > 0) {
+            return (int) (age * spriteFramesPerSecond) % frameCount;
+        }
+
+        return Math.max(0, Math.min(frameCount - 1, (int) (life * frameCount)));
+    }
+
+    /**
+     * Colour ramp at a fraction of the lifetime, 0 at birth and 1 at death.
+     */
+    public int colorAt(final double life) {
+        if (startColor == endColor) {
+            return startColor;
+        }
+
+        final int t = (int) (Math.max(0.0, Math.min(1.0, life)) * 256);
+        final int rb = ((startColor & 0xFF00FF) * (256 - t) + (endColor & 0xFF00FF) * t) >>> 8;
+        final int g = ((startColor & 0x00FF00) * (256 - t) + (endColor & 0x00FF00) * t) >>> 8;
+
+        return (rb & 0xFF00FF) | (g & 0x00FF00);
+    }
+}
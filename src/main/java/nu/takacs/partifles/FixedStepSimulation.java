@@ -0,0 +1,87 @@
+package nu.takacs.partifles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Advances a ParticleEngine at a fixed rate on its own thread and publishes
+ * a snapshot after every tick, so the simulation no longer depends on how
+ * often the window swaps buffers.
+ */
+public class FixedStepSimulation {
+    private static final Logger LOG = LoggerFactory.getLogger(FixedStepSimulation.class);
+
+    // Give up catching up when falling further behind than this many ticks
+    private static final int MAX_TICKS_BEHIND = 5;
+
+    private final ParticleEngine engine;
+    private final TripleBuffer<ParticleSnapshot> snapshots;
+    private final double stepSeconds;
+    private final long stepNanos;
+    private final Thread thread;
+
+    private volatile boolean running = false;
+
+    public FixedStepSimulation(final ParticleEngine engine, final double ticksPerSecond) {
+        this.engine = engine;
+        this.stepSeconds = 1.0 / ticksPerSecond;
+        this.stepNanos = (long) (1000000000 / ticksPerSecond);
+
+        final int capacity = engine.getParticles().getCapacity();
+        this.snapshots = new TripleBuffer<>(() -> new ParticleSnapshot(capacity));
+
+        thread = new Thread(this::run, "particle-simulation");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Render thread side, the state after the most recent tick.
+     */
+    public ParticleSnapshot getLatestSnapshot() {
+        return snapshots.getFront();
+    }
+
+    public double getStepSeconds() {
+        return stepSeconds;
+    }
+
+    private void run() {
+        long nextTickNanos = System.nanoTime();
+
+        while (running) {
+            engine.update(stepSeconds);
+
+            final ParticleSnapshot snapshot = snapshots.getBack();
+            engine.snapshot(snapshot);
+            snapshot.timestampNanos = System.nanoTime();
+            snapshots.publish();
+
+            nextTickNanos += stepNanos;
+            final long waitNanos = nextTickNanos - System.nanoTime();
+
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            } else if (-waitNanos > MAX_TICKS_BEHIND * stepNanos) {
+                LOG.warn("Simulation fell {} ms behind, skipping ahead", -waitNanos / 1000000);
+                nextTickNanos = System.nanoTime();
+            }
+        }
+    }
+}
@@ -1,100 +1,610 @@
 package nu.takacs.partifles;
 
+import nu.takacs.partifles.affector.Affector;
 import nu.takacs.partifles.math.Vec2;
+import nu.takacs.partifles.random.RandomSource;
+import nu.takacs.partifles.random.SplitMix64;
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.ParticleBatch;
+import nu.takacs.partifles.window.SpriteAtlas;
 import nu.takacs.partifles.window.WindowContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.LongFunction;
+
 
 public class ParticleEngine {
     private static final Logger LOG = LoggerFactory.getLogger(ParticlesWindowListener.class);
 
-    private static final long TTL_MS = 5000;
-    private static final long TTL_NS = TTL_MS * 1000000;
+    // Size of the emitter slot table, fixed so adding emitters never allocates
+    static final int MAX_EMITTERS = 1024;
+
+    // Work is split into chunks of a fixed size no matter how many threads
+    // there are, which keeps the result identical for every parallelism level.
+    static final int CHUNK_SIZE = 1 << 14;
+
     private final int maxParticles;
-    private Vec2 position;
-    private Particle[] particles;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final ParticleStore particles;
 
-    private long lastEmissionCycle = 0;
+    // What draw hands to the window, refilled every frame
+    private final ParticleBatch batch;
 
-    private int frequency = 200;
+    // Number of live particles left in each chunk after an update
+    private final int[] chunkLiveCounts;
 
-    private static class Particle {
-        boolean live = false;
-        Vec2 position;
-        Vec2 velocity;
-        long expiryTimestampNs;
-    }
+    // One random stream per emission chunk, reseeded from the emitter seed and
+    // the chunk's first particle serial. Chunks rather than threads own the
+    // streams so the numbers don't depend on which thread runs which chunk.
+    private final RandomSource[] chunkRandoms;
+
+    // Guards the emitter slots. Update, draw and snapshot hold it throughout,
+    // so emitters can be added and removed from any thread.
+    private final Object emitterLock = new Object();
+
+    // Emitters by slot, particles refer to their emitter by slot index.
+    // Slots [0, slotCount) have been handed out, null ones are on the free stack.
+    private final Emitter[] slots = new Emitter[MAX_EMITTERS];
+    private int slotCount = 0;
+    private final int[] freeSlots = new int[MAX_EMITTERS];
+    private int freeSlotCount = 0;
+
+    // Particles each slot wants to and gets to emit this update
+    private final int[] emitWanted = new int[MAX_EMITTERS];
+    private final double[] emitOwed = new double[MAX_EMITTERS];
+
+    // The original fountain, set up by init and driven by the single emitter setters
+    private final Emitter defaultEmitter = new Emitter();
+
+    private BlendMode blendMode = BlendMode.ALPHA_OVER;
+
+    // Applied in order to every particle before it moves. Replaced rather than
+    // modified, so the simulation thread always sees a consistent pipeline.
+    private volatile Affector[] affectors = new Affector[0];
+
+    // Neighbour index over the live particles, rebuilt after every update when set
+    private SpatialHashGrid neighborGrid = null;
+
+    // Totals since the engine was made, readable from any thread for metrics
+    private volatile long emittedCount = 0;
+    private volatile long expiredCount = 0;
+    private volatile int liveCount = 0;
 
     public ParticleEngine(int maxParticles) {
+        this(maxParticles, 1);
+    }
+
+    public ParticleEngine(final int maxParticles, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
         this.maxParticles = maxParticles;
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+
+        this.particles = new ParticleStore(maxParticles);
+        this.batch = new ParticleBatch(maxParticles);
+        this.chunkLiveCounts = new int[chunkCount(maxParticles)];
+        this.chunkRandoms = new RandomSource[chunkLiveCounts.length];
+        setRandomSource(SplitMix64::new);
 
-        this.particles = new Particle[maxParticles];
+        attach(defaultEmitter);
     }
 
     public void setPosition(final Vec2 position) {
-        this.position = position;
+        defaultEmitter.setPosition(position.x, position.y);
     }
 
-    public void init(final WindowContext windowContext) {
-        position = new Vec2(windowContext.getViewPortWidth()/2.0,
-                windowContext.getViewPortHeight()/4.0);
+    public void setEmissionRate(final double emissionRate) {
+        defaultEmitter.setRate(emissionRate);
+    }
+
+    public void setSeed(final long seed) {
+        defaultEmitter.setSeed(seed);
+    }
+
+    /**
+     * The emitter every engine starts out with, the one setPosition,
+     * setEmissionRate and setSeed act on. It can be removed like any other.
+     */
+    public Emitter getDefaultEmitter() {
+        return defaultEmitter;
+    }
+
+    /**
+     * Starts emitting from emitter with the next update. Safe to call from
+     * any thread, it waits for an update in progress to finish.
+     */
+    public void addEmitter(final Emitter emitter) {
+        synchronized (emitterLock) {
+            attach(emitter);
+        }
+    }
+
+    private void attach(final Emitter emitter) {
+        if (emitter.removed && slots[emitter.slot] == emitter) {
+            // Still draining in this engine, it just carries on
+            emitter.removed = false;
+            return;
+        }
+        if (emitter.isAttached()) {
+            throw new IllegalStateException("Emitter is already in an engine");
+        }
+
+        final int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else if (slotCount < MAX_EMITTERS) {
+            slot = slotCount++;
+        } else {
+            throw new IllegalStateException("No more than " + MAX_EMITTERS + " emitters");
+        }
+
+        emitter.slot = slot;
+        emitter.removed = false;
+        emitter.liveCount = 0;
+        emitter.remainder = 0;
+        slots[slot] = emitter;
+    }
+
+    /**
+     * Stops emitter from emitting. Its particles live out their lifetime, and
+     * its slot is reused once the last of them is gone. Safe to call from any
+     * thread, like addEmitter.
+     */
+    public void removeEmitter(final Emitter emitter) {
+        synchronized (emitterLock) {
+            if (emitter.slot < 0 || slots[emitter.slot] != emitter) {
+                return;
+            }
+
+            emitter.removed = true;
+            releaseIfDrained(emitter);
+        }
+    }
+
+    private void releaseIfDrained(final Emitter emitter) {
+        if (emitter.liveCount > 0) {
+            return;
+        }
+
+        slots[emitter.slot] = null;
+        freeSlots[freeSlotCount++] = emitter.slot;
+        emitter.slot = -1;
+        emitter.removed = false;
+    }
+
+    // Number of emitters in the engine, including removed ones still draining
+    public int getEmitterCount() {
+        synchronized (emitterLock) {
+            return slotCount - freeSlotCount;
+        }
+    }
 
-        for (int i = 0; i < maxParticles; ++i) {
-            particles[i] = new Particle();
+    /**
+     * Replaces the generator emission draws from, called with a seed for
+     * every stream. From the thread that updates the engine.
+     */
+    public void setRandomSource(final LongFunction<RandomSource> factory) {
+        for (int chunk = 0; chunk < chunkRandoms.length; ++chunk) {
+            chunkRandoms[chunk] = factory.apply(chunk);
         }
     }
+
+    public void setBlendMode(final BlendMode blendMode) {
+        this.blendMode = blendMode;
+    }
+
+    /**
+     * Appends an affector to the end of the pipeline.
+     */
+    public void addAffector(final Affector affector) {
+        synchronized (this) {
+            final Affector[] grown = Arrays.copyOf(affectors, affectors.length + 1);
+            grown[affectors.length] = affector;
+            affectors = grown;
+        }
+    }
+
+    public void removeAffector(final Affector affector) {
+        synchronized (this) {
+            affectors = Arrays.stream(affectors)
+                    .filter(a -> a != affector)
+                    .toArray(Affector[]::new);
+        }
+    }
+
+    /**
+     * Keeps grid up to date with the particle positions after every update.
+     * Null stops maintaining one.
+     */
+    public void setNeighborGrid(final SpatialHashGrid neighborGrid) {
+        this.neighborGrid = neighborGrid;
+    }
+
+    public SpatialHashGrid getNeighborGrid() {
+        return neighborGrid;
+    }
+
+    // Live particles after the last update, unlike getParticles().size() safe to read from other threads
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    // Particles emitted over the engine's lifetime
+    public long getEmittedCount() {
+        return emittedCount;
+    }
+
+    // Particles that reached the end of their lifetime
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Shuts down the update threads of an engine with a parallelism above
+     * one. The engine must not be updated afterwards.
+     */
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // Puts the default emitter at the bottom middle of the viewport
+    public void init(final WindowContext windowContext) {
+        defaultEmitter.setPosition(windowContext.getViewPortWidth() / 2.0, 0);
+    }
+
+    public ParticleStore getParticles() {
+        return particles;
+    }
+
     public void render(final WindowContext windowContext, final double deltaSeconds) {
-        final long currentNanos = System.nanoTime();
-
-        // Handle emission of new particles
-        // Only do this with a certain frequency
-        // Should we do this on every render?
-        if(currentNanos - lastEmissionCycle > (1000000000/frequency)) {
-            for (int i = 0; i < maxParticles; ++i) {
-                final Particle particle = particles[i];
-
-                if(!particle.live) {
-                    particle.position = new Vec2(
-                            (Math.random() - 0.5) * 200,
-                            (Math.random() - 0.5) * 10);
-
-                    particle.velocity = new Vec2(
-                            (Math.random() - 0.5) * 2.0 * 20.0,
-                            10 + Math.random() * 2.0 * 20.0);
-
-                    particle.expiryTimestampNs = currentNanos + TTL_NS;
-                    particle.live = true;
-                    break;
-                }
+        update(deltaSeconds);
+        draw(windowContext);
+    }
+
+    public void update(final double deltaSeconds) {
+        synchronized (emitterLock) {
+            updateParticles(deltaSeconds);
+        }
+    }
+
+    private void updateParticles(final double deltaSeconds) {
+        final Affector[] affectors = this.affectors;
+        for (final Affector affector : affectors) {
+            affector.prepare(deltaSeconds);
+        }
+
+        // Run the affectors, then age and move live particles. Each chunk
+        // compacts its own range in place.
+        final int size = particles.size();
+        final int chunks = chunkCount(size);
+
+        forEachChunk(chunks, chunk -> {
+            final int start = chunk * CHUNK_SIZE;
+            final int end = Math.min(size, start + CHUNK_SIZE);
+
+            for (final Affector affector : affectors) {
+                affector.apply(particles, start, end, deltaSeconds);
+            }
+
+            chunkLiveCounts[chunk] = updateRange(start, end, deltaSeconds);
+        });
+
+        // Close the gaps between the compacted chunks
+        int live = 0;
+        for (int chunk = 0; chunk < chunks; ++chunk) {
+            final int start = chunk * CHUNK_SIZE;
+
+            if (live != start) {
+                particles.moveRange(start, live, chunkLiveCounts[chunk]);
             }
-            lastEmissionCycle = currentNanos;
+            live += chunkLiveCounts[chunk];
         }
 
-        // Update and draw live particles
-        for (int i = 0; i < maxParticles; ++i) {
-            final Particle particle = particles[i];
+        particles.truncate(live);
+
+        countLiveParticles();
+        emit(deltaSeconds);
+
+        expiredCount += size - live;
+        emittedCount += particles.size() - live;
+        liveCount = particles.size();
+
+        if (neighborGrid != null) {
+            neighborGrid.build(particles.x, particles.y, particles.size());
+        }
+    }
 
-            if(!particle.live) {
+    private int updateRange(final int start, final int end, final double deltaSeconds) {
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+        final double[] vx = particles.vx;
+        final double[] vy = particles.vy;
+        final double[] age = particles.age;
+        final double[] ttl = particles.ttl;
+
+        int live = start;
+
+        for (int i = start; i < end; ++i) {
+            final double newAge = age[i] + deltaSeconds;
+
+            if (newAge >= ttl[i]) {
                 continue;
             }
 
-            final var timeRemaining = particle.expiryTimestampNs - currentNanos;
+            if (live != i) {
+                particles.move(i, live);
+            }
+
+            age[live] = newAge;
+            x[live] += vx[live] * deltaSeconds;
+            y[live] += vy[live] * deltaSeconds;
+            ++live;
+        }
+
+        return live - start;
+    }
+
+    // Recounts the particles of every emitter and frees the slots of removed
+    // emitters that have none left. One pass over a single int array.
+    private void countLiveParticles() {
+        for (int slot = 0; slot < slotCount; ++slot) {
+            if (slots[slot] != null) {
+                slots[slot].liveCount = 0;
+            }
+        }
 
-            if(timeRemaining <= 0) {
-                particle.live = false;
+        final int[] emitter = particles.emitter;
+        final int size = particles.size();
+        for (int i = 0; i < size; ++i) {
+            final Emitter owner = slots[emitter[i]];
+            if (owner != null) {
+                ++owner.liveCount;
+            }
+        }
+
+        for (int slot = 0; slot < slotCount; ++slot) {
+            final Emitter owner = slots[slot];
+            if (owner != null && owner.removed) {
+                releaseIfDrained(owner);
+            }
+        }
+    }
+
+    // Emits every particle owed since the last update, emitter by emitter in
+    // slot order. Each one is aged by the time that has passed since its exact
+    // emission moment so that the stream stays smooth regardless of the update
+    // rate. When the pool can't take everything wanted, the room left is shared
+    // in proportion to what each emitter wants.
+    private void emit(final double deltaSeconds) {
+        long totalWanted = 0;
+
+        for (int slot = 0; slot < slotCount; ++slot) {
+            final Emitter emitter = slots[slot];
+            emitWanted[slot] = 0;
+
+            if (emitter == null || emitter.removed || emitter.getRate() <= 0) {
+                continue;
+            }
+
+            final double owed = emitter.remainder + emitter.getRate() * deltaSeconds;
+            final int count = (int) Math.min(owed, Integer.MAX_VALUE);
+            final int wanted = Math.max(0, Math.min(count, emitter.getBudget() - emitter.liveCount));
+
+            emitOwed[slot] = owed;
+            emitWanted[slot] = wanted;
+            totalWanted += wanted;
+        }
+
+        final int room = particles.getCapacity() - particles.size();
+
+        for (int slot = 0; slot < slotCount; ++slot) {
+            final Emitter emitter = slots[slot];
+            if (emitter == null || emitter.removed || emitter.getRate() <= 0) {
                 continue;
             }
 
-            final double alpha = timeRemaining / (double)TTL_NS;
+            final double owed = emitOwed[slot];
+            final int count = (int) Math.min(owed, Integer.MAX_VALUE);
+            final int granted = totalWanted <= room
+                    ? emitWanted[slot]
+                    : (int) (emitWanted[slot] * (long) room / totalWanted);
+
+            if (emitter.getOverflowPolicy() == Emitter.OverflowPolicy.DEFER) {
+                emitter.remainder = Math.min(owed - granted, Math.max(1.0, emitter.getRate()));
+            } else {
+                emitter.remainder = owed - count;
+            }
+
+            if (granted > 0) {
+                emitBatch(emitter, count - granted, count, owed, deltaSeconds);
+            }
+        }
+    }
+
+    // Emits particles [from, to) of the count owed by emitter, the later ones
+    // being the younger
+    private void emitBatch(final Emitter emitter, final int from, final int to,
+                           final double owed, final double deltaSeconds) {
+        final int first = particles.addBatch(to - from);
+        final int added = particles.size() - first;
+        final long firstSerial = emitter.emittedCount;
+        emitter.emittedCount += added;
+        emitter.liveCount += added;
+
+        final double[] age = particles.age;
+
+        forEachChunk(chunkCount(added), chunk -> {
+            final int start = chunk * CHUNK_SIZE;
+            final int end = Math.min(added, start + CHUNK_SIZE);
+            final RandomSource random = chunkRandoms[chunk];
+            random.reseed(SplitMix64.mix64(emitter.getSeed() ^ (firstSerial + start)));
+
+            for (int k = start; k < end; ++k) {
+                final int n = from + k;
+                age[first + k] = Math.max(0, Math.min(deltaSeconds, (owed - (n + 1)) / emitter.getRate()));
+            }
+
+            emitter.spawn(particles, first + start, first + end, random);
+        });
+    }
+
+    public void draw(final WindowContext windowContext) {
+        synchronized (emitterLock) {
+            fillBatch();
+        }
+
+        drawBatch(windowContext);
+    }
+
+    private void fillBatch() {
+        final double[] x = particles.x;
+        final double[] y = particles.y;
+        final double[] age = particles.age;
+        final double[] ttl = particles.ttl;
+        final int[] emitter = particles.emitter;
+
+        batch.clear();
+        final int size = particles.size();
+        for (int i = 0; i < size; ++i) {
+            final Emitter owner = ownerOf(emitter[i]);
+            final double life = age[i] / ttl[i];
+
+            batch.add((float) x[i], (float) y[i], (float) (1.0 - life),
+                    owner.getRadius(), owner.colorAt(life), owner.getSprite(), owner.frameAt(age[i], life));
+        }
+    }
+
+    /**
+     * Draws a snapshot taken on another thread, moving every particle
+     * aheadSeconds along its velocity to cover the time since the tick.
+     */
+    public void draw(final WindowContext windowContext, final ParticleSnapshot snapshot, final double aheadSeconds) {
+        final double[] x = snapshot.x;
+        final double[] y = snapshot.y;
+        final double[] vx = snapshot.vx;
+        final double[] vy = snapshot.vy;
+        final double[] alpha = snapshot.alpha;
+        final float[] radius = snapshot.radius;
+        final int[] color = snapshot.color;
+        final SpriteAtlas[] sprite = snapshot.sprite;
+        final int[] frame = snapshot.frame;
+
+        batch.clear();
+        final int count = snapshot.count;
+        for (int i = 0; i < count; ++i) {
+            batch.add((float) (x[i] + vx[i] * aheadSeconds),
+                    (float) (y[i] + vy[i] * aheadSeconds),
+                    (float) alpha[i],
+                    radius[i],
+                    color[i],
+                    sprite[i],
+                    frame[i]);
+        }
+
+        drawBatch(windowContext);
+    }
+
+    // Draws the batch in the engine's blend mode, leaving the window's as it was
+    private void drawBatch(final WindowContext windowContext) {
+        final BlendMode previous = windowContext.getBlendMode();
+        windowContext.setBlendMode(blendMode);
+        windowContext.drawParticles(batch);
+        windowContext.setBlendMode(previous);
+    }
+
+    /**
+     * Copies the drawable state of every live particle into target.
+     */
+    public void snapshot(final ParticleSnapshot target) {
+        synchronized (emitterLock) {
+            copyInto(target);
+        }
+    }
 
-            particle.position.addLocal(particle.velocity.mult(deltaSeconds));
+    private void copyInto(final ParticleSnapshot target) {
+        final int size = particles.size();
+
+        System.arraycopy(particles.x, 0, target.x, 0, size);
+        System.arraycopy(particles.y, 0, target.y, 0, size);
+        System.arraycopy(particles.vx, 0, target.vx, 0, size);
+        System.arraycopy(particles.vy, 0, target.vy, 0, size);
+
+        final double[] age = particles.age;
+        final double[] ttl = particles.ttl;
+        final int[] emitter = particles.emitter;
+        for (int i = 0; i < size; ++i) {
+            final Emitter owner = ownerOf(emitter[i]);
+            final double life = age[i] / ttl[i];
+
+            target.alpha[i] = 1.0 - life;
+            target.radius[i] = owner.getRadius();
+            target.color[i] = owner.colorAt(life);
+            target.sprite[i] = owner.getSprite();
+            target.frame[i] = owner.frameAt(age[i], life);
+        }
+
+        target.count = size;
+    }
+
+    // Particles put in the store directly may name an empty slot, they look like the default emitter's
+    private Emitter ownerOf(final int slot) {
+        final Emitter owner = slots[slot];
+        return owner != null ? owner : defaultEmitter;
+    }
+
+    // Runs body for every chunk index and returns once all of them are done
+    private void forEachChunk(final int chunks, final IntConsumer body) {
+        if (pool == null || chunks <= 1) {
+            for (int chunk = 0; chunk < chunks; ++chunk) {
+                body.accept(chunk);
+            }
+            return;
+        }
+
+        pool.invoke(new ChunkAction(body, 0, chunks));
+    }
+
+    private static int chunkCount(final int size) {
+        return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    private static class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer body;
+        private final int from;
+        private final int to;
+
+        private ChunkAction(final IntConsumer body, final int from, final int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
 
-            windowContext.drawGradientCircle((int) (particle.position.x + position.x), (int) particle.position.y,
-                    50,
-                    (int) (150 * alpha),
-                    (int)(60 * alpha),
-                    0);
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ChunkAction(body, from, mid), new ChunkAction(body, mid, to));
         }
     }
 }
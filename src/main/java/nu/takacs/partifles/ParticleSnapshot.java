@@ -0,0 +1,39 @@
+package nu.takacs.partifles;
+
+import nu.takacs.partifles.window.SpriteAtlas;
+
+/**
+ * Copy of the drawable particle state at the end of a simulation tick.
+ */
+public class ParticleSnapshot {
+    public final double[] x;
+    public final double[] y;
+    public final double[] vx;
+    public final double[] vy;
+    public final double[] alpha;
+    public final float[] radius;
+
+    // 0xRRGGBB from the emitter's colour ramp
+    public final int[] color;
+
+    // Null for gradient circles
+    public final SpriteAtlas[] sprite;
+    public final int[] frame;
+
+    public int count = 0;
+
+    // System.nanoTime() when the snapshot was taken
+    public long timestampNanos = 0;
+
+    public ParticleSnapshot(final int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        alpha = new double[capacity];
+        radius = new float[capacity];
+        color = new int[capacity];
+        sprite = new SpriteAtlas[capacity];
+        frame = new int[capacity];
+    }
+}
@@ -0,0 +1,108 @@
+package nu.takacs.partifles;
+
+/**
+ * Structure-of-arrays particle storage. Particle i is made up of the i:th
+ * element of every array, so the update loop walks a few primitive arrays
+ * linearly instead of chasing object pointers.
+ *
+ * Live particles are kept densely packed in [0, size). New particles are
+ * appended at the end and expired ones are compacted away during the update
+ * pass, so both emission and iteration are independent of the capacity.
+ */
+public class ParticleStore {
+    private final int capacity;
+    private int size = 0;
+
+    public final double[] x;
+    public final double[] y;
+    public final double[] vx;
+    public final double[] vy;
+    public final double[] age;
+    public final double[] ttl;
+
+    // Engine slot of the emitter the particle came from
+    public final int[] emitter;
+
+    public ParticleStore(final int capacity) {
+        this.capacity = capacity;
+
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        age = new double[capacity];
+        ttl = new double[capacity];
+        emitter = new int[capacity];
+    }
+
+    /**
+     * @return index of the new particle, or -1 if the store is full
+     */
+    public int add() {
+        if (size == capacity) {
+            return -1;
+        }
+
+        return size++;
+    }
+
+    /**
+     * Reserves up to count slots at the end of the live range.
+     *
+     * @return index of the first new particle, the number reserved is size() minus that
+     */
+    public int addBatch(final int count) {
+        final int first = size;
+        size = Math.min(capacity, size + count);
+        return first;
+    }
+
+    /**
+     * Copies particle from into slot to, used when compacting.
+     */
+    public void move(final int from, final int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        age[to] = age[from];
+        ttl[to] = ttl[from];
+        emitter[to] = emitter[from];
+    }
+
+    /**
+     * Copies length particles starting at from down to to. The ranges may overlap.
+     */
+    public void moveRange(final int from, final int to, final int length) {
+        System.arraycopy(x, from, x, to, length);
+        System.arraycopy(y, from, y, to, length);
+        System.arraycopy(vx, from, vx, to, length);
+        System.arraycopy(vy, from, vy, to, length);
+        System.arraycopy(age, from, age, to, length);
+        System.arraycopy(ttl, from, ttl, to, length);
+        System.arraycopy(emitter, from, emitter, to, length);
+    }
+
+    /**
+     * Drops every particle at index newSize and above.
+     */
+    public void truncate(final int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IllegalArgumentException("Invalid size " + newSize);
+        }
+
+        size = newSize;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -1,27 +1,117 @@
 package nu.takacs.partifles;
 
+import nu.takacs.partifles.affector.PointAttractor;
 import nu.takacs.partifles.math.Vec2;
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.SpriteCache;
 import nu.takacs.partifles.window.WindowContext;
 import nu.takacs.partifles.window.WindowListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 public class ParticlesWindowListener implements WindowListener {
     private static final Logger LOG = LoggerFactory.getLogger(ParticlesWindowListener.class);
+
+    private static final double SIMULATION_TICKS_PER_SECOND = 120;
+
+    private static final String FLOWER_SPRITE = Texture.RESOURCE_PATH_PREFIX + "flower1.png";
+    private static final List<String> SPRITES = List.of(FLOWER_SPRITE);
+
+    private static final double MOUSE_STRENGTH = 5e6;
+    private static final double MOUSE_SOFTENING = 50;
+
+    private final ParticleEngine particleEngine;
+
+    // Null when the simulation is stepped on the render thread instead
+    private final FixedStepSimulation simulation;
+
+    // Pulls particles towards the cursor, without strength until it has been over the window
+    private final PointAttractor mouseAttractor = new PointAttractor(0, 0, 0, MOUSE_SOFTENING);
+
+    // Flower sprites drifting up beside the fountain, null when not shown
+    private Emitter flowers = null;
+
     private long prevNanos = 0;
 
-    private final ParticleEngine particleEngine = new ParticleEngine(1000);
+    public ParticlesWindowListener() {
+        this(new ParticleEngine(1000), SIMULATION_TICKS_PER_SECOND);
+
+        particleEngine.setBlendMode(BlendMode.ADDITIVE);
+
+        // Decoded once, later runs read the cached pixels
+        final var sprites = new SpriteCache(SpriteCache.defaultDirectory());
+        sprites.preload(SPRITES, Runtime.getRuntime().availableProcessors());
+
+        flowers = new Emitter();
+        flowers.setSprite(sprites.load(FLOWER_SPRITE), 0);
+        flowers.setRadius(16);
+        flowers.setColors(0xFFFFFF, 0x8080FF);
+        flowers.setRate(6);
+        flowers.setTtl(3, 4);
+        flowers.setVelocity(0, 60, 15, 10);
+        flowers.setShape(Emitter.Shape.POINT, 0, 0);
+        particleEngine.addEmitter(flowers);
+    }
+
+    /**
+     * @param simulationTicksPerSecond rate of the simulation thread, or zero to
+     *                                 advance the simulation once per frame by the
+     *                                 frame time of the window context
+     */
+    public ParticlesWindowListener(final ParticleEngine particleEngine, final double simulationTicksPerSecond) {
+        this.particleEngine = particleEngine;
+        particleEngine.addAffector(mouseAttractor);
+
+        // A fixed seed makes every run emit the same particles, e.g. for comparing frames
+        final Long seed = Long.getLong("partifles.seed");
+        if (seed != null) {
+            particleEngine.setSeed(seed);
+        }
+
+        this.simulation = simulationTicksPerSecond > 0
+                ? new FixedStepSimulation(particleEngine, simulationTicksPerSecond)
+                : null;
+    }
+
+    public ParticleEngine getParticleEngine() {
+        return particleEngine;
+    }
 
     @Override
     public void onInit(final WindowContext windowContext) {
         LOG.info("Startup complete");
 
         particleEngine.init(windowContext);
+
+        if (flowers != null) {
+            flowers.setPosition(windowContext.getViewPortWidth() / 4.0, 0);
+        }
+
+        if (simulation != null) {
+            simulation.start();
+        }
     }
 
     @Override
     public void onRender(final WindowContext windowContext) {
-        final long currentNanos = System.nanoTime();
+        if (simulation == null) {
+            renderStep(windowContext);
+            return;
+        }
+
+        final ParticleSnapshot snapshot = simulation.getLatestSnapshot();
+
+        // Cover the time since the tick, but never run further ahead than one tick
+        final double sinceTickSeconds = (System.nanoTime() - snapshot.timestampNanos) / 1000000000.0;
+        final double aheadSeconds = Math.max(0, Math.min(simulation.getStepSeconds(), sinceTickSeconds));
+
+        particleEngine.draw(windowContext, snapshot, aheadSeconds);
+    }
+
+    private void renderStep(final WindowContext windowContext) {
+        final long currentNanos = windowContext.getFrameTimeNanos();
 
         final double deltaSeconds;
         if (prevNanos == 0) {
@@ -37,6 +127,16 @@ public class ParticlesWindowListener implements WindowListener {
 
     @Override
     public void onMouseMove(final Vec2 location) {
+        mouseAttractor.setPosition(location.x, location.y);
+        mouseAttractor.setStrength(MOUSE_STRENGTH);
+    }
+
+    @Override
+    public void onClose() {
+        if (simulation != null) {
+            simulation.stop();
+        }
 
+        particleEngine.close();
     }
 }
@@ -0,0 +1,210 @@
+package nu.takacs.partifles;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Spatial hash over particle positions for neighbour queries. Space is cut
+ * into square cells, and cells are hashed into a fixed table of buckets so
+ * particles can be anywhere without the grid having bounds.
+ * <p>
+ * Building is a counting sort into flat arrays, O(n) with no allocation:
+ * count particles per bucket, prefix sum the counts into bucketStart, then
+ * scatter particle indices into sortedIndices. The particles of bucket b are
+ * sortedIndices[bucketStart[b] .. bucketStart[b + 1]). Different cells can
+ * share a bucket, so queries check the actual distance of every candidate.
+ * <p>
+ * Queries share scratch state, so a grid is queried from one thread at a time.
+ */
+public class SpatialHashGrid {
+    private final double cellSize;
+    private final double inverseCellSize;
+    private final int bucketMask;
+
+    private final int[] bucketStart;
+    private final int[] bucketStamp;
+    private int[] particleBucket;
+    private int[] sortedIndices;
+
+    // The positions the grid was last built from
+    private double[] x;
+    private double[] y;
+    private int count = 0;
+
+    // Marks buckets already visited by the current query, so colliding cells are not scanned twice
+    private int queryStamp = 0;
+
+    private final Collector collector = new Collector();
+
+    /**
+     * @param cellSize    side of a cell, best about the typical query radius
+     * @param bucketCount number of hash buckets, rounded up to a power of two
+     * @param capacity    initial number of particles, grows as needed
+     */
+    public SpatialHashGrid(final double cellSize, final int bucketCount, final int capacity) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        if (bucketCount < 1) {
+            throw new IllegalArgumentException("Need at least one bucket");
+        }
+
+        final int buckets = bucketCount == 1 ? 1 : Integer.highestOneBit(bucketCount - 1) << 1;
+
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1.0 / cellSize;
+        this.bucketMask = buckets - 1;
+        this.bucketStart = new int[buckets + 1];
+        this.bucketStamp = new int[buckets];
+        this.particleBucket = new int[capacity];
+        this.sortedIndices = new int[capacity];
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getBucketCount() {
+        return bucketMask + 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Indexes the first count positions. The arrays are kept, not copied, and
+     * must not change until the next build.
+     */
+    public void build(final double[] x, final double[] y, final int count) {
+        if (count > particleBucket.length) {
+            particleBucket = new int[count];
+            sortedIndices = new int[count];
+        }
+
+        this.x = x;
+        this.y = y;
+        this.count = count;
+
+        final int[] bucketStart = this.bucketStart;
+        final int[] particleBucket = this.particleBucket;
+        Arrays.fill(bucketStart, 0);
+
+        // Count into bucketStart[b + 1] so the prefix sum lands in place
+        for (int i = 0; i < count; ++i) {
+            final int bucket = bucket(cell(x[i]), cell(y[i]));
+            particleBucket[i] = bucket;
+            ++bucketStart[bucket + 1];
+        }
+
+        for (int b = 0; b < bucketMask + 1; ++b) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+
+        // Scatter, using bucketStamp as the per bucket write cursor for now
+        final int[] cursor = bucketStamp;
+        System.arraycopy(bucketStart, 0, cursor, 0, cursor.length);
+        for (int i = 0; i < count; ++i) {
+            sortedIndices[cursor[particleBucket[i]]++] = i;
+        }
+
+        Arrays.fill(bucketStamp, 0);
+        queryStamp = 0;
+    }
+
+    /**
+     * Calls visitor with the index of every particle within radius of (qx, qy),
+     * in no particular order.
+     */
+    public void forEachNeighbor(final double qx, final double qy, final double radius, final IntConsumer visitor) {
+        final double radiusSquared = radius * radius;
+        final int stamp = nextQueryStamp();
+
+        final int fromCellX = cell(qx - radius);
+        final int toCellX = cell(qx + radius);
+        final int fromCellY = cell(qy - radius);
+        final int toCellY = cell(qy + radius);
+
+        // Covering more cells than there are buckets, every bucket gets visited anyway
+        if ((long) (toCellX - fromCellX + 1) * (toCellY - fromCellY + 1) > bucketMask) {
+            for (int bucket = 0; bucket <= bucketMask; ++bucket) {
+                visitBucket(bucket, qx, qy, radiusSquared, visitor);
+            }
+            return;
+        }
+
+        for (int cy = fromCellY; cy <= toCellY; ++cy) {
+            for (int cx = fromCellX; cx <= toCellX; ++cx) {
+                final int bucket = bucket(cx, cy);
+                if (bucketStamp[bucket] == stamp) {
+                    continue;
+                }
+                bucketStamp[bucket] = stamp;
+
+                visitBucket(bucket, qx, qy, radiusSquared, visitor);
+            }
+        }
+    }
+
+    private void visitBucket(final int bucket,
+                             final double qx,
+                             final double qy,
+                             final double radiusSquared,
+                             final IntConsumer visitor) {
+        for (int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; ++s) {
+            final int i = sortedIndices[s];
+            final double dx = x[i] - qx;
+            final double dy = y[i] - qy;
+
+            if (dx * dx + dy * dy <= radiusSquared) {
+                visitor.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Writes the indices of particles within radius of (qx, qy) into result.
+     *
+     * @return the number of neighbours found, which can exceed result.length;
+     * only the first result.length are written then
+     */
+    public int query(final double qx, final double qy, final double radius, final int[] result) {
+        collector.result = result;
+        collector.found = 0;
+        forEachNeighbor(qx, qy, radius, collector);
+        collector.result = null;
+
+        return collector.found;
+    }
+
+    private static class Collector implements IntConsumer {
+        int[] result;
+        int found;
+
+        @Override
+        public void accept(final int index) {
+            if (found < result.length) {
+                result[found] = index;
+            }
+            ++found;
+        }
+    }
+
+    private int nextQueryStamp() {
+        if (++queryStamp == 0) {
+            // Wrapped around, old stamps could be mistaken for this query's
+            Arrays.fill(bucketStamp, 0);
+            queryStamp = 1;
+        }
+        return queryStamp;
+    }
+
+    private int cell(final double coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private int bucket(final int cellX, final int cellY) {
+        // Large primes to spread neighbouring cells across the table
+        return (cellX * 73856093 ^ cellY * 19349663) & bucketMask;
+    }
+}
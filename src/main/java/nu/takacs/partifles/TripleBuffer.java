@@ -0,0 +1,57 @@
+package nu.takacs.partifles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free triple buffer for handing state from one producer thread to one
+ * consumer thread. The producer fills the back buffer and publishes it, the
+ * consumer always gets the most recently published buffer. Neither side ever
+ * waits for the other.
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final Object[] buffers;
+
+    // Index of the buffer in the middle, flagged FRESH when published but not yet consumed
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // Owned by the producer
+    private int back = 0;
+
+    // Owned by the consumer
+    private int front = 2;
+
+    public TripleBuffer(final Supplier<T> factory) {
+        buffers = new Object[]{factory.get(), factory.get(), factory.get()};
+    }
+
+    /**
+     * Producer side, the buffer to fill before calling publish.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Producer side, makes the back buffer visible to the consumer.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Consumer side, the latest published buffer. Stays valid until the next call.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,25 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+
+/**
+ * Something that changes particle velocities every update, e.g. a force.
+ * Each affector gets a whole range of particles at a time and runs its own
+ * tight loop over the arrays, rather than being called once per particle.
+ * <p>
+ * The engine calls apply for disjoint ranges, possibly from several threads
+ * at once, so apply must only write the particles in its range and must not
+ * change the affector's own state. Per update state belongs in prepare.
+ */
+public interface Affector {
+    /**
+     * Called once per update before any apply, on the updating thread.
+     */
+    default void prepare(final double deltaSeconds) {
+    }
+
+    /**
+     * Affects the particles [from, to).
+     */
+    void apply(ParticleStore particles, int from, int to, double deltaSeconds);
+}
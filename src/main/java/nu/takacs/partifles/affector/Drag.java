@@ -0,0 +1,29 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+import nu.takacs.partifles.math.Vec2Kernels;
+
+/**
+ * Slows particles down in proportion to their speed. Velocity decays by
+ * exp(-coefficient * t), which is exact for any time step and never
+ * overshoots into reverse like 1 - coefficient * dt can.
+ */
+public class Drag implements Affector {
+    private final double coefficient;
+
+    public Drag(final double coefficient) {
+        if (coefficient < 0) {
+            throw new IllegalArgumentException("Drag coefficient can not be negative");
+        }
+
+        this.coefficient = coefficient;
+    }
+
+    @Override
+    public void apply(final ParticleStore particles, final int from, final int to, final double deltaSeconds) {
+        final double factor = Math.exp(-coefficient * deltaSeconds);
+
+        Vec2Kernels.scale(factor, particles.vx, from, to);
+        Vec2Kernels.scale(factor, particles.vy, from, to);
+    }
+}
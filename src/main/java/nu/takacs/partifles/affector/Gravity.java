@@ -0,0 +1,23 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+import nu.takacs.partifles.math.Vec2Kernels;
+
+/**
+ * Constant acceleration, the same for every particle.
+ */
+public class Gravity implements Affector {
+    private final double ax;
+    private final double ay;
+
+    public Gravity(final double ax, final double ay) {
+        this.ax = ax;
+        this.ay = ay;
+    }
+
+    @Override
+    public void apply(final ParticleStore particles, final int from, final int to, final double deltaSeconds) {
+        Vec2Kernels.add(ax * deltaSeconds, particles.vx, from, to);
+        Vec2Kernels.add(ay * deltaSeconds, particles.vy, from, to);
+    }
+}
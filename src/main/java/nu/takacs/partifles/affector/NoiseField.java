@@ -0,0 +1,98 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+
+/**
+ * Turbulence from a smooth 2D value noise field that drifts over time. The
+ * two acceleration components sample the field at offset positions so they
+ * are independent. Purely a function of position, time and seed, so the
+ * result does not depend on how particles are split between threads.
+ */
+public class NoiseField implements Affector {
+    // Samples the y component far enough away to be unrelated to x
+    private static final double COMPONENT_OFFSET = 1013.7;
+
+    private final double amplitude;
+    private final double frequency;
+    private final double driftSpeed;
+    private final long seed;
+
+    // Advanced in prepare, read by apply
+    private double time = 0;
+
+    /**
+     * @param amplitude  largest acceleration
+     * @param scale      size of the swirls, in the same units as particle positions
+     * @param driftSpeed how fast the field moves through space
+     */
+    public NoiseField(final double amplitude, final double scale, final double driftSpeed, final long seed) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Noise scale must be positive");
+        }
+
+        this.amplitude = amplitude;
+        this.frequency = 1.0 / scale;
+        this.driftSpeed = driftSpeed;
+        this.seed = seed;
+    }
+
+    @Override
+    public void prepare(final double deltaSeconds) {
+        time += deltaSeconds;
+    }
+
+    @Override
+    public void apply(final ParticleStore particles, final int from, final int to, final double deltaSeconds) {
+        final double[] px = particles.x;
+        final double[] py = particles.y;
+        final double[] vx = particles.vx;
+        final double[] vy = particles.vy;
+
+        final double impulse = amplitude * deltaSeconds;
+        final double shift = time * driftSpeed * frequency;
+
+        for (int i = from; i < to; ++i) {
+            final double sx = px[i] * frequency + shift;
+            final double sy = py[i] * frequency;
+
+            vx[i] += impulse * valueNoise(sx, sy, seed);
+            vy[i] += impulse * valueNoise(sx + COMPONENT_OFFSET, sy + COMPONENT_OFFSET, seed);
+        }
+    }
+
+    /**
+     * Smoothly interpolated random values on the integer lattice, in [-1, 1].
+     */
+    static double valueNoise(final double x, final double y, final long seed) {
+        final double floorX = Math.floor(x);
+        final double floorY = Math.floor(y);
+        final long cellX = (long) floorX;
+        final long cellY = (long) floorY;
+
+        final double fx = smooth(x - floorX);
+        final double fy = smooth(y - floorY);
+
+        final double v00 = lattice(cellX, cellY, seed);
+        final double v10 = lattice(cellX + 1, cellY, seed);
+        final double v01 = lattice(cellX, cellY + 1, seed);
+        final double v11 = lattice(cellX + 1, cellY + 1, seed);
+
+        final double top = v00 + (v10 - v00) * fx;
+        final double bottom = v01 + (v11 - v01) * fx;
+        return top + (bottom - top) * fy;
+    }
+
+    private static double smooth(final double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    // Random value in [-1, 1] for a lattice point
+    private static double lattice(final long cellX, final long cellY, final long seed) {
+        long h = seed ^ cellX * 0x9E3779B97F4A7C15L ^ cellY * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+
+        return (h >>> 11) * 0x1.0p-52 - 1.0;
+    }
+}
@@ -0,0 +1,98 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+
+/**
+ * Pulls particles towards a point with inverse square falloff, or pushes them
+ * away with a negative strength. The softening radius keeps the force finite
+ * near the point instead of flinging particles that pass through it.
+ * <p>
+ * The position can be moved from another thread, e.g. to follow the mouse
+ * while the simulation runs on its own thread. Changes take effect at the
+ * next update, so every chunk of an update sees the same point.
+ */
+public class PointAttractor implements Affector {
+    private static final class Point {
+        final double x;
+        final double y;
+
+        Point(final double x, final double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final double softeningSquared;
+
+    // Replaced as a whole, so x and y are never read from different moves
+    private volatile Point position;
+    private volatile double strength;
+
+    // Copied in prepare, read by apply
+    private double preparedX;
+    private double preparedY;
+    private double preparedStrength;
+
+    public PointAttractor(final double x, final double y, final double strength, final double softening) {
+        this.position = new Point(x, y);
+        this.strength = strength;
+        this.softeningSquared = softening * softening;
+
+        this.preparedX = x;
+        this.preparedY = y;
+        this.preparedStrength = strength;
+    }
+
+    public void setPosition(final double x, final double y) {
+        this.position = new Point(x, y);
+    }
+
+    public void setStrength(final double strength) {
+        this.strength = strength;
+    }
+
+    public double getX() {
+        return position.x;
+    }
+
+    public double getY() {
+        return position.y;
+    }
+
+    public double getStrength() {
+        return strength;
+    }
+
+    @Override
+    public void prepare(final double deltaSeconds) {
+        final Point position = this.position;
+        preparedX = position.x;
+        preparedY = position.y;
+        preparedStrength = strength;
+    }
+
+    @Override
+    public void apply(final ParticleStore particles, final int from, final int to, final double deltaSeconds) {
+        final double[] px = particles.x;
+        final double[] py = particles.y;
+        final double[] vx = particles.vx;
+        final double[] vy = particles.vy;
+
+        final double cx = preparedX;
+        final double cy = preparedY;
+        final double impulse = preparedStrength * deltaSeconds;
+        final double softeningSquared = this.softeningSquared;
+
+        for (int i = from; i < to; ++i) {
+            final double dx = cx - px[i];
+            final double dy = cy - py[i];
+            final double distanceSquared = dx * dx + dy * dy + softeningSquared;
+
+            // Direction times 1 / r^2 is d / r^3
+            final double scale = impulse / (distanceSquared * Math.sqrt(distanceSquared));
+
+            vx[i] += dx * scale;
+            vy[i] += dy * scale;
+        }
+    }
+}
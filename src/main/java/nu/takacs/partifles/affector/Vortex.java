@@ -0,0 +1,42 @@
+package nu.takacs.partifles.affector;
+
+import nu.takacs.partifles.ParticleStore;
+
+/**
+ * Swirls particles around a point, counter-clockwise for a positive strength.
+ * The push is at right angles to the direction of the centre and falls off
+ * with distance like PointAttractor.
+ */
+public class Vortex implements Affector {
+    private final double x;
+    private final double y;
+    private final double strength;
+    private final double softeningSquared;
+
+    public Vortex(final double x, final double y, final double strength, final double softening) {
+        this.x = x;
+        this.y = y;
+        this.strength = strength;
+        this.softeningSquared = softening * softening;
+    }
+
+    @Override
+    public void apply(final ParticleStore particles, final int from, final int to, final double deltaSeconds) {
+        final double[] px = particles.x;
+        final double[] py = particles.y;
+        final double[] vx = particles.vx;
+        final double[] vy = particles.vy;
+
+        final double impulse = strength * deltaSeconds;
+
+        for (int i = from; i < to; ++i) {
+            final double dx = px[i] - x;
+            final double dy = py[i] - y;
+            final double distanceSquared = dx * dx + dy * dy + softeningSquared;
+            final double scale = impulse / (distanceSquared * Math.sqrt(distanceSquared));
+
+            vx[i] -= dy * scale;
+            vy[i] += dx * scale;
+        }
+    }
+}
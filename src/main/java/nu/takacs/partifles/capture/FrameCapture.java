@@ -0,0 +1,204 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams finished frames to a FrameEncoder on a background thread.
+ * <p>
+ * The render thread only copies the frame buffer into one of a fixed ring of
+ * pooled buffers and queues it; the writer thread encodes and writes it, then
+ * hands the buffer back. Nothing is allocated per frame. When every buffer is
+ * still waiting to be written the policy decides: DROP skips the frame so
+ * rendering never stalls, BLOCK waits for the writer so every frame is kept.
+ * <p>
+ * Frames are submitted from one thread. A writer failure ends the capture
+ * and is thrown from the next submit or close.
+ */
+public class FrameCapture {
+    public enum Backpressure {
+        // Skip frames while the writer is behind, e.g. when capturing a live window
+        DROP,
+        // Wait for the writer, e.g. for a headless render where every frame matters
+        BLOCK
+    }
+
+    // Queued by close to stop the writer once it has written everything before it
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FrameEncoder encoder;
+    private final int width;
+    private final int height;
+    private final PixelFormat pixelFormat;
+    private final Backpressure backpressure;
+
+    // Size of every frame, the ring buffers hold exactly one
+    private final int frameBytes;
+
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> written;
+    private final Thread writer;
+
+    private final AtomicLong encodedCount = new AtomicLong();
+    private long submittedCount = 0;
+    private long droppedCount = 0;
+
+    private volatile Throwable failure = null;
+    private boolean closed = false;
+
+    /**
+     * @param ringSize number of frames that can wait for the writer at once
+     */
+    public FrameCapture(final FrameEncoder encoder,
+                        final int width,
+                        final int height,
+                        final PixelFormat pixelFormat,
+                        final int ringSize,
+                        final Backpressure backpressure) {
+        if (ringSize < 1) {
+            throw new IllegalArgumentException("Need at least one buffer");
+        }
+
+        this.encoder = encoder;
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.backpressure = backpressure;
+        this.frameBytes = width * height * pixelFormat.bytesPerPixel;
+
+        free = new ArrayBlockingQueue<>(ringSize);
+        written = new ArrayBlockingQueue<>(ringSize + 1);
+        for (int i = 0; i < ringSize; ++i) {
+            free.add(pixelFormat.allocate(width * height));
+        }
+
+        writer = new Thread(this::write, "frame-capture");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Copies a finished frame buffer of the capture's size and format for the
+     * writer. The frame buffer can be drawn to again as soon as this returns.
+     *
+     * @return false when the frame was dropped
+     */
+    public boolean submit(final ByteBuffer frameBuffer) {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("Capture is closed");
+        }
+        if (frameBuffer.capacity() != frameBytes) {
+            throw new IllegalArgumentException("Frame buffer of " + frameBuffer.capacity() + " bytes, the capture takes "
+                    + width + "x" + height + " " + pixelFormat + " frames of " + frameBytes + " bytes");
+        }
+
+        final ByteBuffer buffer;
+        try {
+            buffer = backpressure == Backpressure.BLOCK ? free.take() : free.poll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the frame writer", e);
+        }
+
+        if (buffer == null) {
+            ++droppedCount;
+            return false;
+        }
+
+        buffer.clear();
+        buffer.put(frameBuffer.duplicate().clear());
+        buffer.flip();
+
+        // Never blocks, there is room for every buffer in the ring
+        written.add(buffer);
+        ++submittedCount;
+        return true;
+    }
+
+    /**
+     * Waits for every submitted frame to be written, then closes the encoder.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        written.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the frame writer", e);
+        }
+
+        checkFailure();
+    }
+
+    // Frames handed to the writer
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    // Frames skipped because the writer was behind
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Frames the writer has finished with so far
+    public long getEncodedCount() {
+        return encodedCount.get();
+    }
+
+    private void write() {
+        try {
+            encoder.start(width, height);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+
+        try {
+            while (true) {
+                final ByteBuffer frame = written.take();
+                if (frame == END) {
+                    break;
+                }
+
+                // After a failure frames are only handed back, so a blocked render thread gets going again
+                if (failure == null) {
+                    try {
+                        encoder.encode(frame, pixelFormat);
+                        encodedCount.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        failure = e;
+                    }
+                }
+
+                free.add(frame);
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+        } finally {
+            try {
+                encoder.close();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void checkFailure() {
+        final Throwable failure = this.failure;
+        if (failure != null) {
+            throw new RuntimeException("Frame capture failed", failure);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes captured frames somewhere, one after the other. Called from the
+ * capture's writer thread only.
+ */
+public interface FrameEncoder {
+    /**
+     * Called once before the first frame.
+     */
+    void start(int width, int height) throws IOException;
+
+    /**
+     * Encodes a frame in the window's frame buffer layout, rows bottom up.
+     * The buffer is only valid during the call.
+     */
+    void encode(ByteBuffer frame, PixelFormat format) throws IOException;
+
+    void close() throws IOException;
+}
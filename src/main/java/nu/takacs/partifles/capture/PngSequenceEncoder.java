@@ -0,0 +1,59 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes every frame as its own PNG, frame-00000.png, frame-00001.png and so
+ * on in a directory. Much slower to write than the raw formats but readable
+ * by anything.
+ */
+public class PngSequenceEncoder implements FrameEncoder {
+    private final Path directory;
+
+    private RgbRows rows;
+    private BufferedImage image;
+    private int[] rgb;
+    private int frameIndex = 0;
+
+    public PngSequenceEncoder(final Path directory) {
+        this.directory = directory;
+    }
+
+    public static Path framePath(final Path directory, final int frameIndex) {
+        return directory.resolve(String.format("frame-%05d.png", frameIndex));
+    }
+
+    @Override
+    public void start(final int width, final int height) throws IOException {
+        Files.createDirectories(directory);
+        rows = new RgbRows(width, height);
+
+        // Converting straight into the image's own pixels saves a copy
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    @Override
+    public void encode(final ByteBuffer frame, final PixelFormat format) throws IOException {
+        rows.convert(frame, format, rgb);
+
+        try (OutputStream output = Files.newOutputStream(framePath(directory, frameIndex++))) {
+            if (!ImageIO.write(image, "png", output)) {
+                throw new IOException("No PNG writer");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,57 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes frames back to back as raw 24 bit RGB, top row first and no header,
+ * e.g. for ffmpeg -f rawvideo -pixel_format rgb24 -video_size WxH.
+ */
+public class RawRgbEncoder implements FrameEncoder {
+    private final Path file;
+
+    private FileChannel channel;
+    private RgbRows rows;
+    private int[] rgb;
+    private ByteBuffer bytes;
+
+    public RawRgbEncoder(final Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void start(final int width, final int height) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        rows = new RgbRows(width, height);
+        rgb = new int[width * height];
+        bytes = ByteBuffer.allocateDirect(width * height * 3);
+    }
+
+    @Override
+    public void encode(final ByteBuffer frame, final PixelFormat format) throws IOException {
+        rows.convert(frame, format, rgb);
+
+        bytes.clear();
+        for (final int pixel : rgb) {
+            bytes.put((byte) (pixel >>> 16)).put((byte) (pixel >>> 8)).put((byte) pixel);
+        }
+        bytes.flip();
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Converts frame buffers to top down 0xRRGGBB ints, reusing one row of
+ * scratch space. Frame buffers keep row 0 at the bottom, image files want it
+ * first. Not thread safe.
+ */
+public final class RgbRows {
+    private final int width;
+    private final int height;
+    private final int[] packedRow;
+
+    public RgbRows(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.packedRow = new int[width];
+    }
+
+    /**
+     * Fills rgb with the frame as 0x00RRGGBB, top row first.
+     */
+    public void convert(final ByteBuffer frame, final PixelFormat format, final int[] rgb) {
+        if (format.isPacked()) {
+            final IntBuffer ints = frame.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+
+            for (int row = 0; row < height; ++row) {
+                ints.position((height - 1 - row) * width);
+                ints.get(packedRow);
+
+                final int offset = row * width;
+                for (int col = 0; col < width; ++col) {
+                    rgb[offset + col] = format.toRgb(packedRow[col]);
+                }
+            }
+            return;
+        }
+
+        for (int row = 0; row < height; ++row) {
+            final int from = (height - 1 - row) * width;
+            final int offset = row * width;
+            for (int col = 0; col < width; ++col) {
+                rgb[offset + col] = format.get(frame, from + col);
+            }
+        }
+    }
+
+}
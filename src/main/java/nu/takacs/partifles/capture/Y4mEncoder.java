@@ -0,0 +1,86 @@
+package nu.takacs.partifles.capture;
+
+import nu.takacs.partifles.window.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a YUV4MPEG2 stream, which video players and ffmpeg read directly.
+ * Planes are full resolution 4:4:4 so nothing is lost to chroma subsampling,
+ * converted with the BT.601 studio range integer formulas.
+ */
+public class Y4mEncoder implements FrameEncoder {
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path file;
+    private final int framesPerSecond;
+
+    private FileChannel channel;
+    private RgbRows rows;
+    private int[] rgb;
+    private ByteBuffer bytes;
+
+    public Y4mEncoder(final Path file, final int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+
+        this.file = file;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    @Override
+    public void start(final int width, final int height) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        rows = new RgbRows(width, height);
+        rgb = new int[width * height];
+        bytes = ByteBuffer.allocateDirect(FRAME_HEADER.length + width * height * 3);
+
+        final String header = "YUV4MPEG2 W" + width + " H" + height + " F" + framesPerSecond + ":1 Ip A1:1 C444\n";
+        write(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Override
+    public void encode(final ByteBuffer frame, final PixelFormat format) throws IOException {
+        rows.convert(frame, format, rgb);
+
+        final int pixels = rgb.length;
+        final int yStart = FRAME_HEADER.length;
+        final int uStart = yStart + pixels;
+        final int vStart = uStart + pixels;
+
+        bytes.clear();
+        bytes.put(FRAME_HEADER);
+        for (int i = 0; i < pixels; ++i) {
+            final int r = rgb[i] >>> 16 & 0xFF;
+            final int g = rgb[i] >>> 8 & 0xFF;
+            final int b = rgb[i] & 0xFF;
+
+            bytes.put(yStart + i, (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16));
+            bytes.put(uStart + i, (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128));
+            bytes.put(vStart + i, (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128));
+        }
+        bytes.position(0).limit(vStart + pixels);
+
+        write(bytes);
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package nu.takacs.partifles.math;
 
+/**
+ * Every operation comes in three forms: one returning a new vector, one
+ * ending in Local that changes this vector, and one writing into a
+ * destination, which may be this or the argument. The last two never
+ * allocate, use them in per particle or per frame code.
+ */
 public class Vec2 {
     public double x;
     public double y;
@@ -27,6 +33,13 @@ public class Vec2 {
         this.y = y;
     }
 
+    public Vec2 set(final Vec2 v) {
+        x = v.x;
+        y = v.y;
+
+        return this;
+    }
+
     public static Vec2 shortest(final Vec2... vectors) {
         Vec2 shortestV = null;
         double shortestLengthSquared = Double.MAX_VALUE;
@@ -50,10 +63,21 @@ public class Vec2 {
         return new Vec2(x, y);
     }
 
+    public Vec2 copy(final Vec2 dest) {
+        return dest.set(this);
+    }
+
     public Vec2 mult(final double a) {
         return new Vec2(x * a, y * a);
     }
 
+    public Vec2 mult(final double a, final Vec2 dest) {
+        dest.x = x * a;
+        dest.y = y * a;
+
+        return dest;
+    }
+
     public Vec2 multLocal(final double a) {
         x = x * a;
         y = y * a;
@@ -65,6 +89,21 @@ public class Vec2 {
         return new Vec2(x + v.x, y + v.y);
     }
 
+    public Vec2 add(final Vec2 v, final Vec2 dest) {
+        dest.x = x + v.x;
+        dest.y = y + v.y;
+
+        return dest;
+    }
+
+    // this + v * a, e.g. position.addScaledLocal(velocity, dt)
+    public Vec2 addScaledLocal(final Vec2 v, final double a) {
+        x = x + v.x * a;
+        y = y + v.y * a;
+
+        return this;
+    }
+
     public Vec2 addLocal(final Vec2 v) {
         x = x + v.x;
         y = y + v.y;
@@ -80,6 +119,13 @@ public class Vec2 {
         return new Vec2(x - x2, y - y2);
     }
 
+    public Vec2 sub(final Vec2 v, final Vec2 dest) {
+        dest.x = x - v.x;
+        dest.y = y - v.y;
+
+        return dest;
+    }
+
     public Vec2 subLocal(final Vec2 v) {
         x = x - v.x;
         y = y - v.y;
@@ -100,6 +146,14 @@ public class Vec2 {
         return this;
     }
 
+    public Vec2 normalize(final Vec2 dest) {
+        final var length = Math.sqrt(x * x + y * y);
+        dest.x = x / length;
+        dest.y = y / length;
+
+        return dest;
+    }
+
     public double polarAngleRadians() {
         if (x == 0) {
             return 0;
@@ -126,6 +180,10 @@ public class Vec2 {
         return (double) Math.sqrt(x * x + y * y);
     }
 
+    public double lengthSquared() {
+        return x * x + y * y;
+    }
+
     @Override
     public String toString() {
         return "(" + x + ", " + y + ")";
@@ -0,0 +1,67 @@
+package nu.takacs.partifles.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Appends every report as a row to a CSV file, with a header of the column
+ * names from MetricsReport.names and the seconds since the first report in
+ * the first column.
+ */
+public class CsvMetricsSink implements MetricsSink {
+    private final BufferedWriter writer;
+
+    private double[] values = null;
+    private long firstNanos = 0;
+
+    public CsvMetricsSink(final Path file) {
+        try {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open metrics file " + file, e);
+        }
+    }
+
+    @Override
+    public void publish(final MetricsReport report) {
+        try {
+            if (values == null) {
+                values = new double[report.names().size()];
+                firstNanos = report.getEndNanos();
+
+                writer.write("seconds");
+                for (final String name : report.names()) {
+                    writer.write(',');
+                    writer.write(name);
+                }
+                writer.newLine();
+            }
+
+            report.values(values);
+
+            writer.write(String.format(Locale.ROOT, "%.3f", (report.getEndNanos() - firstNanos) / 1e9));
+            for (final double value : values) {
+                writer.write(',');
+                writer.write(String.format(Locale.ROOT, "%.4f", value));
+            }
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write metrics", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close metrics file", e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package nu.takacs.partifles.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Times the phases of a window's frame loop into histograms and hands a
+ * report to the sinks once per interval. A frame is timed by calling
+ * beginFrame, endPhase after each phase in turn and endFrame; each phase runs
+ * from the end of the one before.
+ * <p>
+ * Recording only reads the clock and bumps histogram buckets, it never
+ * allocates. Gauges and counters are sampled when a report is made, not per
+ * frame. Windows hold a null FrameMetrics when timing is off, which costs
+ * them a null check per phase.
+ * <p>
+ * Used from the frame loop thread only; gauge and counter suppliers may read
+ * state owned by other threads, so they have to be safe to call from it.
+ */
+public class FrameMetrics {
+    private final long intervalNanos;
+
+    private final Histogram frameTimes = new Histogram();
+    private final Histogram[] phaseTimes = new Histogram[FramePhase.values().length];
+
+    private final List<LongSupplier> gauges = new ArrayList<>();
+    private final List<LongSupplier> counters = new ArrayList<>();
+    private long[] lastCounts = new long[0];
+
+    private final List<MetricsSink> sinks = new ArrayList<>();
+    private final MetricsReport report = new MetricsReport();
+    private boolean reported = false;
+
+    private long intervalStartNanos = 0;
+    private long frameStartNanos = 0;
+    private long phaseStartNanos = 0;
+
+    public FrameMetrics(final long intervalNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+
+        this.intervalNanos = intervalNanos;
+        for (int i = 0; i < phaseTimes.length; ++i) {
+            phaseTimes[i] = new Histogram();
+        }
+    }
+
+    public void addSink(final MetricsSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Reports the value of gauge at the end of every interval, e.g. the number of live particles.
+     */
+    public void addGauge(final String name, final LongSupplier gauge) {
+        checkNotReported();
+        report.gaugeNames.add(name);
+        gauges.add(gauge);
+        report.gaugeValues = new double[gauges.size()];
+    }
+
+    /**
+     * Reports how fast an ever increasing count grows, per second over every
+     * interval, e.g. the number of particles emitted so far.
+     */
+    public void addCounter(final String name, final LongSupplier counter) {
+        checkNotReported();
+        report.counterNames.add(name);
+        counters.add(counter);
+        report.counterRates = new double[counters.size()];
+        lastCounts = new long[counters.size()];
+    }
+
+    // The report's columns are fixed once sinks have seen them
+    private void checkNotReported() {
+        if (reported) {
+            throw new IllegalStateException("Gauges and counters must be added before the first report");
+        }
+    }
+
+    public void beginFrame() {
+        final long now = System.nanoTime();
+        frameStartNanos = now;
+        phaseStartNanos = now;
+
+        if (intervalStartNanos == 0) {
+            startInterval(now);
+        }
+    }
+
+    public void endPhase(final FramePhase phase) {
+        final long now = System.nanoTime();
+        phaseTimes[phase.ordinal()].record(now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+
+    /**
+     * Ends the frame, and the interval when it is over, which publishes the report to the sinks.
+     */
+    public void endFrame() {
+        final long now = System.nanoTime();
+        frameTimes.record(now - frameStartNanos);
+
+        if (now - intervalStartNanos >= intervalNanos) {
+            publish(now);
+        }
+    }
+
+    /**
+     * Publishes what there is of the current interval and closes the sinks.
+     */
+    public void close() {
+        if (frameTimes.getCount() > 0) {
+            publish(System.nanoTime());
+        }
+
+        for (final MetricsSink sink : sinks) {
+            sink.close();
+        }
+    }
+
+    private void startInterval(final long now) {
+        intervalStartNanos = now;
+        for (int i = 0; i < counters.size(); ++i) {
+            lastCounts[i] = counters.get(i).getAsLong();
+        }
+    }
+
+    private void publish(final long now) {
+        final double seconds = (now - intervalStartNanos) / 1e9;
+        report.endNanos = now;
+        report.intervalSeconds = seconds;
+
+        report.frameTimes().copyFrom(frameTimes);
+        frameTimes.reset();
+        for (final FramePhase phase : FramePhase.values()) {
+            report.phaseTimes(phase).copyFrom(phaseTimes[phase.ordinal()]);
+            phaseTimes[phase.ordinal()].reset();
+        }
+
+        for (int i = 0; i < gauges.size(); ++i) {
+            report.gaugeValues[i] = gauges.get(i).getAsLong();
+        }
+        for (int i = 0; i < counters.size(); ++i) {
+            final long count = counters.get(i).getAsLong();
+            report.counterRates[i] = seconds > 0 ? (count - lastCounts[i]) / seconds : 0;
+            lastCounts[i] = count;
+        }
+
+        reported = true;
+        for (final MetricsSink sink : sinks) {
+            sink.publish(report);
+        }
+
+        intervalStartNanos = now;
+    }
+}
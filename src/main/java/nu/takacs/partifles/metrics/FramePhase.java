@@ -0,0 +1,21 @@
+package nu.takacs.partifles.metrics;
+
+/**
+ * The steps of a window's frame loop, in the order they run.
+ */
+public enum FramePhase {
+    // Clearing what changed in the last frame
+    CLEAR,
+    // The listener's onRender, simulation included when it is stepped per frame
+    RENDER,
+    // Rasterizing deferred draw calls, near zero when drawing immediately
+    RASTERIZE,
+    // Copying the finished frame for a capture writer
+    CAPTURE,
+    // Copying the frame buffer into the texture
+    UPLOAD,
+    // Drawing the texture and GPU particles
+    DRAW,
+    // Swapping buffers and polling events, which includes waiting for vsync
+    SWAP
+}
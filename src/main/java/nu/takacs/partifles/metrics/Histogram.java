@@ -0,0 +1,117 @@
+package nu.takacs.partifles.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size histogram of non-negative longs, nanoseconds here, in the style
+ * of HdrHistogram. Values below 128 get a bucket each, above that every power
+ * of two is split into 64 buckets, so any value is recorded to within 1/64 of
+ * itself. Values from 2^40 ns, about 18 minutes, share the last bucket.
+ * <p>
+ * Recording is a few shifts and an array increment and never allocates. Not
+ * thread safe, a histogram is recorded to from one thread.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_BITS = 40;
+
+    static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    public void record(final long value) {
+        final long clamped = Math.max(0, Math.min(MAX_VALUE, value));
+
+        ++counts[index(clamped)];
+        ++count;
+        sum += clamped;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    public void reset() {
+        if (count > 0) {
+            Arrays.fill(counts, 0);
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    // Makes this an exact copy of other
+    public void copyFrom(final Histogram other) {
+        System.arraycopy(other.counts, 0, counts, 0, BUCKET_COUNT);
+        count = other.count;
+        sum = other.sum;
+        min = other.min;
+        max = other.max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // Zero when empty
+    public long getMin() {
+        return count > 0 ? min : 0;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * The smallest recorded value that percentile percent of the values are at
+     * or below, to the precision of its bucket. Zero when empty.
+     */
+    public long getPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; ++index) {
+            seen += counts[index];
+            if (seen >= rank) {
+                // The top of the bucket, but never beyond what was actually recorded
+                return Math.max(min, Math.min(max, highestInBucket(index)));
+            }
+        }
+
+        return max;
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Keep the top 7 bits, the leading one of which is implied by the shift
+        final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        final int top = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + top - SUB_BUCKET_HALF;
+    }
+
+    static long highestInBucket(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        final long top = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,127 @@
+package nu.takacs.partifles.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Exposes the latest report as read only double attributes of an MBean, one
+ * per column of MetricsReport.names, for jconsole, VisualVM and the like. The
+ * bean is registered with the platform server on the first report.
+ */
+public class JmxMetricsSink implements MetricsSink {
+    public static final String DEFAULT_NAME = "nu.takacs.partifles:type=FrameMetrics";
+
+    private final ObjectName objectName;
+    private final Bean bean = new Bean();
+
+    public JmxMetricsSink() {
+        this(DEFAULT_NAME);
+    }
+
+    public JmxMetricsSink(final String objectName) {
+        try {
+            this.objectName = new ObjectName(objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Bad MBean name " + objectName, e);
+        }
+    }
+
+    @Override
+    public void publish(final MetricsReport report) {
+        if (bean.names == null) {
+            bean.names = report.names();
+            bean.values = new double[bean.names.size()];
+            register();
+        }
+
+        // Readers on JMX threads see either the old or the new array, never a half filled one
+        final double[] values = new double[bean.values.length];
+        report.values(values);
+        bean.values = values;
+    }
+
+    @Override
+    public void close() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister " + objectName, e);
+        }
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + objectName, e);
+        }
+    }
+
+    private static class Bean implements DynamicMBean {
+        volatile List<String> names = null;
+        volatile double[] values = null;
+
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final int index = names.indexOf(attribute);
+            if (index < 0) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return values[index];
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read only");
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final var list = new AttributeList();
+            final double[] values = this.values;
+            for (final String attribute : attributes) {
+                final int index = names.indexOf(attribute);
+                if (index >= 0) {
+                    list.add(new Attribute(attribute, values[index]));
+                }
+            }
+            return list;
+        }
+
+        // Every metric is read only, so all of them come back rejected
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList(attributes);
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature)
+                throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final var attributes = new MBeanAttributeInfo[names.size()];
+            for (int i = 0; i < attributes.length; ++i) {
+                attributes[i] = new MBeanAttributeInfo(names.get(i), "double", names.get(i),
+                        true, false, false);
+            }
+            return new MBeanInfo(JmxMetricsSink.class.getName(), "Frame loop metrics",
+                    attributes, null, null, null);
+        }
+    }
+}
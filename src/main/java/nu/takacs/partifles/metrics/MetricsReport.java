@@ -0,0 +1,143 @@
+package nu.takacs.partifles.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What FrameMetrics saw over one reporting interval: frame and phase time
+ * histograms, gauges as sampled at the end, and counters as rates per second.
+ * <p>
+ * The same report is refilled for every interval, so sinks copy out what they
+ * want to keep.
+ */
+public class MetricsReport {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Histogram frameTimes = new Histogram();
+    private final Histogram[] phaseTimes = new Histogram[FramePhase.values().length];
+
+    final List<String> gaugeNames = new ArrayList<>();
+    final List<String> counterNames = new ArrayList<>();
+    double[] gaugeValues = new double[0];
+    double[] counterRates = new double[0];
+
+    long endNanos = 0;
+    double intervalSeconds = 0;
+
+    // Flattened names of values(), fixed once the first report is out
+    private List<String> names = null;
+
+    MetricsReport() {
+        for (int i = 0; i < phaseTimes.length; ++i) {
+            phaseTimes[i] = new Histogram();
+        }
+    }
+
+    Histogram frameTimes() {
+        return frameTimes;
+    }
+
+    Histogram phaseTimes(final FramePhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    // System.nanoTime at the end of the interval
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    public double getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public long getFrameCount() {
+        return frameTimes.getCount();
+    }
+
+    public double getFramesPerSecond() {
+        return intervalSeconds > 0 ? frameTimes.getCount() / intervalSeconds : 0;
+    }
+
+    // Whole frames, from the start of one to its end
+    public Histogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    public Histogram getPhaseTimes(final FramePhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    public List<String> getGaugeNames() {
+        return Collections.unmodifiableList(gaugeNames);
+    }
+
+    public double getGauge(final int index) {
+        return gaugeValues[index];
+    }
+
+    public List<String> getCounterNames() {
+        return Collections.unmodifiableList(counterNames);
+    }
+
+    // Increase of the counter per second over the interval
+    public double getCounterRate(final int index) {
+        return counterRates[index];
+    }
+
+    /**
+     * Names of the values as flat columns: fps, the mean, median, 99th
+     * percentile and max of the frame and each phase in milliseconds, then the
+     * gauges and counter rates.
+     */
+    public List<String> names() {
+        if (names == null) {
+            final List<String> columns = new ArrayList<>();
+            columns.add("fps");
+            addTimeNames(columns, "frame");
+            for (final FramePhase phase : FramePhase.values()) {
+                addTimeNames(columns, phase.name().toLowerCase());
+            }
+            columns.addAll(gaugeNames);
+            for (final String counter : counterNames) {
+                columns.add(counter + "PerSecond");
+            }
+            names = Collections.unmodifiableList(columns);
+        }
+        return names;
+    }
+
+    /**
+     * Fills values with the report in the order of names(), values must be at
+     * least as long.
+     */
+    public void values(final double[] values) {
+        int column = 0;
+        values[column++] = getFramesPerSecond();
+        column = putTimes(values, column, frameTimes);
+        for (final Histogram phase : phaseTimes) {
+            column = putTimes(values, column, phase);
+        }
+        for (final double gauge : gaugeValues) {
+            values[column++] = gauge;
+        }
+        for (final double rate : counterRates) {
+            values[column++] = rate;
+        }
+    }
+
+    private static void addTimeNames(final List<String> columns, final String prefix) {
+        columns.add(prefix + "MeanMs");
+        columns.add(prefix + "P50Ms");
+        columns.add(prefix + "P99Ms");
+        columns.add(prefix + "MaxMs");
+    }
+
+    private static int putTimes(final double[] values, final int column, final Histogram times) {
+        values[column] = times.getMean() / NANOS_PER_MILLI;
+        values[column + 1] = times.getPercentile(50) / NANOS_PER_MILLI;
+        values[column + 2] = times.getPercentile(99) / NANOS_PER_MILLI;
+        values[column + 3] = times.getMax() / NANOS_PER_MILLI;
+        return column + 4;
+    }
+}
@@ -0,0 +1,13 @@
+package nu.takacs.partifles.metrics;
+
+/**
+ * Receives a report at the end of every FrameMetrics interval, on the thread
+ * running the frame loop. The report is reused, so sinks must not keep it.
+ */
+public interface MetricsSink {
+    void publish(MetricsReport report);
+
+    // Called once when the metrics are closed
+    default void close() {
+    }
+}
@@ -0,0 +1,48 @@
+package nu.takacs.partifles.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs a one line summary of every report at info level: frame rate, frame
+ * and phase times as median/99th percentile in milliseconds, then the gauges
+ * and counter rates.
+ */
+public class Slf4jMetricsSink implements MetricsSink {
+    private static final Logger LOG = LoggerFactory.getLogger(Slf4jMetricsSink.class);
+
+    @Override
+    public void publish(final MetricsReport report) {
+        if (!LOG.isInfoEnabled()) {
+            return;
+        }
+
+        LOG.info(format(report));
+    }
+
+    static String format(final MetricsReport report) {
+        final var line = new StringBuilder(256);
+        line.append(String.format("%.1f fps, frame %s", report.getFramesPerSecond(), times(report.getFrameTimes())));
+
+        for (final FramePhase phase : FramePhase.values()) {
+            line.append(", ").append(phase.name().toLowerCase()).append(' ')
+                    .append(times(report.getPhaseTimes(phase)));
+        }
+
+        for (int i = 0; i < report.getGaugeNames().size(); ++i) {
+            line.append(", ").append(report.getGaugeNames().get(i)).append(' ')
+                    .append((long) report.getGauge(i));
+        }
+
+        for (int i = 0; i < report.getCounterNames().size(); ++i) {
+            line.append(", ").append(report.getCounterNames().get(i)).append(' ')
+                    .append(String.format("%.0f/s", report.getCounterRate(i)));
+        }
+
+        return line.toString();
+    }
+
+    private static String times(final Histogram times) {
+        return String.format("%.2f/%.2f ms", times.getPercentile(50) / 1e6, times.getPercentile(99) / 1e6);
+    }
+}
@@ -0,0 +1,53 @@
+package nu.takacs.partifles.random;
+
+/**
+ * A seedable stream of random numbers. Implementations are not thread safe,
+ * each thread or chunk of work gets a stream of its own instead of sharing one.
+ * <p>
+ * The fill methods generate a whole range of an array at a time, so emission
+ * can draw e.g. every particle's velocity in one tight loop.
+ */
+public interface RandomSource {
+    /**
+     * Restarts the stream. The same seed always gives the same sequence.
+     */
+    void reseed(long seed);
+
+    long nextLong();
+
+    // Uniform in [0, 1) with all 53 bits of precision
+    default double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // Fills target[from, to) with uniform numbers in [min, max)
+    default void fillUniform(final double[] target, final int from, final int to,
+                             final double min, final double max) {
+        final double range = max - min;
+        for (int i = from; i < to; ++i) {
+            target[i] = min + nextDouble() * range;
+        }
+    }
+
+    /**
+     * Fills target[from, to) with normally distributed numbers. Box-Muller,
+     * so every pair of uniforms becomes two outputs with no rejection loop.
+     */
+    default void fillGaussian(final double[] target, final int from, final int to,
+                              final double mean, final double standardDeviation) {
+        int i = from;
+        for (; i + 1 < to; i += 2) {
+            // 1 - u keeps the logarithm away from zero
+            final double radius = standardDeviation * Math.sqrt(-2.0 * Math.log(1.0 - nextDouble()));
+            final double angle = 2.0 * Math.PI * nextDouble();
+
+            target[i] = mean + radius * Math.cos(angle);
+            target[i + 1] = mean + radius * Math.sin(angle);
+        }
+
+        if (i < to) {
+            final double radius = standardDeviation * Math.sqrt(-2.0 * Math.log(1.0 - nextDouble()));
+            target[i] = mean + radius * Math.cos(2.0 * Math.PI * nextDouble());
+        }
+    }
+}
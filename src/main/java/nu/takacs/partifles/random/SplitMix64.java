@@ -0,0 +1,38 @@
+package nu.takacs.partifles.random;
+
+/**
+ * Steele, Lea and Flood's SplitMix64, the generator behind
+ * java.util.SplittableRandom: a 64 bit counter run through a mixing function.
+ * One add and a few multiply-xorshifts per number, and seeds that differ by
+ * one still give unrelated streams. With the same seed it produces the same
+ * numbers as new SplittableRandom(seed).
+ */
+public class SplitMix64 implements RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    public SplitMix64(final long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public void reseed(final long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Stafford variant 13, scrambles a value so that neighbouring inputs give
+     * unrelated outputs. Handy for turning counters into seeds.
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
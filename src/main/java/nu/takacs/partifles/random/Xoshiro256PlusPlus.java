@@ -0,0 +1,41 @@
+package nu.takacs.partifles.random;
+
+/**
+ * Blackman and Vigna's xoshiro256++, a 256 bit state generator with a period
+ * of 2^256 - 1. Statistically stronger than SplitMix64 for long streams at
+ * about the same speed. The state is filled from the seed by SplitMix64, as
+ * the authors recommend, so it is never all zero.
+ */
+public class Xoshiro256PlusPlus implements RandomSource {
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    public Xoshiro256PlusPlus(final long seed) {
+        reseed(seed);
+    }
+
+    @Override
+    public void reseed(long seed) {
+        s0 = SplitMix64.mix64(seed += 0x9e3779b97f4a7c15L);
+        s1 = SplitMix64.mix64(seed += 0x9e3779b97f4a7c15L);
+        s2 = SplitMix64.mix64(seed += 0x9e3779b97f4a7c15L);
+        s3 = SplitMix64.mix64(seed + 0x9e3779b97f4a7c15L);
+    }
+
+    @Override
+    public long nextLong() {
+        final long result = Long.rotateLeft(s0 + s3, 23) + s0;
+        final long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return result;
+    }
+}
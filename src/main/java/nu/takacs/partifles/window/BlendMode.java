@@ -0,0 +1,99 @@
+package nu.takacs.partifles.window;
+
+/**
+ * How a source colour is combined with the frame buffer. Pixels are packed
+ * 0x00RRGGBB ints and alpha is 0-255. All modes use integer fixed-point
+ * arithmetic, red and blue are processed together in one int and green on
+ * its own, so a pixel costs a handful of multiplies instead of three
+ * separate channel blends.
+ */
+public enum BlendMode {
+    // dst * (1 - a) + src * a
+    ALPHA_OVER {
+        @Override
+        public int blend(final int dst, final int src, final int alpha) {
+            final int a = alpha + (alpha >>> 7);
+            final int na = 256 - a;
+
+            final int rb = ((src & 0xFF00FF) * a + (dst & 0xFF00FF) * na) >>> 8;
+            final int g = ((src & 0x00FF00) * a + (dst & 0x00FF00) * na) >>> 8;
+
+            return (rb & 0xFF00FF) | (g & 0x00FF00);
+        }
+
+        @Override
+        public int blendPremultiplied(final int dst, final int src, final int alpha) {
+            // dst * (1 - a) + src, saturating in case rounding pushes a channel over
+            return ADDITIVE.blend(scale(dst, 255 - alpha), src, 255);
+        }
+    },
+
+    // dst + src * a, saturating at 255 per channel
+    ADDITIVE {
+        @Override
+        public int blend(final int dst, final int src, final int alpha) {
+            final int s = scale(src, alpha);
+
+            int rb = (s & 0xFF00FF) + (dst & 0xFF00FF);
+            int g = (s & 0x00FF00) + (dst & 0x00FF00);
+
+            // Turn the carry out of each channel into a full channel mask
+            final int rbCarry = rb & 0x1000100;
+            final int gCarry = g & 0x0010000;
+            rb |= rbCarry - (rbCarry >>> 8);
+            g |= gCarry - (gCarry >>> 8);
+
+            return (rb & 0xFF00FF) | (g & 0x00FF00);
+        }
+    },
+
+    // 1 - (1 - dst) * (1 - src * a), brightens like additive but never clips
+    SCREEN {
+        @Override
+        public int blend(final int dst, final int src, final int alpha) {
+            final int s = scale(src, alpha);
+
+            return screenChannel(dst >>> 16 & 0xFF, s >>> 16 & 0xFF) << 16
+                    | screenChannel(dst >>> 8 & 0xFF, s >>> 8 & 0xFF) << 8
+                    | screenChannel(dst & 0xFF, s & 0xFF);
+        }
+    },
+
+    // Per channel maximum of dst and src * a
+    MAX {
+        @Override
+        public int blend(final int dst, final int src, final int alpha) {
+            final int s = scale(src, alpha);
+
+            return Math.max(dst & 0xFF0000, s & 0xFF0000)
+                    | Math.max(dst & 0x00FF00, s & 0x00FF00)
+                    | Math.max(dst & 0x0000FF, s & 0x0000FF);
+        }
+    };
+
+    public abstract int blend(int dst, int src, int alpha);
+
+    /**
+     * Like blend for a source that is already multiplied by its alpha, the way
+     * sprite pixels are stored. The other modes only use the alpha through the
+     * source, so for them this is blend at full alpha.
+     */
+    public int blendPremultiplied(final int dst, final int src, final int alpha) {
+        return blend(dst, src, 255);
+    }
+
+    // Every channel of color multiplied by alpha / 255
+    static int scale(final int color, final int alpha) {
+        final int a = alpha + (alpha >>> 7);
+
+        final int rb = ((color & 0xFF00FF) * a) >>> 8;
+        final int g = ((color & 0x00FF00) * a) >>> 8;
+
+        return (rb & 0xFF00FF) | (g & 0x00FF00);
+    }
+
+    private static int screenChannel(final int d, final int s) {
+        final int t = (255 - d) * (255 - s) + 128;
+        return 255 - ((t + (t >>> 8)) >>> 8);
+    }
+}
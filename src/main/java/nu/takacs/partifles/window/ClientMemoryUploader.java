@@ -0,0 +1,69 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexSubImage2D;
+
+/**
+ * Allocates the texture storage once and replaces the changed rows from
+ * client memory every frame. With reallocate set it instead does a full
+ * glTexImage2D every frame, the original behaviour.
+ */
+public class ClientMemoryUploader implements TextureUploader {
+    private final int width;
+    private final int height;
+    private final PixelFormat format;
+    private final int rowBytes;
+    private final boolean reallocate;
+
+    // Window into the frame for the rows being uploaded, kept to avoid per-frame allocation
+    private ByteBuffer rows = null;
+    private ByteBuffer rowsOf = null;
+
+    public ClientMemoryUploader(final int width,
+                                final int height,
+                                final PixelFormat format,
+                                final boolean reallocate) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.rowBytes = width * format.bytesPerPixel;
+        this.reallocate = reallocate;
+
+        if (!reallocate) {
+            glTexImage2D(GL_TEXTURE_2D, 0, format.glInternalFormat, width, height, 0,
+                    format.glFormat, format.glType, (ByteBuffer) null);
+        }
+    }
+
+    @Override
+    public void upload(final ByteBuffer frame, final int fromRow, final int toRow) {
+        if (reallocate) {
+            glTexImage2D(GL_TEXTURE_2D, 0, format.glInternalFormat, width, height, 0,
+                    format.glFormat, format.glType, frame);
+            return;
+        }
+
+        if (fromRow >= toRow) {
+            return;
+        }
+
+        if (frame != rowsOf) {
+            rowsOf = frame;
+            rows = frame.duplicate();
+        }
+
+        rows.clear();
+        rows.position(fromRow * rowBytes);
+        rows.limit(toRow * rowBytes);
+
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, fromRow, width, toRow - fromRow,
+                format.glFormat, format.glType, rows);
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,442 @@
+package nu.takacs.partifles.window;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records draw calls during the frame instead of rasterizing them right away.
+ * On flush the commands are binned into square screen tiles by their bounding
+ * box, and the tiles are rasterized in parallel, each worker with its own
+ * rasterizer clipped to the tile it is working on. Tiles don't overlap, so
+ * workers never touch the same pixel, and within a tile the commands run in
+ * submission order, which keeps the result identical to drawing directly.
+ *
+ * Arrays passed to drawColumn are referenced, not copied, and must not change
+ * before the flush.
+ */
+public class DeferredRasterizer implements WindowContext {
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private static final int OP_CLEAR = 0;
+    private static final int OP_GRADIENT = 1;
+    private static final int OP_RECT = 2;
+    private static final int OP_LINE = 3;
+    private static final int OP_COLUMN_PIXELS = 4;
+    private static final int OP_GRADIENT_CIRCLE = 5;
+    private static final int OP_BLEND_MODE = 6;
+    private static final int OP_COLUMN = 7;
+    private static final int OP_SPRITE = 8;
+
+    private static final BlendMode[] BLEND_MODES = BlendMode.values();
+
+    private final SoftwareRasterizer target;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    private final int numTiles;
+
+    private final TileRasterizer[] workers;
+    private final ExecutorService executor;
+    private final List<Callable<Void>> lanes;
+    private final AtomicInteger nextTile = new AtomicInteger();
+
+    // Command c has opcode ops[c], its arguments start at args[argStart[c]]
+    // and it covers tiles [tileBounds[4c], tileBounds[4c + 2]) x [tileBounds[4c + 1], tileBounds[4c + 3])
+    private int[] ops = new int[1024];
+    private int[] argStart = new int[1024];
+    private int[] tileBounds = new int[4 * 1024];
+    private int[] args = new int[8 * 1024];
+    private Object[] refs = new Object[16];
+    private int commandCount = 0;
+    private int argCount = 0;
+    private int refCount = 0;
+
+    // Commands of tile t are tileCommands[tileStart[t]] until tileStart[t + 1]
+    private final int[] tileStart;
+    private final int[] tileCursor;
+    private int[] tileCommands = new int[1024];
+
+    // Blend mode in effect when the frame started, each tile starts out with it
+    private BlendMode frameBlendMode = BlendMode.ALPHA_OVER;
+    private BlendMode blendMode = BlendMode.ALPHA_OVER;
+
+    public DeferredRasterizer(final SoftwareRasterizer target, final int tileSize, final int threads) {
+        this.target = target;
+        this.tileSize = tileSize;
+        this.tilesX = (target.viewPortWidth + tileSize - 1) / tileSize;
+        this.tilesY = (target.viewPortHeight + tileSize - 1) / tileSize;
+        this.numTiles = tilesX * tilesY;
+        this.tileStart = new int[numTiles + 1];
+        this.tileCursor = new int[numTiles];
+
+        workers = new TileRasterizer[threads];
+        lanes = new ArrayList<>(threads);
+
+        for (int lane = 0; lane < threads; ++lane) {
+            final var worker = new TileRasterizer(target.frameBuffer, target.pixelFormat,
+                    target.viewPortWidth, target.viewPortHeight);
+            workers[lane] = worker;
+            lanes.add(() -> {
+                rasterizeTiles(worker);
+                return null;
+            });
+        }
+
+        executor = threads > 1
+                ? Executors.newFixedThreadPool(threads, runnable -> {
+                    final var thread = new Thread(runnable, "tile-rasterizer");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    /**
+     * Rasterizes everything recorded since the previous flush, returns when all tiles are done.
+     */
+    public void flush() {
+        if (commandCount > 0) {
+            bin();
+            nextTile.set(0);
+
+            if (executor == null) {
+                rasterizeTiles(workers[0]);
+            } else {
+                runLanes();
+            }
+
+            // Let the target clear what the workers drew on the next frame
+            for (final TileRasterizer worker : workers) {
+                target.dirtyRows.add(worker.dirtyRows);
+                worker.dirtyRows.reset();
+            }
+        }
+
+        Arrays.fill(refs, 0, refCount, null);
+        commandCount = 0;
+        argCount = 0;
+        refCount = 0;
+        frameBlendMode = blendMode;
+    }
+
+    // Tile and command pairs the last flush rasterized, a command counts once for every tile it covers
+    int getBinnedCount() {
+        return tileStart[numTiles];
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void runLanes() {
+        try {
+            for (final Future<Void> future : executor.invokeAll(lanes)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rasterizing tiles", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to rasterize tiles", e.getCause());
+        }
+    }
+
+    // Counting sort of command indices by tile, keeps submission order within each tile
+    private void bin() {
+        Arrays.fill(tileStart, 0);
+
+        for (int c = 0; c < commandCount; ++c) {
+            for (int ty = tileBounds[4 * c + 1]; ty < tileBounds[4 * c + 3]; ++ty) {
+                for (int tx = tileBounds[4 * c]; tx < tileBounds[4 * c + 2]; ++tx) {
+                    ++tileStart[ty * tilesX + tx + 1];
+                }
+            }
+        }
+
+        for (int t = 0; t < numTiles; ++t) {
+            tileStart[t + 1] += tileStart[t];
+        }
+
+        if (tileCommands.length < tileStart[numTiles]) {
+            tileCommands = new int[Math.max(tileStart[numTiles], 2 * tileCommands.length)];
+        }
+
+        System.arraycopy(tileStart, 0, tileCursor, 0, numTiles);
+
+        for (int c = 0; c < commandCount; ++c) {
+            for (int ty = tileBounds[4 * c + 1]; ty < tileBounds[4 * c + 3]; ++ty) {
+                for (int tx = tileBounds[4 * c]; tx < tileBounds[4 * c + 2]; ++tx) {
+                    tileCommands[tileCursor[ty * tilesX + tx]++] = c;
+                }
+            }
+        }
+    }
+
+    private void rasterizeTiles(final TileRasterizer raster) {
+        int tile;
+
+        while ((tile = nextTile.getAndIncrement()) < numTiles) {
+            if (tileStart[tile] == tileStart[tile + 1]) {
+                continue;
+            }
+
+            final int left = (tile % tilesX) * tileSize;
+            final int top = (tile / tilesX) * tileSize;
+
+            raster.setClip(left, top, left + tileSize, top + tileSize);
+            raster.setBlendMode(frameBlendMode);
+
+            for (int k = tileStart[tile]; k < tileStart[tile + 1]; ++k) {
+                execute(raster, tileCommands[k]);
+            }
+        }
+    }
+
+    private void execute(final SoftwareRasterizer raster, final int c) {
+        final int[] a = args;
+        final int i = argStart[c];
+
+        switch (ops[c]) {
+            case OP_CLEAR:
+                raster.clear(a[i], a[i + 1], a[i + 2]);
+                break;
+            case OP_GRADIENT:
+                raster.drawGradient();
+                break;
+            case OP_RECT:
+                raster.drawRect(a[i], a[i + 1], a[i + 2], a[i + 3], a[i + 4], a[i + 5], a[i + 6]);
+                break;
+            case OP_LINE:
+                raster.drawLine(a[i], a[i + 1], a[i + 2], a[i + 3], a[i + 4], a[i + 5], a[i + 6], a[i + 7]);
+                break;
+            case OP_COLUMN_PIXELS:
+                raster.drawColumn(a[i], a[i + 1], (byte[]) refs[a[i + 2]]);
+                break;
+            case OP_GRADIENT_CIRCLE:
+                raster.drawGradientCircle(a[i], a[i + 1], a[i + 2], a[i + 3], a[i + 4], a[i + 5]);
+                break;
+            case OP_BLEND_MODE:
+                raster.setBlendMode(BLEND_MODES[a[i]]);
+                break;
+            case OP_COLUMN:
+                raster.drawColumn(a[i], a[i + 1], a[i + 2], a[i + 3], a[i + 4], a[i + 5]);
+                break;
+            case OP_SPRITE:
+                raster.drawSprite((SpriteAtlas) refs[a[i]], a[i + 1], a[i + 2], a[i + 3],
+                        Float.intBitsToFloat(a[i + 4]), a[i + 5], Float.intBitsToFloat(a[i + 6]));
+                break;
+            default:
+                throw new IllegalStateException("Unknown draw command " + ops[c]);
+        }
+    }
+
+    // Starts a command covering the given pixel rectangle, returns the index of its first argument
+    private int record(final int op, final int left, final int top, final int right, final int bottom, final int numArgs) {
+        if (commandCount == ops.length) {
+            ops = Arrays.copyOf(ops, 2 * commandCount);
+            argStart = Arrays.copyOf(argStart, 2 * commandCount);
+            tileBounds = Arrays.copyOf(tileBounds, 8 * commandCount);
+        }
+
+        if (argCount + numArgs > args.length) {
+            args = Arrays.copyOf(args, 2 * (argCount + numArgs));
+        }
+
+        final int c = commandCount++;
+        ops[c] = op;
+        argStart[c] = argCount;
+
+        // Pixel rectangle to tile range, empty when outside the viewport
+        final int fromX = Math.max(0, left);
+        final int fromY = Math.max(0, top);
+        final int toX = Math.min(target.viewPortWidth, right);
+        final int toY = Math.min(target.viewPortHeight, bottom);
+
+        if (fromX >= toX || fromY >= toY) {
+            Arrays.fill(tileBounds, 4 * c, 4 * c + 4, 0);
+        } else {
+            tileBounds[4 * c] = fromX / tileSize;
+            tileBounds[4 * c + 1] = fromY / tileSize;
+            tileBounds[4 * c + 2] = (toX - 1) / tileSize + 1;
+            tileBounds[4 * c + 3] = (toY - 1) / tileSize + 1;
+        }
+
+        final int first = argCount;
+        argCount += numArgs;
+        return first;
+    }
+
+    private int recordEverywhere(final int op, final int numArgs) {
+        return record(op, 0, 0, target.viewPortWidth, target.viewPortHeight, numArgs);
+    }
+
+    @Override
+    public void clear(final int r, final int g, final int b) {
+        final int i = recordEverywhere(OP_CLEAR, 3);
+        args[i] = r;
+        args[i + 1] = g;
+        args[i + 2] = b;
+    }
+
+    @Override
+    public void drawGradient() {
+        recordEverywhere(OP_GRADIENT, 0);
+    }
+
+    @Override
+    public void drawRect(final int x1, final int y1, final int width, final int height,
+                         final int r, final int g, final int b) {
+        final int i = record(OP_RECT, x1, y1, x1 + width, y1 + height, 7);
+        args[i] = x1;
+        args[i + 1] = y1;
+        args[i + 2] = width;
+        args[i + 3] = height;
+        args[i + 4] = r;
+        args[i + 5] = g;
+        args[i + 6] = b;
+    }
+
+    @Override
+    public void drawLine(final int x1, final int y1, final int x2, final int y2, final int width,
+                         final int r, final int g, final int b) {
+        // Pixels reach half the width to either side of the ends. Steep lines step
+        // along a float pixel index whose rounding adds up over the rows, so they
+        // can drift sideways by that much more.
+        final int rows = Math.abs(y2 - y1);
+        final int drift = rows > Math.abs(x2 - x1)
+                ? (int) Math.ceil(rows * Math.ulp((float) (Math.max(y1, y2) + 1) * target.viewPortWidth) / 2) + 1
+                : 0;
+        int left = Math.min(x1, x2) - width / 2 - drift - 1;
+        int right = Math.max(x1, x2) + width / 2 + drift + 2;
+
+        // Lines reaching past the sides wrap around the row ends, those take whole rows like DirtyRows does
+        if (left < 0 || right > target.viewPortWidth) {
+            left = 0;
+            right = target.viewPortWidth;
+        }
+
+        final int i = record(OP_LINE, left, Math.min(y1, y2) - 1, right, Math.max(y1, y2) + 2, 8);
+        args[i] = x1;
+        args[i + 1] = y1;
+        args[i + 2] = x2;
+        args[i + 3] = y2;
+        args[i + 4] = width;
+        args[i + 5] = r;
+        args[i + 6] = g;
+        args[i + 7] = b;
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final byte[] pixels) {
+        final int i = record(OP_COLUMN_PIXELS, x, y, x + 1, y + pixels.length / 3, 3);
+        args[i] = x;
+        args[i + 1] = y;
+        args[i + 2] = addRef(pixels);
+    }
+
+    private int addRef(final Object ref) {
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, 2 * refCount);
+        }
+
+        refs[refCount] = ref;
+        return refCount++;
+    }
+
+    @Override
+    public void drawGradientCircle(final int x, final int y, final int radius,
+                                   final int r, final int g, final int b) {
+        final int i = record(OP_GRADIENT_CIRCLE, x - radius, y - radius, x + radius, y + radius, 6);
+        args[i] = x;
+        args[i + 1] = y;
+        args[i + 2] = radius;
+        args[i + 3] = r;
+        args[i + 4] = g;
+        args[i + 5] = b;
+    }
+
+    @Override
+    public void drawSprite(final SpriteAtlas atlas, final int frame, final int x, final int y,
+                           final float scale, final int tint, final float alpha) {
+        final int width = atlas.scaledWidth(scale);
+        final int height = atlas.scaledHeight(scale);
+        final int left = x - width / 2;
+        final int bottom = y - height / 2;
+
+        final int i = record(OP_SPRITE, left, bottom, left + width, bottom + height, 7);
+        args[i] = addRef(atlas);
+        args[i + 1] = frame;
+        args[i + 2] = x;
+        args[i + 3] = y;
+        args[i + 4] = Float.floatToIntBits(scale);
+        args[i + 5] = tint;
+        args[i + 6] = Float.floatToIntBits(alpha);
+    }
+
+    @Override
+    public void drawParticles(final ParticleBatch batch) {
+        // Circles the target draws some other way never reach the tiles
+        if (!target.drawParticleBatch(batch, blendMode)) {
+            WindowContext.super.drawParticles(batch);
+        } else if (batch.hasSprites()) {
+            batch.drawSprites(this);
+        }
+    }
+
+    @Override
+    public void setBlendMode(final BlendMode blendMode) {
+        if (blendMode == this.blendMode) {
+            return;
+        }
+
+        this.blendMode = blendMode;
+        final int i = recordEverywhere(OP_BLEND_MODE, 1);
+        args[i] = blendMode.ordinal();
+    }
+
+    @Override
+    public BlendMode getBlendMode() {
+        return blendMode;
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final int height,
+                           final int r, final int g, final int b) {
+        final int i = record(OP_COLUMN, x, y, x + 1, y + height, 6);
+        args[i] = x;
+        args[i + 1] = y;
+        args[i + 2] = height;
+        args[i + 3] = r;
+        args[i + 4] = g;
+        args[i + 5] = b;
+    }
+
+    @Override
+    public int getViewPortWidth() {
+        return target.getViewPortWidth();
+    }
+
+    @Override
+    public int getViewPortHeight() {
+        return target.getViewPortHeight();
+    }
+
+    @Override
+    public boolean isKeyDown(final Key key) {
+        return target.isKeyDown(key);
+    }
+
+    @Override
+    public long getFrameTimeNanos() {
+        return target.getFrameTimeNanos();
+    }
+}
@@ -0,0 +1,120 @@
+package nu.takacs.partifles.window;
+
+import java.util.Arrays;
+
+/**
+ * Tracks which part of every frame buffer row has been drawn to, as one
+ * horizontal span per row. Coarser than exact pixels, but cheap to update
+ * from every draw call and good enough to skip the untouched bulk of a
+ * sparse frame.
+ */
+public class DirtyRows {
+    private final int width;
+    private final int height;
+
+    // Dirty span of each row, [minX, maxX). Clean rows have minX >= maxX.
+    private final int[] minX;
+    private final int[] maxX;
+
+    // Dirty rows are within [minRow, maxRow)
+    private int minRow;
+    private int maxRow;
+
+    public DirtyRows(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.minX = new int[height];
+        this.maxX = new int[height];
+        reset();
+    }
+
+    /**
+     * Marks a rectangle, clipped to the frame. Rectangles that cross the left or
+     * right edge mark their rows in full, since the row-major draw loops wrap
+     * around into the neighbouring row there.
+     */
+    public void markRect(final int x, final int y, final int rectWidth, final int rectHeight) {
+        final int fromRow = Math.max(0, y);
+        final int toRow = Math.min(height, y + rectHeight);
+
+        if (fromRow >= toRow || rectWidth <= 0) {
+            return;
+        }
+
+        final int fromX;
+        final int toX;
+        if (x < 0 || x + rectWidth > width) {
+            fromX = 0;
+            toX = width;
+        } else {
+            fromX = x;
+            toX = x + rectWidth;
+        }
+
+        for (int row = fromRow; row < toRow; ++row) {
+            if (fromX < minX[row]) {
+                minX[row] = fromX;
+            }
+            if (toX > maxX[row]) {
+                maxX[row] = toX;
+            }
+        }
+
+        minRow = Math.min(minRow, fromRow);
+        maxRow = Math.max(maxRow, toRow);
+    }
+
+    public void markRows(final int fromRow, final int toRow) {
+        markRect(0, fromRow, width, toRow - fromRow);
+    }
+
+    public void markAll() {
+        markRect(0, 0, width, height);
+    }
+
+    /**
+     * Adds everything dirty in other, which must have the same dimensions.
+     */
+    public void add(final DirtyRows other) {
+        for (int row = other.minRow; row < other.maxRow; ++row) {
+            if (other.isRowDirty(row)) {
+                minX[row] = Math.min(minX[row], other.minX[row]);
+                maxX[row] = Math.max(maxX[row], other.maxX[row]);
+            }
+        }
+
+        minRow = Math.min(minRow, other.minRow);
+        maxRow = Math.max(maxRow, other.maxRow);
+    }
+
+    public void reset() {
+        Arrays.fill(minX, width);
+        Arrays.fill(maxX, 0);
+        minRow = height;
+        maxRow = 0;
+    }
+
+    public boolean isEmpty() {
+        return minRow >= maxRow;
+    }
+
+    public boolean isRowDirty(final int row) {
+        return minX[row] < maxX[row];
+    }
+
+    public int getMinRow() {
+        return minRow;
+    }
+
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    public int getMinX(final int row) {
+        return minX[row];
+    }
+
+    public int getMaxX(final int row) {
+        return maxX[row];
+    }
+}
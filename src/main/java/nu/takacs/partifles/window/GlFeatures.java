@@ -0,0 +1,39 @@
+package nu.takacs.partifles.window;
+
+/**
+ * The GL features that decide how frames are uploaded to the texture and how
+ * particles are drawn.
+ */
+public class GlFeatures {
+    // GL 2.1 or ARB_pixel_buffer_object
+    public final boolean pixelBufferObject;
+
+    // GL 3.0 or ARB_map_buffer_range
+    public final boolean mapBufferRange;
+
+    // GL 3.2 or ARB_sync
+    public final boolean sync;
+
+    // GL 4.4 or ARB_buffer_storage, needed for persistent mapping
+    public final boolean bufferStorage;
+
+    // GL 3.1, glDrawArraysInstanced
+    public final boolean drawInstanced;
+
+    // GL 3.3, glVertexAttribDivisor for per instance vertex attributes
+    public final boolean instancedArrays;
+
+    public GlFeatures(final boolean pixelBufferObject,
+                      final boolean mapBufferRange,
+                      final boolean sync,
+                      final boolean bufferStorage,
+                      final boolean drawInstanced,
+                      final boolean instancedArrays) {
+        this.pixelBufferObject = pixelBufferObject;
+        this.mapBufferRange = mapBufferRange;
+        this.sync = sync;
+        this.bufferStorage = bufferStorage;
+        this.drawInstanced = drawInstanced;
+        this.instancedArrays = instancedArrays;
+    }
+}
@@ -0,0 +1,97 @@
+package nu.takacs.partifles.window;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
+import static org.lwjgl.opengl.GL11.GL_NO_ERROR;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glGetError;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+
+/**
+ * Shadow copy of the GL bindings the frame loop uses. Binding something that
+ * is already bound is skipped instead of going to the driver. Anything that
+ * changes these bindings behind its back has to call invalidate.
+ * <p>
+ * Error checks only query the driver when debugging is on, since every
+ * glGetError is a full round trip that stalls the pipeline.
+ */
+public class GlRenderState {
+    private static final Logger LOG = LoggerFactory.getLogger(GlRenderState.class);
+
+    // Never a valid GL name, so the first bind always goes through
+    private static final int UNKNOWN = -1;
+
+    private final boolean debug;
+
+    private int program;
+    private int activeTexture;
+    private int texture2d;
+    private int vertexArray;
+
+    public GlRenderState(final boolean debug) {
+        this.debug = debug;
+        invalidate();
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void useProgram(final ShaderProgram shaderProgram) {
+        if (program != shaderProgram.getId()) {
+            program = shaderProgram.getId();
+            glUseProgram(program);
+        }
+    }
+
+    public void activeTexture(final int textureUnit) {
+        if (activeTexture != textureUnit) {
+            activeTexture = textureUnit;
+            glActiveTexture(textureUnit);
+        }
+    }
+
+    // Binds to GL_TEXTURE_2D of the active texture unit
+    public void bindTexture(final int texture) {
+        if (texture2d != texture) {
+            texture2d = texture;
+            glBindTexture(GL_TEXTURE_2D, texture);
+        }
+    }
+
+    public void bindVertexArray(final int vertexArray) {
+        if (this.vertexArray != vertexArray) {
+            this.vertexArray = vertexArray;
+            glBindVertexArray(vertexArray);
+        }
+    }
+
+    /**
+     * Forgets what is bound, after code that does its own binding.
+     */
+    public void invalidate() {
+        program = UNKNOWN;
+        activeTexture = UNKNOWN;
+        texture2d = UNKNOWN;
+        vertexArray = UNKNOWN;
+    }
+
+    /**
+     * Throws on pending GL errors. A no-op unless debugging.
+     */
+    public void checkErrors(final String operation) {
+        if (!debug) {
+            return;
+        }
+
+        int glErrorCode;
+        while ((glErrorCode = glGetError()) != GL_NO_ERROR) {
+            LOG.error("Got GL error after {} code: 0x{} ", operation, Integer.toHexString(glErrorCode));
+            throw new RuntimeException("GL error 0x" + Integer.toHexString(glErrorCode) + " after " + operation);
+        }
+    }
+}
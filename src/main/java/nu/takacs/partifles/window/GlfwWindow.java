@@ -1,5 +1,9 @@
 package nu.takacs.partifles.window;
 
+import nu.takacs.partifles.math.Vec2;
+import nu.takacs.partifles.capture.FrameCapture;
+import nu.takacs.partifles.metrics.FrameMetrics;
+import nu.takacs.partifles.metrics.FramePhase;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.system.Configuration;
@@ -14,7 +18,6 @@ import java.util.Map;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
-import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
 import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
@@ -26,6 +29,8 @@ public class GlfwWindow {
 
     private static final Logger LOG = LoggerFactory.getLogger(GlfwWindow.class);
 
+    private static final int PBO_RING_SIZE = 3;
+
     private static final String VERTEX_SHADER_SOURCE =
             "#version 400\n"
                     + "layout (location = 0) in vec3 position;"
@@ -70,204 +75,59 @@ public class GlfwWindow {
 
     private Map<Key, Boolean> inputKeyStates;
 
-    private class GlfwWindowContext implements WindowContext {
-        private GlfwWindowContext() {
-        }
-
-        @Override
-        public void drawGradient() {
-            final int textureNumPixels = viewPortWidth * viewPortHeight;
-            for (int i = 0; i < textureNumPixels; ++i) {
-                frameBuffer.put(i * 3, (byte) (255 * ((i % viewPortWidth) / (float) viewPortWidth))); // Red
-                frameBuffer.put(i * 3 + 1, (byte) 0x00); // Green
-                frameBuffer.put(i * 3 + 2, (byte) 0x00); // Blue
-            }
-        }
-
-        @Override
-        public void drawRect(final int x, final int y,
-                             final int width, final int height,
-                             final int r, final int g, final int b) {
-            // TODO: range checks
-
-            // Going row by row as it fits our data structure
-            for (int row = y; row < y + height; ++row) {
-                for (int i = (row * viewPortWidth + x); i < (row * viewPortWidth + x + width); ++i) {
-                    if (0 <= i && i < numPixels) {
-                        frameBuffer.put(i * 3, (byte) (r & 0xFF));
-                        frameBuffer.put(i * 3 + 1, (byte) (g & 0xFF));
-                        frameBuffer.put(i * 3 + 2, (byte) (b & 0xFF));
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void drawLine(
-                final int x1, final int y1, final int x2, final int y2,
-                final int width,
-                final int r, final int g, final int b) {
-            // TODO: remove multiplication and other optimzations
-            // TODO: thickness
-
-            // Compute slope k
-            // Draw line by line
-            // Maybe draw from the other axis when slope is above 1 for more consistent thickness?
-
-            final float k = Math.abs(y2 - y1) / (float) Math.abs(x1 - x2);
-
-            if (Float.isInfinite(k) || k > 1.0f) {
-                drawLineAlongY(x1, y1, x2, y2, width, r, g, b);
-            } else {
-                drawLineAlongX(x1, y1, x2, y2, width, r, g, b);
-            }
-        }
-
-        @Override
-        public void drawColumn(final int x, final int y, final byte[] pixels) {
-            int j = (y * viewPortWidth + x) * 3;
-
-            for (int i = 0; i < pixels.length; i += 3) {
-                frameBuffer.put(j, pixels[i]);
-                frameBuffer.put(j + 1, pixels[i + 1]);
-                frameBuffer.put(j + 2, pixels[i + 2]);
-
-                j += viewPortWidth * 3;
-            }
-        }
-
-        @Override
-        public void drawGradientCircle(int x, int y, int radius, int r, int g, int b) {
-            for(int row = Math.max(0, y - radius); row < viewPortHeight && row < (y + radius); ++row) {
-                final int dy = Math.abs(y - row);
-
-                final int w = (int) Math.sqrt(radius * radius - dy * dy);
-
-                for (int col = Math.max(0, x - w); col < x + w && col < viewPortWidth; ++col) {
-                    double dist = Math.sqrt((col - x) * (col - x) + dy * dy) / radius;
-                    double alpha = 1.0 - dist;
-
-                    alphaBlend((row * viewPortWidth + col) * 3, alpha, r);
-                    alphaBlend((row * viewPortWidth + col) * 3 + 1, alpha, g);
-                    alphaBlend((row * viewPortWidth + col) * 3 + 2, alpha, b);
-                }
-            }
-        }
-
-        private void alphaBlend(final int i, final double a, final int color) {
-            final int blended = (int)(a * color + (1.0 - a) * Byte.toUnsignedInt(frameBuffer.get(i)));
-            frameBuffer.put(i, (byte) (blended & 0xFF));
-        }
-
-        @Override
-        public void drawColumn(final int x, final int y, final int height, int r, int g, int b) {
-
-            int j = (y * viewPortWidth + x) * 3;
-            for (int i = 0; i < height; ++i) {
-                frameBuffer.put(j, (byte) (r & 0xFF));
-                frameBuffer.put(j + 1, (byte) (g & 0xFF));
-                frameBuffer.put(j + 2, (byte) (b & 0xFF));
+    // Handed to onMouseMove, reused for every cursor event
+    private final Vec2 mouseLocation = new Vec2();
 
-                j += viewPortWidth * 3;
-            }
-        }
-
-        @Override
-        public int getViewPortWidth() {
-            return viewPortWidth;
-        }
-
-        @Override
-        public int getViewPortHeight() {
-            return viewPortHeight;
+    private class GlfwWindowContext extends SoftwareRasterizer {
+        private GlfwWindowContext(final ByteBuffer frameBuffer,
+                                  final PixelFormat pixelFormat,
+                                  final int viewPortWidth,
+                                  final int viewPortHeight) {
+            super(frameBuffer, pixelFormat, viewPortWidth, viewPortHeight);
         }
 
         @Override
         public boolean isKeyDown(final Key key) {
             return inputKeyStates.get(key);
         }
-    }
-
-    private void drawLineAlongX(
-            final int x1, final int y1, final int x2, final int y2,
-            final int width,
-            final int r, final int g, final int b) {
-        int xa;
-        int ya;
-        int xb;
-        int yb;
-
-        if (x1 < x2) {
-            xa = x1;
-            ya = y1;
-            xb = x2;
-            yb = y2;
-        } else {
-            xa = x2;
-            ya = y2;
-            xb = x1;
-            yb = y1;
-        }
-
-        final float k = (yb - ya) / (float) (xb - xa);
 
-        int dx = (xb - xa);
-
-        for (int ix = 0; ix < dx; ++ix) {
-            float y = ya + ix * k;
-            int x = xa + ix;
-            int i = x + (int) (y) * viewPortWidth;
-
-            for (int j = Math.max(0, i - width / 2); j <= i + width / 2 && j < viewPortWidth * viewPortHeight; ++j) {
-                frameBuffer.put(j * 3, (byte) (r & 0xFF));
-                frameBuffer.put(j * 3 + 1, (byte) (g & 0xFF));
-                frameBuffer.put(j * 3 + 2, (byte) (b & 0xFF));
+        @Override
+        protected boolean drawParticleBatch(final ParticleBatch batch, final BlendMode blendMode) {
+            // Only the circles become instances, sprites are drawn in software
+            if (particleInstances == null) {
+                return false;
             }
-        }
-    }
 
-    private void drawLineAlongY(
-            final int x1, final int y1, final int x2, final int y2,
-            final int width,
-            final int r, final int g, final int b) {
-        int xa;
-        int ya;
-        int xb;
-        int yb;
-
-        if (y1 < y2) {
-            xa = x1;
-            ya = y1;
-            xb = x2;
-            yb = y2;
-        } else {
-            xa = x2;
-            ya = y2;
-            xb = x1;
-            yb = y1;
-        }
-
-        final float k = (xb - xa) / (float) (yb - ya);
-
-        for (float i = ya * viewPortWidth + xa; i < yb * viewPortWidth; i += k + viewPortWidth) {
-            //TODO: fix the sides, dont' want to wrap around
-            for (int j = Math.max(0, (int) i - width / 2); j <= (int) i + width / 2 && j < viewPortWidth * viewPortHeight; ++j) {
-                frameBuffer.put(j * 3, (byte) (r & 0xFF));
-                frameBuffer.put(j * 3 + 1, (byte) (g & 0xFF));
-                frameBuffer.put(j * 3 + 2, (byte) (b & 0xFF));
-            }
+            particleInstances.add(batch, blendMode);
+            return true;
         }
     }
 
     private final WindowListener windowListener;
-    private final WindowContext windowContext;
+    private final GlfwWindowContext windowContext;
     private final int windowWidth;
     private final int windowHeight;
     private final int viewPortHeight;
     private final int viewPortWidth;
     private final int numPixels;
     private final String title;
-    private ByteBuffer frameBuffer;
+    private final PixelFormat pixelFormat;
+    private final ByteBuffer frameBuffer;
+
+    // Set when draw calls are recorded and rasterized in parallel tiles at the end of the frame
+    private DeferredRasterizer deferredRasterizer = null;
+
+    // Particle batches of the current frame, when they are drawn with the instanced backend
+    private ParticleInstanceBuffer particleInstances = null;
+
+    // Times the phases of every frame when set
+    private FrameMetrics metrics = null;
+
+    // Gets a copy of every finished frame when set
+    private FrameCapture capture = null;
+
+    // LWJGL debug mode, a GL debug context and glGetError checks, -Dpartifles.debug=true
+    private boolean debug = Boolean.getBoolean("partifles.debug");
 
     private long window;
 
@@ -284,17 +144,59 @@ public class GlfwWindow {
         this.viewPortHeight = viewPortHeight;
         this.numPixels = viewPortWidth * viewPortHeight; // Pre-computation
         this.title = title;
-        windowContext = new GlfwWindowContext();
+        // -Dpartifles.format=<PixelFormat> overrides the frame buffer layout
+        this.pixelFormat = PixelFormat.valueOf(System.getProperty("partifles.format", PixelFormat.BGRA8888.name()));
+        this.frameBuffer = pixelFormat.allocate(numPixels);
+        windowContext = new GlfwWindowContext(frameBuffer, pixelFormat, viewPortWidth, viewPortHeight);
 
         inputKeyStates = new HashMap<>();
         Arrays.stream(Key.values())
                 .forEach(key -> inputKeyStates.put(key, false));
     }
 
-    public void init() {
-        this.frameBuffer = ByteBuffer.allocateDirect(numPixels * 3);
+    /**
+     * Record draw calls and rasterize them in parallel screen tiles at the end of
+     * each frame. Must be called before init.
+     */
+    public void setDeferredRendering(final int threads) {
+        deferredRasterizer = new DeferredRasterizer(windowContext, DeferredRasterizer.DEFAULT_TILE_SIZE, threads);
+    }
+
+    /**
+     * Turns on LWJGL's debug mode, a GL debug context and GL error checks after
+     * each step of the frame. All of these cost driver round trips, so they are
+     * off by default. Must be called before init.
+     */
+    public void setDebug(final boolean debug) {
+        this.debug = debug;
+    }
+
+    /**
+     * Times every phase of the frame loop into metrics, closed when the window
+     * terminates. Must be called before start.
+     */
+    public void setMetrics(final FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Hands every finished frame to capture, closed when the window terminates.
+     * The capture must match the view port size and the pixel format, see getPixelFormat.
+     */
+    public void setCapture(final FrameCapture capture) {
+        this.capture = capture;
+    }
 
-        Configuration.DEBUG.set(true);
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    private WindowContext getWindowContext() {
+        return deferredRasterizer != null ? deferredRasterizer : windowContext;
+    }
+
+    public void init() {
+        Configuration.DEBUG.set(debug);
 
         // Setup an error callback. The default implementation
         // will print the error message in System.err.
@@ -307,7 +209,7 @@ public class GlfwWindow {
 
         // Configure GLFW
         //glfwDefaultWindowHints(); // optional, the current window hints are already the default
-        glfwWindowHint(GLFW_OPENGL_DEBUG_CONTEXT, GLFW_TRUE);
+        glfwWindowHint(GLFW_OPENGL_DEBUG_CONTEXT, debug ? GLFW_TRUE : GLFW_FALSE);
         glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GL_TRUE);
         glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
         glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
@@ -348,6 +250,23 @@ public class GlfwWindow {
             }
         });
 
+        // Report the cursor in viewport pixels. The frame buffer is shown with row 0 at the bottom.
+        glfwSetCursorPosCallback(window, (window, cursorX, cursorY) -> {
+            try (MemoryStack stack = stackPush()) {
+                final var pWidth = stack.mallocInt(1);
+                final var pHeight = stack.mallocInt(1);
+                glfwGetWindowSize(window, pWidth, pHeight);
+
+                final int width = Math.max(1, pWidth.get(0));
+                final int height = Math.max(1, pHeight.get(0));
+
+                mouseLocation.set(cursorX * viewPortWidth / width,
+                        (height - cursorY) * viewPortHeight / height);
+            }
+
+            windowListener.onMouseMove(mouseLocation);
+        });
+
         //glfwSetWindowCloseCallback(window, (window) -> {
         //    glfwSetWindowShouldClose(window, true);
         //});
@@ -377,7 +296,7 @@ public class GlfwWindow {
         // Enable v-sync
         glfwSwapInterval(1);
 
-        windowListener.onInit(windowContext);
+        windowListener.onInit(getWindowContext());
 
         // Make the window visible
         glfwShowWindow(window);
@@ -395,13 +314,20 @@ public class GlfwWindow {
 
         //LOG.info("OpenGL version: {}", glGetString(GL_VERSION));
 
+        final var renderState = new GlRenderState(debug);
+
         final var texture = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, texture);
+        renderState.activeTexture(GL_TEXTURE0);
+        renderState.bindTexture(texture);
 
-        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        // RGB888 rows are not word aligned unless the width happens to be a multiple of 4
+        glPixelStorei(GL_UNPACK_ALIGNMENT, pixelFormat.isPacked() ? 4 : 1);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
 
+        final GlFeatures features = detectFeatures();
+        final TextureUploader uploader = createUploader(features);
+
         final var buffers = new int[]{0};
         final var vertexArrays = new int[]{0};
 
@@ -409,14 +335,35 @@ public class GlfwWindow {
         glBindBuffer(GL_ARRAY_BUFFER, buffers[0]);
         glBufferData(GL_ARRAY_BUFFER, SQUARE_POINTS, GL_STATIC_DRAW);
 
+        // The attribute layout and enables are recorded in the vertex array, so they are set up once
         glGenVertexArrays(vertexArrays);
-        glBindVertexArray(vertexArrays[0]);
+        renderState.bindVertexArray(vertexArrays[0]);
         glVertexAttribPointer(0, 3, GL_FLOAT, false, 5 * 4, 0);
         glVertexAttribPointer(1, 2, GL_FLOAT, false, 5 * 4, 3 * 4);
+        glEnableVertexAttribArray(0);
+        glEnableVertexAttribArray(1);
+
+        renderState.checkErrors("vertex array setup");
+
+        final ShaderProgram shaderProgram = ShaderProgram.link(VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+
+        // Uniforms are program state and keep their values, nothing changes them per frame
+        renderState.useProgram(shaderProgram);
+        glUniform1i(shaderProgram.getUniformLocation("texture_sampler"), 0);
+        //final var m = orthographicProjectionMatrix();
+        glUniformMatrix4fv(shaderProgram.getUniformLocation("projection"), true, IDENTITY_MATRIX);
 
-        checkGlErrors("glVertexAttribPointer");
+        renderState.checkErrors("uniform setup");
 
-        final int shaderProgram = createRectangleShaderProgram();
+        // -Dpartifles.backend=INSTANCED draws particle batches on the GPU
+        final RenderBackend backend = RenderBackend.select(features, System.getProperty("partifles.backend"));
+        LOG.info("Drawing particles with the {} backend", backend);
+
+        InstancedParticleRenderer particleRenderer = null;
+        if (backend == RenderBackend.INSTANCED) {
+            particleRenderer = new InstancedParticleRenderer(renderState);
+            particleInstances = new ParticleInstanceBuffer(1 << 16);
+        }
 
         // Set the clear color
         glClearColor(0.5f, 0.5f, 1.0f, 0.0f);
@@ -424,52 +371,74 @@ public class GlfwWindow {
         // Run the rendering loop until the user has attempted to close
         // the window or has pressed the ESCAPE key.
         while (!glfwWindowShouldClose(window)) {
+            final FrameMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.beginFrame();
+            }
+
+            windowContext.setFrameTimeNanos(System.nanoTime());
 
-            frameBuffer.clear(); // TODO: what does this actually do?
-            for (int i = 0; i < viewPortWidth * viewPortHeight * 3; ++i) {
-                frameBuffer.put(i, (byte) 0);
+            windowContext.clearFrame();
+
+            if (particleInstances != null) {
+                particleInstances.reset();
             }
 
-            // Execute software rendering logic
-            windowListener.onRender(windowContext);
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.CLEAR);
+            }
 
-            frameBuffer.flip();
+            // Execute software rendering logic
+            windowListener.onRender(getWindowContext());
 
-            // https://stackoverflow.com/questions/67813361/opengl-lwjgl-texture-creation-sigsegv
-            // https://learnopengl.com/Getting-started/Textures
-            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, viewPortWidth, viewPortHeight, 0, GL_RGB, GL_UNSIGNED_BYTE, frameBuffer);
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.RENDER);
+            }
 
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
-            checkGlErrors("glClear");
+            if (deferredRasterizer != null) {
+                deferredRasterizer.flush();
+            }
 
-            glUseProgram(shaderProgram);
-            checkGlErrors("glUseProgram");
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.RASTERIZE);
+            }
 
-            final int textureSamplerUniform = glGetUniformLocation(shaderProgram, "texture_sampler");
-            checkGlErrors("glGetUniformLocation");
-            glUniform1i(textureSamplerUniform, 0);
-            checkGlErrors("glUniform1i");
+            if (capture != null) {
+                capture.submit(frameBuffer);
+            }
 
-            glActiveTexture(GL_TEXTURE0);
-            glBindTexture(GL_TEXTURE_2D, texture);
-            checkGlErrors("glBindTexture");
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.CAPTURE);
+            }
 
-            glBindVertexArray(vertexArrays[0]);
-            checkGlErrors("glBindVertexArray");
+            // Only rows that were cleared or drawn to differ from what the texture already has
+            final DirtyRows changedRows = windowContext.getChangedRows();
 
-            final int uniProjection = glGetUniformLocation(shaderProgram, "projection");
+            // https://stackoverflow.com/questions/67813361/opengl-lwjgl-texture-creation-sigsegv
+            // https://learnopengl.com/Getting-started/Textures
+            renderState.bindTexture(texture);
+            uploader.upload(frameBuffer, changedRows.getMinRow(), changedRows.getMaxRow());
+            renderState.checkErrors("texture upload");
 
-            //final var m = orthographicProjectionMatrix();
-            final var m = IDENTITY_MATRIX;
-            glUniformMatrix4fv(uniProjection, true, m);
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.UPLOAD);
+            }
 
-            glBindVertexArray(vertexArrays[0]);
-            glEnableVertexAttribArray(0);
-            glEnableVertexAttribArray(1);
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
 
-            checkGlErrors("glEnableVertexAttribArray");
+            renderState.useProgram(shaderProgram);
+            renderState.bindVertexArray(vertexArrays[0]);
 
             glDrawArrays(GL_TRIANGLE_STRIP, 0, 4);
+            renderState.checkErrors("glDrawArrays");
+
+            if (particleRenderer != null) {
+                particleRenderer.render(particleInstances, viewPortWidth, viewPortHeight, renderState);
+            }
+
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.DRAW);
+            }
 
             glfwSwapBuffers(window); // swap the color buffers
 
@@ -477,56 +446,76 @@ public class GlfwWindow {
             // invoked during this call.
             glfwPollEvents();
 
-            //checkGlErrors();
+            if (metrics != null) {
+                metrics.endPhase(FramePhase.SWAP);
+                metrics.endFrame();
+            }
         }
 
+        if (particleRenderer != null) {
+            particleRenderer.destroy();
+        }
+        shaderProgram.delete();
+        uploader.destroy();
         terminate();
     }
 
-    private void checkGlErrors(final String operation) {
-        int glErrorCode;
-        while ((glErrorCode = glGetError()) != GL_NO_ERROR) {
-            LOG.error("Got GL error after {} code: 0x{} ", operation, Integer.toHexString(glErrorCode));
-            throw new RuntimeException();
-        }
-    }
+    private GlFeatures detectFeatures() {
+        final var capabilities = GL.getCapabilities();
 
-    private int createRectangleShaderProgram() {
-        final int vs = glCreateShader(GL_VERTEX_SHADER);
-        glShaderSource(vs, VERTEX_SHADER_SOURCE);
-        glCompileShader(vs);
+        return new GlFeatures(
+                capabilities.OpenGL21 || capabilities.GL_ARB_pixel_buffer_object,
+                capabilities.OpenGL30 || capabilities.GL_ARB_map_buffer_range,
+                capabilities.OpenGL32 || capabilities.GL_ARB_sync,
+                capabilities.OpenGL44 || capabilities.GL_ARB_buffer_storage,
+                capabilities.OpenGL31,
+                capabilities.OpenGL33);
+    }
 
-        final var vertexCompiled = new int[1];
-        glGetShaderiv(vs, GL_COMPILE_STATUS, vertexCompiled);
-        if (vertexCompiled[0] != GL_TRUE) {
-            throw new RuntimeException("Vertex shader compilation error: " + glGetShaderInfoLog(vs));
+    // Picks the best supported way to stream frames into the bound texture,
+    // -Dpartifles.upload=<UploadPath> overrides it
+    private TextureUploader createUploader(final GlFeatures features) {
+        final UploadPath path = UploadPath.select(features, System.getProperty("partifles.upload"));
+        LOG.info("Uploading {} frames with {}", pixelFormat, path);
+
+        switch (path) {
+            case PBO_PERSISTENT:
+                return new PboRingUploader(new LwjglPixelBufferGl(), PBO_RING_SIZE,
+                        viewPortWidth, viewPortHeight, pixelFormat, true, true);
+            case PBO_MAP_RANGE:
+                return new PboRingUploader(new LwjglPixelBufferGl(), PBO_RING_SIZE,
+                        viewPortWidth, viewPortHeight, pixelFormat, false, features.sync);
+            case TEX_SUB_IMAGE:
+                return new ClientMemoryUploader(viewPortWidth, viewPortHeight, pixelFormat, false);
+            default:
+                return new ClientMemoryUploader(viewPortWidth, viewPortHeight, pixelFormat, true);
         }
+    }
 
-        final int fs = glCreateShader(GL_FRAGMENT_SHADER);
-        glShaderSource(fs, FRAGMENT_SHADER_SOURCE);
-        glCompileShader(fs);
+    public void terminate() {
+        windowListener.onClose();
 
-        final var fragmentCompiled = new int[1];
-        glGetShaderiv(fs, GL_COMPILE_STATUS, fragmentCompiled);
-        if (fragmentCompiled[0] != GL_TRUE) {
-            throw new RuntimeException("Fragment shader compilation error: " + glGetShaderInfoLog(fs));
+        if (deferredRasterizer != null) {
+            deferredRasterizer.shutdown();
         }
 
-        int shaderProgram = glCreateProgram();
-        glAttachShader(shaderProgram, fs);
-        glAttachShader(shaderProgram, vs);
-        glLinkProgram(shaderProgram);
-
-        return shaderProgram;
-    }
+        // A failed capture throws from close, the window is torn down all the same
+        try {
+            if (capture != null) {
+                capture.close();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.close();
+            }
 
-    public void terminate() {
-        // Free the window callbacks and destroy the window
-        glfwFreeCallbacks(window);
-        glfwDestroyWindow(window);
+            // Free the window callbacks and destroy the window
+            glfwFreeCallbacks(window);
+            glfwDestroyWindow(window);
 
-        // Terminate GLFW and free the error callback
-        glfwTerminate();
-        glfwSetErrorCallback(null).free();
+            // Terminate GLFW and free the error callback
+            glfwTerminate();
+            glfwSetErrorCallback(null).free();
+        }
     }
 }
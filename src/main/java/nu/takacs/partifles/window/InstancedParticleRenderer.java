@@ -0,0 +1,177 @@
+package nu.takacs.partifles.window;
+
+import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
+import static org.lwjgl.opengl.GL11.GL_BLEND;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_ONE;
+import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_DST_COLOR;
+import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_ALPHA;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLE_STRIP;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glBlendFunc;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL14.GL_FUNC_ADD;
+import static org.lwjgl.opengl.GL14.GL_MAX;
+import static org.lwjgl.opengl.GL14.glBlendEquation;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glUniform2f;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL31.glDrawArraysInstanced;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+/**
+ * Draws particle batches as instanced quads. Each instance is a particle's
+ * position, radius, alpha and colour, the quad corners are shared, and the fragment shader does
+ * the same linear radial falloff as RadialMask. Blend modes map to GL blend
+ * state on premultiplied output.
+ * <p>
+ * Positions are in frame buffer pixels, which the full screen quad shows with
+ * row 0 at the bottom, so no flip is needed to line up with the software frame.
+ */
+public class InstancedParticleRenderer {
+    private static final String VERTEX_SHADER_SOURCE =
+            "#version 400\n"
+                    + "layout (location = 0) in vec2 corner;"
+                    + "layout (location = 1) in vec4 instance;"
+                    + "layout (location = 2) in vec3 color;"
+
+                    + "uniform vec2 viewport;"
+
+                    + "out vec2 Offset;"
+                    + "out vec3 Colour;"
+
+                    + "void main() {"
+                    + "  vec2 position = instance.xy + corner * instance.z;"
+                    + "  gl_Position = vec4(position / viewport * 2.0 - 1.0, 0.0, 1.0);"
+                    + "  Offset = corner;"
+                    + "  Colour = color * instance.w;"
+                    + "}";
+
+    private static final String FRAGMENT_SHADER_SOURCE =
+            "#version 400\n"
+                    + "in vec2 Offset;"
+                    + "in vec3 Colour;"
+
+                    + "out vec4 frag_colour;"
+
+                    + "void main() {"
+                    + "  float mask = 1.0 - length(Offset);"
+                    + "  if (mask <= 0.0) discard;"
+                    + "  frag_colour = vec4(Colour * mask, mask);"
+                    + "}";
+
+    private static final float[] QUAD_CORNERS = {
+            -1.0f, -1.0f,
+            1.0f, -1.0f,
+            -1.0f, 1.0f,
+            1.0f, 1.0f
+    };
+
+    private final ShaderProgram program;
+    private final int viewportUniform;
+
+    private final int vertexArray;
+    private final int cornerBuffer;
+    private final int instanceBuffer;
+
+    public InstancedParticleRenderer(final GlRenderState renderState) {
+        program = ShaderProgram.link(VERTEX_SHADER_SOURCE, FRAGMENT_SHADER_SOURCE);
+        viewportUniform = program.getUniformLocation("viewport");
+
+        vertexArray = glGenVertexArrays();
+        renderState.bindVertexArray(vertexArray);
+
+        cornerBuffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, cornerBuffer);
+        glBufferData(GL_ARRAY_BUFFER, QUAD_CORNERS, GL_STATIC_DRAW);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        instanceBuffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        glEnableVertexAttribArray(1);
+        glVertexAttribDivisor(1, 1);
+        glEnableVertexAttribArray(2);
+        glVertexAttribDivisor(2, 1);
+
+        renderState.checkErrors("instanced particle setup");
+    }
+
+    /**
+     * Draws every batch in instances over whatever is in the GL frame buffer.
+     */
+    public void render(final ParticleInstanceBuffer instances,
+                       final int viewPortWidth,
+                       final int viewPortHeight,
+                       final GlRenderState renderState) {
+        if (instances.getDrawCount() == 0) {
+            return;
+        }
+
+        renderState.useProgram(program);
+        renderState.bindVertexArray(vertexArray);
+        glUniform2f(viewportUniform, viewPortWidth, viewPortHeight);
+
+        // Orphan the old storage instead of waiting for the GPU to finish reading it
+        final long bytes = (long) instances.getInstanceCapacity() * ParticleInstanceBuffer.BYTES_PER_INSTANCE;
+        glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+        glBufferData(GL_ARRAY_BUFFER, bytes, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, instances.getData());
+
+        glEnable(GL_BLEND);
+
+        for (int d = 0; d < instances.getDrawCount(); ++d) {
+            final long offset = (long) instances.getFirst(d) * ParticleInstanceBuffer.BYTES_PER_INSTANCE;
+
+            setBlendState(instances.getBlendMode(d));
+            glVertexAttribPointer(1, 4, GL_FLOAT, false, ParticleInstanceBuffer.BYTES_PER_INSTANCE, offset);
+            glVertexAttribPointer(2, 3, GL_UNSIGNED_BYTE, true, ParticleInstanceBuffer.BYTES_PER_INSTANCE,
+                    offset + ParticleInstanceBuffer.COLOR_OFFSET);
+            glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, instances.getInstances(d));
+        }
+
+        glDisable(GL_BLEND);
+        glBlendEquation(GL_FUNC_ADD);
+
+        renderState.checkErrors("instanced particles");
+    }
+
+    // Output is premultiplied, colour * alpha with the mask in the alpha channel
+    private static void setBlendState(final BlendMode blendMode) {
+        switch (blendMode) {
+            case ADDITIVE:
+                glBlendEquation(GL_FUNC_ADD);
+                glBlendFunc(GL_ONE, GL_ONE);
+                break;
+            case SCREEN:
+                glBlendEquation(GL_FUNC_ADD);
+                glBlendFunc(GL_ONE_MINUS_DST_COLOR, GL_ONE);
+                break;
+            case MAX:
+                glBlendEquation(GL_MAX);
+                glBlendFunc(GL_ONE, GL_ONE);
+                break;
+            default:
+                glBlendEquation(GL_FUNC_ADD);
+                glBlendFunc(GL_ONE, GL_ONE_MINUS_SRC_ALPHA);
+                break;
+        }
+    }
+
+    public void destroy() {
+        glDeleteBuffers(cornerBuffer);
+        glDeleteBuffers(instanceBuffer);
+        glDeleteVertexArrays(vertexArray);
+        program.delete();
+    }
+}
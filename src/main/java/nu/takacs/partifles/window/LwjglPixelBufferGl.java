@@ -0,0 +1,117 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexSubImage2D;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.GL_SYNC_FLUSH_COMMANDS_BIT;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.GL_TIMEOUT_EXPIRED;
+import static org.lwjgl.opengl.GL32.GL_WAIT_FAILED;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+import static org.lwjgl.opengl.GL44.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL44.glBufferStorage;
+
+/**
+ * PixelBufferGl on the current LWJGL OpenGL context.
+ */
+public class LwjglPixelBufferGl implements PixelBufferGl {
+    private static final long WAIT_TIMEOUT_NS = 1000000000L;
+
+    @Override
+    public void allocateTexture(final int width, final int height, final PixelFormat format) {
+        glTexImage2D(GL_TEXTURE_2D, 0, format.glInternalFormat, width, height, 0,
+                format.glFormat, format.glType, (ByteBuffer) null);
+    }
+
+    @Override
+    public int createBuffer() {
+        return glGenBuffers();
+    }
+
+    @Override
+    public void deleteBuffer(final int buffer) {
+        glDeleteBuffers(buffer);
+    }
+
+    @Override
+    public void bindUnpackBuffer(final int buffer) {
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, buffer);
+    }
+
+    @Override
+    public void bufferData(final long size) {
+        glBufferData(GL_PIXEL_UNPACK_BUFFER, size, GL_STREAM_DRAW);
+    }
+
+    @Override
+    public ByteBuffer bufferStorageMapped(final long size) {
+        final int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+
+        glBufferStorage(GL_PIXEL_UNPACK_BUFFER, size, flags);
+        return glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, flags);
+    }
+
+    @Override
+    public ByteBuffer mapForWrite(final long size, final boolean unsynchronized) {
+        int access = GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT;
+        if (unsynchronized) {
+            access |= GL_MAP_UNSYNCHRONIZED_BIT;
+        }
+
+        final ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, access);
+        if (mapped == null) {
+            throw new RuntimeException("Failed to map pixel unpack buffer");
+        }
+
+        return mapped;
+    }
+
+    @Override
+    public void unmap() {
+        glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+    }
+
+    @Override
+    public void texSubImageFromUnpackBuffer(final int y,
+                                            final int width,
+                                            final int height,
+                                            final PixelFormat format,
+                                            final long offset) {
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, y, width, height, format.glFormat, format.glType, offset);
+    }
+
+    @Override
+    public long fenceSync() {
+        return glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    @Override
+    public void waitSync(final long sync) {
+        final int status = glClientWaitSync(sync, GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT_NS);
+
+        if (status == GL_WAIT_FAILED || status == GL_TIMEOUT_EXPIRED) {
+            throw new RuntimeException("Waiting for pixel upload fence failed: 0x" + Integer.toHexString(status));
+        }
+    }
+
+    @Override
+    public void deleteSync(final long sync) {
+        glDeleteSync(sync);
+    }
+}
@@ -0,0 +1,211 @@
+package nu.takacs.partifles.window;
+
+import nu.takacs.partifles.capture.FrameCapture;
+import nu.takacs.partifles.metrics.FrameMetrics;
+import nu.takacs.partifles.metrics.FramePhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Window backend without a display or GL context. Frames are rasterized into
+ * a direct buffer in memory, RGB888 unless asked otherwise, which makes it
+ * usable on headless servers and for benchmarks.
+ */
+public class OffscreenWindow {
+    private static final Logger LOG = LoggerFactory.getLogger(OffscreenWindow.class);
+
+    private class OffscreenWindowContext extends SoftwareRasterizer {
+        private OffscreenWindowContext(final ByteBuffer frameBuffer,
+                                       final PixelFormat pixelFormat,
+                                       final int viewPortWidth,
+                                       final int viewPortHeight) {
+            super(frameBuffer, pixelFormat, viewPortWidth, viewPortHeight);
+        }
+
+        @Override
+        public boolean isKeyDown(final Key key) {
+            return false;
+        }
+    }
+
+    private final WindowListener windowListener;
+    private final OffscreenWindowContext windowContext;
+    private final int viewPortWidth;
+    private final int viewPortHeight;
+    private final PixelFormat pixelFormat;
+    private final ByteBuffer frameBuffer;
+
+    // Set when draw calls are recorded and rasterized in parallel tiles at the end of the frame
+    private DeferredRasterizer deferredRasterizer = null;
+
+    // Times the phases of every frame when set
+    private FrameMetrics metrics = null;
+
+    // Gets a copy of every finished frame when set
+    private FrameCapture capture = null;
+
+    // When set, every frame advances the clock by exactly this much instead of following real time
+    private long fixedFrameIntervalNanos = 0;
+    private long virtualTimeNanos = 0;
+
+    public OffscreenWindow(final WindowListener windowListener,
+                           final int viewPortWidth,
+                           final int viewPortHeight) {
+        this(windowListener, viewPortWidth, viewPortHeight, PixelFormat.RGB888);
+    }
+
+    public OffscreenWindow(final WindowListener windowListener,
+                           final int viewPortWidth,
+                           final int viewPortHeight,
+                           final PixelFormat pixelFormat) {
+        this.windowListener = windowListener;
+        this.viewPortWidth = viewPortWidth;
+        this.viewPortHeight = viewPortHeight;
+        this.pixelFormat = pixelFormat;
+        this.frameBuffer = pixelFormat.allocate(viewPortWidth * viewPortHeight);
+        windowContext = new OffscreenWindowContext(frameBuffer, pixelFormat, viewPortWidth, viewPortHeight);
+    }
+
+    /**
+     * Drive the listener from a virtual clock that advances by a fixed amount per frame.
+     * Zero goes back to real time.
+     */
+    public void setFixedFrameInterval(final long fixedFrameIntervalNanos) {
+        this.fixedFrameIntervalNanos = fixedFrameIntervalNanos;
+    }
+
+    /**
+     * Record draw calls and rasterize them in parallel screen tiles at the end of
+     * each frame. Must be called before init.
+     */
+    public void setDeferredRendering(final int threads) {
+        deferredRasterizer = new DeferredRasterizer(windowContext, DeferredRasterizer.DEFAULT_TILE_SIZE, threads);
+    }
+
+    /**
+     * Times the clear, render and rasterize phases of every frame into
+     * metrics, closed when the window terminates.
+     */
+    public void setMetrics(final FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Hands every finished frame to capture, closed when the window terminates.
+     * The capture must match the view port size and getPixelFormat.
+     */
+    public void setCapture(final FrameCapture capture) {
+        this.capture = capture;
+    }
+
+    public void init() {
+        windowListener.onInit(getWindowContext());
+    }
+
+    /**
+     * Renders a single frame.
+     */
+    public void renderFrame() {
+        final FrameMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.beginFrame();
+        }
+
+        if (fixedFrameIntervalNanos > 0) {
+            virtualTimeNanos += fixedFrameIntervalNanos;
+            windowContext.setFrameTimeNanos(virtualTimeNanos);
+        } else {
+            windowContext.setFrameTimeNanos(System.nanoTime());
+        }
+
+        windowContext.clearFrame();
+
+        if (metrics != null) {
+            metrics.endPhase(FramePhase.CLEAR);
+        }
+
+        windowListener.onRender(getWindowContext());
+
+        if (metrics != null) {
+            metrics.endPhase(FramePhase.RENDER);
+        }
+
+        if (deferredRasterizer != null) {
+            deferredRasterizer.flush();
+        }
+
+        if (metrics != null) {
+            metrics.endPhase(FramePhase.RASTERIZE);
+        }
+
+        if (capture != null) {
+            capture.submit(frameBuffer);
+        }
+
+        if (metrics != null) {
+            metrics.endPhase(FramePhase.CAPTURE);
+            metrics.endFrame();
+        }
+    }
+
+    /**
+     * Renders frames back to back as fast as possible.
+     *
+     * @return the achieved frames per second
+     */
+    public double run(final int frames) {
+        final long startNanos = System.nanoTime();
+
+        for (int frame = 0; frame < frames; ++frame) {
+            renderFrame();
+        }
+
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final double framesPerSecond = frames / (elapsedNanos / 1000000000.0);
+
+        LOG.info("Rendered {} frames in {} ms, {} fps",
+                frames, elapsedNanos / 1000000, String.format("%.1f", framesPerSecond));
+
+        return framesPerSecond;
+    }
+
+    public WindowContext getWindowContext() {
+        return deferredRasterizer != null ? deferredRasterizer : windowContext;
+    }
+
+    public ByteBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    /**
+     * Rows that changed in the last rendered frame, what a GL backend would upload.
+     */
+    public DirtyRows getChangedRows() {
+        return windowContext.getChangedRows();
+    }
+
+    public void terminate() {
+        windowListener.onClose();
+
+        if (deferredRasterizer != null) {
+            deferredRasterizer.shutdown();
+        }
+
+        // A failed capture throws from close, the metrics are closed all the same
+        try {
+            if (capture != null) {
+                capture.close();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.close();
+            }
+        }
+    }
+}
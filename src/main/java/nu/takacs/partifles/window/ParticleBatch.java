@@ -0,0 +1,115 @@
+package nu.takacs.partifles.window;
+
+import java.util.Arrays;
+
+/**
+ * Particles drawn as gradient circles or sprite frames, each with its own
+ * position, alpha, radius and colour. Handing a whole batch to the window lets backends that
+ * can draw them in bulk do so, e.g. as GPU instances.
+ */
+public class ParticleBatch {
+    public final float[] x;
+    public final float[] y;
+
+    // Scales the colour, 0-1
+    public final float[] alpha;
+
+    public final float[] radius;
+
+    // 0xRRGGBB, tints sprites
+    public final int[] color;
+
+    // Null for a gradient circle, otherwise frame[i] of it is drawn
+    public final SpriteAtlas[] sprite;
+    public final int[] frame;
+
+    private int count = 0;
+    private int spriteCount = 0;
+
+    // Used by add without a radius and colour
+    private float defaultRadius = 1;
+    private int defaultColor = 0xFFFFFF;
+
+    public ParticleBatch(final int capacity) {
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.alpha = new float[capacity];
+        this.radius = new float[capacity];
+        this.color = new int[capacity];
+        this.sprite = new SpriteAtlas[capacity];
+        this.frame = new int[capacity];
+    }
+
+    public void setStyle(final int radius, final int red, final int green, final int blue) {
+        this.defaultRadius = radius;
+        this.defaultColor = (red & 0xFF) << 16 | (green & 0xFF) << 8 | (blue & 0xFF);
+    }
+
+    public void clear() {
+        // Let go of the atlases
+        if (spriteCount > 0) {
+            Arrays.fill(sprite, 0, count, null);
+        }
+
+        count = 0;
+        spriteCount = 0;
+    }
+
+    /**
+     * Appends a particle with the style's radius and colour. The caller keeps within the capacity.
+     */
+    public void add(final float x, final float y, final float alpha) {
+        add(x, y, alpha, defaultRadius, defaultColor);
+    }
+
+    public void add(final float x, final float y, final float alpha, final float radius, final int color) {
+        add(x, y, alpha, radius, color, null, 0);
+    }
+
+    public void add(final float x, final float y, final float alpha, final float radius, final int color,
+                    final SpriteAtlas sprite, final int frame) {
+        this.x[count] = x;
+        this.y[count] = y;
+        this.alpha[count] = alpha;
+        this.radius[count] = radius;
+        this.color[count] = color;
+        this.sprite[count] = sprite;
+        this.frame[count] = frame;
+        ++count;
+
+        if (sprite != null) {
+            ++spriteCount;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Whether any particle is a sprite rather than a gradient circle
+    public boolean hasSprites() {
+        return spriteCount > 0;
+    }
+
+    public int getCapacity() {
+        return x.length;
+    }
+
+    /**
+     * Draws just the sprite particles, for backends that take the gradient
+     * circles of a batch but can not draw sprites.
+     */
+    void drawSprites(final WindowContext windowContext) {
+        for (int i = 0; i < count; ++i) {
+            if (sprite[i] != null) {
+                drawSprite(windowContext, i);
+            }
+        }
+    }
+
+    // Particle i, a sprite, as wide as its diameter and tinted by its colour
+    void drawSprite(final WindowContext windowContext, final int i) {
+        windowContext.drawSprite(sprite[i], frame[i], (int) x[i], (int) y[i],
+                2 * radius[i] / sprite[i].getFrameWidth(), color[i], alpha[i]);
+    }
+}
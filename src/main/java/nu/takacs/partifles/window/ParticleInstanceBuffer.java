@@ -0,0 +1,141 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The particle batches of one frame, packed for instanced drawing. Every
+ * instance is x, y, radius and alpha floats followed by red, green, blue and
+ * an unused 255 as bytes, interleaved in one direct buffer that goes to the
+ * instance VBO in a single upload. Every batch becomes one draw over its own
+ * range of instances with the batch's blend mode. Particles with no alpha
+ * left are not packed at all, nor are sprite particles, which are only drawn
+ * in software.
+ */
+public class ParticleInstanceBuffer {
+    public static final int FLOATS_PER_INSTANCE = 4;
+    public static final int COLOR_OFFSET = FLOATS_PER_INSTANCE * Float.BYTES;
+    public static final int BYTES_PER_INSTANCE = COLOR_OFFSET + 4;
+
+    private ByteBuffer bytes;
+    private int instanceCount = 0;
+
+    // One entry per draw
+    private int drawCount = 0;
+    private int[] drawFirst = new int[4];
+    private int[] drawInstances = new int[4];
+    private BlendMode[] drawBlendMode = new BlendMode[4];
+
+    public ParticleInstanceBuffer(final int initialInstances) {
+        allocate(Math.max(1, initialInstances));
+    }
+
+    private void allocate(final int instances) {
+        final ByteBuffer grown = ByteBuffer.allocateDirect(instances * BYTES_PER_INSTANCE)
+                .order(ByteOrder.nativeOrder());
+
+        if (bytes != null) {
+            final ByteBuffer used = bytes.duplicate();
+            used.clear();
+            used.limit(instanceCount * BYTES_PER_INSTANCE);
+            grown.put(used);
+            grown.clear();
+        }
+
+        bytes = grown;
+    }
+
+    /**
+     * Starts a new frame.
+     */
+    public void reset() {
+        instanceCount = 0;
+        drawCount = 0;
+    }
+
+    public void add(final ParticleBatch batch, final BlendMode blendMode) {
+        final int size = batch.size();
+        if (instanceCount + size > getInstanceCapacity()) {
+            allocate(Math.max(instanceCount + size, 2 * getInstanceCapacity()));
+        }
+
+        final float[] x = batch.x;
+        final float[] y = batch.y;
+        final float[] alpha = batch.alpha;
+        final float[] radius = batch.radius;
+        final int[] color = batch.color;
+        final SpriteAtlas[] sprite = batch.sprite;
+        final ByteBuffer bytes = this.bytes;
+
+        final int first = instanceCount;
+        int b = first * BYTES_PER_INSTANCE;
+
+        for (int i = 0; i < size; ++i) {
+            if (alpha[i] <= 0.0f || sprite[i] != null) {
+                continue;
+            }
+
+            bytes.putFloat(b, x[i]);
+            bytes.putFloat(b + Float.BYTES, y[i]);
+            bytes.putFloat(b + 2 * Float.BYTES, radius[i]);
+            bytes.putFloat(b + 3 * Float.BYTES, alpha[i]);
+            bytes.put(b + COLOR_OFFSET, (byte) (color[i] >>> 16));
+            bytes.put(b + COLOR_OFFSET + 1, (byte) (color[i] >>> 8));
+            bytes.put(b + COLOR_OFFSET + 2, (byte) color[i]);
+            bytes.put(b + COLOR_OFFSET + 3, (byte) 0xFF);
+            b += BYTES_PER_INSTANCE;
+        }
+
+        instanceCount = b / BYTES_PER_INSTANCE;
+        if (instanceCount == first) {
+            return;
+        }
+
+        if (drawCount == drawFirst.length) {
+            final int grown = 2 * drawCount;
+            drawFirst = Arrays.copyOf(drawFirst, grown);
+            drawInstances = Arrays.copyOf(drawInstances, grown);
+            drawBlendMode = Arrays.copyOf(drawBlendMode, grown);
+        }
+
+        drawFirst[drawCount] = first;
+        drawInstances[drawCount] = instanceCount - first;
+        drawBlendMode[drawCount] = blendMode;
+        ++drawCount;
+    }
+
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    public int getInstanceCapacity() {
+        return bytes.capacity() / BYTES_PER_INSTANCE;
+    }
+
+    /**
+     * The packed instances of this frame, positioned at 0 and limited to the used part.
+     */
+    public ByteBuffer getData() {
+        bytes.clear();
+        bytes.limit(instanceCount * BYTES_PER_INSTANCE);
+        return bytes;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    // Index of the first instance of draw d
+    public int getFirst(final int d) {
+        return drawFirst[d];
+    }
+
+    public int getInstances(final int d) {
+        return drawInstances[d];
+    }
+
+    public BlendMode getBlendMode(final int d) {
+        return drawBlendMode[d];
+    }
+}
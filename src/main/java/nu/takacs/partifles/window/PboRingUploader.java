@@ -0,0 +1,135 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams frames to the texture through a ring of pixel unpack buffers. The
+ * CPU writes frame N+1 into one buffer while the GPU is still copying frame N
+ * out of another. Each buffer gets a fence after its upload has been issued,
+ * and it is only written again once that fence has been passed.
+ * <p>
+ * Only the changed rows are copied and uploaded. They go to the same offset
+ * in the buffer as in the frame, so a buffer always mirrors the frame layout.
+ */
+public class PboRingUploader implements TextureUploader {
+    private final PixelBufferGl gl;
+    private final int width;
+    private final int height;
+    private final PixelFormat format;
+    private final int rowBytes;
+    private final int frameBytes;
+    private final boolean persistent;
+    private final boolean fenced;
+
+    private final int[] buffers;
+    private final long[] fences;
+    private final ByteBuffer[] persistentMappings;
+
+    // Slot the next frame goes into
+    private int next = 0;
+
+    public PboRingUploader(final PixelBufferGl gl,
+                           final int ringSize,
+                           final int width,
+                           final int height,
+                           final PixelFormat format,
+                           final boolean persistent,
+                           final boolean fenced) {
+        if (persistent && !fenced) {
+            throw new IllegalArgumentException("Persistent mapping needs fences");
+        }
+
+        this.gl = gl;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.rowBytes = width * format.bytesPerPixel;
+        this.frameBytes = height * rowBytes;
+        this.persistent = persistent;
+        this.fenced = fenced;
+
+        buffers = new int[ringSize];
+        fences = new long[ringSize];
+        persistentMappings = new ByteBuffer[ringSize];
+
+        gl.allocateTexture(width, height, format);
+
+        for (int slot = 0; slot < ringSize; ++slot) {
+            buffers[slot] = gl.createBuffer();
+            gl.bindUnpackBuffer(buffers[slot]);
+
+            if (persistent) {
+                persistentMappings[slot] = gl.bufferStorageMapped(frameBytes);
+            } else {
+                gl.bufferData(frameBytes);
+            }
+        }
+
+        gl.bindUnpackBuffer(0);
+    }
+
+    @Override
+    public void upload(final ByteBuffer frame, final int fromRow, final int toRow) {
+        if (fromRow >= toRow) {
+            return;
+        }
+
+        final int slot = next;
+        next = (next + 1) % buffers.length;
+
+        // Make sure the GPU is done with the upload this buffer was last used for
+        if (fences[slot] != 0) {
+            gl.waitSync(fences[slot]);
+            gl.deleteSync(fences[slot]);
+            fences[slot] = 0;
+        }
+
+        gl.bindUnpackBuffer(buffers[slot]);
+
+        final ByteBuffer target = persistent
+                ? persistentMappings[slot]
+                : gl.mapForWrite(frameBytes, fenced);
+
+        final int fromByte = fromRow * rowBytes;
+        final int toByte = toRow * rowBytes;
+
+        final ByteBuffer source = frame.duplicate();
+        source.clear();
+        source.position(fromByte);
+        source.limit(toByte);
+        target.clear();
+        target.position(fromByte);
+        target.put(source);
+
+        if (!persistent) {
+            gl.unmap();
+        }
+
+        gl.texSubImageFromUnpackBuffer(fromRow, width, toRow - fromRow, format, fromByte);
+
+        if (fenced) {
+            fences[slot] = gl.fenceSync();
+        }
+
+        gl.bindUnpackBuffer(0);
+    }
+
+    @Override
+    public void destroy() {
+        for (int slot = 0; slot < buffers.length; ++slot) {
+            if (fences[slot] != 0) {
+                gl.deleteSync(fences[slot]);
+                fences[slot] = 0;
+            }
+
+            if (persistent) {
+                gl.bindUnpackBuffer(buffers[slot]);
+                gl.unmap();
+            }
+
+            gl.deleteBuffer(buffers[slot]);
+        }
+
+        gl.bindUnpackBuffer(0);
+    }
+}
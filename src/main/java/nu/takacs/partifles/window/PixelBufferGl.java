@@ -0,0 +1,42 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The GL calls PboRingUploader makes, so its ring and synchronization logic
+ * can be tested without a GPU.
+ */
+public interface PixelBufferGl {
+    // Allocates storage for the bound texture without uploading anything
+    void allocateTexture(int width, int height, PixelFormat format);
+
+    int createBuffer();
+
+    void deleteBuffer(int buffer);
+
+    // Binds buffer as GL_PIXEL_UNPACK_BUFFER, 0 unbinds
+    void bindUnpackBuffer(int buffer);
+
+    // Mutable storage for the bound unpack buffer
+    void bufferData(long size);
+
+    // Immutable storage for the bound unpack buffer, mapped persistently and coherently
+    ByteBuffer bufferStorageMapped(long size);
+
+    // Maps the whole bound unpack buffer for writing, invalidating its contents.
+    // Unsynchronized skips the driver's implicit wait for the GPU.
+    ByteBuffer mapForWrite(long size, boolean unsynchronized);
+
+    void unmap();
+
+    // glTexSubImage2D of the full width rows [y, y + height) of the bound texture,
+    // read from offset in the bound unpack buffer
+    void texSubImageFromUnpackBuffer(int y, int width, int height, PixelFormat format, long offset);
+
+    // Returns 0 when sync objects are not available
+    long fenceSync();
+
+    void waitSync(long sync);
+
+    void deleteSync(long sync);
+}
@@ -0,0 +1,104 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.lwjgl.opengl.GL11.GL_RGB;
+import static org.lwjgl.opengl.GL11.GL_RGB8;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL12.GL_BGRA;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_8_8_8_8_REV;
+
+/**
+ * Memory layout of a software frame buffer and how it is handed to GL.
+ * <p>
+ * The 32 bit formats store one native order int per pixel and are uploaded
+ * as GL_UNSIGNED_INT_8_8_8_8_REV, so GL reads the int the same way on any
+ * endianness. BGRA8888 keeps the int as 0xAARRGGBB, the rasterizer's own
+ * packing, and is what most drivers take without converting.
+ */
+public enum PixelFormat {
+    RGB888(3, GL_RGB8, GL_RGB, GL_UNSIGNED_BYTE),
+    RGBA8888(4, GL_RGBA8, GL_RGBA, GL_UNSIGNED_INT_8_8_8_8_REV),
+    BGRA8888(4, GL_RGBA8, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV);
+
+    public final int bytesPerPixel;
+    public final int glInternalFormat;
+    public final int glFormat;
+    public final int glType;
+
+    PixelFormat(final int bytesPerPixel, final int glInternalFormat, final int glFormat, final int glType) {
+        this.bytesPerPixel = bytesPerPixel;
+        this.glInternalFormat = glInternalFormat;
+        this.glFormat = glFormat;
+        this.glType = glType;
+    }
+
+    public boolean isPacked() {
+        return bytesPerPixel == 4;
+    }
+
+    /**
+     * Direct buffer for numPixels pixels, in native order so that packed formats
+     * can be written through an IntBuffer view.
+     */
+    public ByteBuffer allocate(final int numPixels) {
+        return ByteBuffer.allocateDirect(numPixels * bytesPerPixel).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The int a packed format stores for 0x00RRGGBB, opaque.
+     */
+    public int fromRgb(final int rgb) {
+        if (this == RGBA8888) {
+            return 0xFF000000 | swapRedBlue(rgb);
+        }
+        return 0xFF000000 | rgb;
+    }
+
+    /**
+     * 0x00RRGGBB from the int a packed format stores.
+     */
+    public int toRgb(final int stored) {
+        if (this == RGBA8888) {
+            return swapRedBlue(stored) & 0xFFFFFF;
+        }
+        return stored & 0xFFFFFF;
+    }
+
+    /**
+     * Pixel i of a buffer in this format as 0x00RRGGBB. Slow path for tests and
+     * capture, the rasterizer has its own.
+     */
+    public int get(final ByteBuffer buffer, final int i) {
+        if (isPacked()) {
+            return toRgb(toNativeOrder(buffer, buffer.getInt(i * 4)));
+        }
+
+        return Byte.toUnsignedInt(buffer.get(i * 3)) << 16
+                | Byte.toUnsignedInt(buffer.get(i * 3 + 1)) << 8
+                | Byte.toUnsignedInt(buffer.get(i * 3 + 2));
+    }
+
+    public void put(final ByteBuffer buffer, final int i, final int rgb) {
+        if (isPacked()) {
+            buffer.putInt(i * 4, toNativeOrder(buffer, fromRgb(rgb)));
+            return;
+        }
+
+        buffer.put(i * 3, (byte) (rgb >>> 16));
+        buffer.put(i * 3 + 1, (byte) (rgb >>> 8));
+        buffer.put(i * 3 + 2, (byte) rgb);
+    }
+
+    // Ints go through buffer views that may not be in native order, e.g. duplicates
+    private static int toNativeOrder(final ByteBuffer buffer, final int value) {
+        return buffer.order() == ByteOrder.nativeOrder() ? value : Integer.reverseBytes(value);
+    }
+
+    static int swapRedBlue(final int color) {
+        return color & 0xFF00FF00 | (color & 0xFF) << 16 | (color >>> 16) & 0xFF;
+    }
+}
@@ -0,0 +1,50 @@
+package nu.takacs.partifles.window;
+
+/**
+ * Precomputed alpha for a radial gradient circle, 1.0 in the centre falling
+ * linearly to 0 at the radius, stored as 8-bit values. Covers the same pixels
+ * as the original per-pixel drawGradientCircle: rows [-radius, radius) and on
+ * each row the columns [-w, w) around the centre.
+ */
+public class RadialMask {
+    final int radius;
+
+    // Row major, 2 * radius square, column 0 is at centre x - radius
+    final byte[] alpha;
+
+    // Span of each row that is inside the circle, as columns in the mask
+    final int[] rowFrom;
+    final int[] rowTo;
+
+    public RadialMask(final int radius) {
+        this.radius = radius;
+
+        final int size = 2 * radius;
+        alpha = new byte[size * size];
+        rowFrom = new int[size];
+        rowTo = new int[size];
+
+        for (int maskRow = 0; maskRow < size; ++maskRow) {
+            final int dy = Math.abs(maskRow - radius);
+            final int w = (int) Math.sqrt(radius * radius - dy * dy);
+
+            rowFrom[maskRow] = radius - w;
+            rowTo[maskRow] = radius + w;
+
+            for (int maskCol = radius - w; maskCol < radius + w; ++maskCol) {
+                final int dx = maskCol - radius;
+                final double a = 1.0 - Math.sqrt(dx * dx + dy * dy) / radius;
+
+                alpha[maskRow * size + maskCol] = (byte) Math.round(Math.max(0.0, a) * 255);
+            }
+        }
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getAlpha(final int maskRow, final int maskCol) {
+        return Byte.toUnsignedInt(alpha[maskRow * 2 * radius + maskCol]);
+    }
+}
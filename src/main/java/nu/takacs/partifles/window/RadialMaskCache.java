@@ -0,0 +1,36 @@
+package nu.takacs.partifles.window;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of radial gradient masks keyed by radius.
+ */
+public class RadialMaskCache {
+    private final Map<Integer, RadialMask> masks;
+
+    // Last hit, particles tend to share a radius so this skips the map most of the time
+    private RadialMask last = null;
+
+    public RadialMaskCache(final int maxEntries) {
+        masks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, RadialMask> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public RadialMask get(final int radius) {
+        if (last != null && last.radius == radius) {
+            return last;
+        }
+
+        last = masks.computeIfAbsent(radius, RadialMask::new);
+        return last;
+    }
+
+    public int size() {
+        return masks.size();
+    }
+}
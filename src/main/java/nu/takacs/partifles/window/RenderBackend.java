@@ -0,0 +1,52 @@
+package nu.takacs.partifles.window;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where particle batches are drawn. Everything else always goes through the
+ * software rasterizer.
+ */
+public enum RenderBackend {
+    // Rasterized into the frame buffer like any other draw call, the reference
+    SOFTWARE {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return true;
+        }
+    },
+
+    // One instanced draw per batch on top of the uploaded software frame
+    INSTANCED {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return features.drawInstanced && features.instancedArrays;
+        }
+    };
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderBackend.class);
+
+    public abstract boolean isSupported(GlFeatures features);
+
+    /**
+     * @param requested name of the backend to use if supported, null for the software reference
+     */
+    public static RenderBackend select(final GlFeatures features, final String requested) {
+        if (requested == null) {
+            return SOFTWARE;
+        }
+
+        try {
+            final RenderBackend backend = valueOf(requested);
+
+            if (backend.isSupported(features)) {
+                return backend;
+            }
+            LOG.warn("Render backend {} is not supported, using {}", requested, SOFTWARE);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown render backend {}", requested);
+        }
+
+        return SOFTWARE;
+    }
+}
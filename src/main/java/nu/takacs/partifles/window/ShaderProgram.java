@@ -0,0 +1,101 @@
+package nu.takacs.partifles.window;
+
+import org.lwjgl.system.MemoryStack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.system.MemoryStack.stackPush;
+
+/**
+ * A linked GL program. The locations of all its active uniforms are looked
+ * up once at link time, so nothing has to ask the driver for them per frame.
+ */
+public class ShaderProgram {
+    private final int id;
+    private final Map<String, Integer> uniformLocations;
+
+    private ShaderProgram(final int id, final Map<String, Integer> uniformLocations) {
+        this.id = id;
+        this.uniformLocations = uniformLocations;
+    }
+
+    public static ShaderProgram link(final String vertexShaderSource, final String fragmentShaderSource) {
+        final int vs = compile(GL_VERTEX_SHADER, "Vertex", vertexShaderSource);
+        final int fs = compile(GL_FRAGMENT_SHADER, "Fragment", fragmentShaderSource);
+
+        final int program = glCreateProgram();
+        glAttachShader(program, fs);
+        glAttachShader(program, vs);
+        glLinkProgram(program);
+
+        // The program keeps what it needs, the shader objects are done with
+        glDetachShader(program, fs);
+        glDetachShader(program, vs);
+        glDeleteShader(fs);
+        glDeleteShader(vs);
+
+        if (glGetProgrami(program, GL_LINK_STATUS) != GL_TRUE) {
+            final String log = glGetProgramInfoLog(program);
+            glDeleteProgram(program);
+            throw new RuntimeException("Shader program link error: " + log);
+        }
+
+        return new ShaderProgram(program, activeUniformLocations(program));
+    }
+
+    private static int compile(final int type, final String description, final String source) {
+        final int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) != GL_TRUE) {
+            final String log = glGetShaderInfoLog(shader);
+            glDeleteShader(shader);
+            throw new RuntimeException(description + " shader compilation error: " + log);
+        }
+
+        return shader;
+    }
+
+    private static Map<String, Integer> activeUniformLocations(final int program) {
+        final Map<String, Integer> locations = new HashMap<>();
+        final int count = glGetProgrami(program, GL_ACTIVE_UNIFORMS);
+
+        try (MemoryStack stack = stackPush()) {
+            final var size = stack.mallocInt(1);
+            final var type = stack.mallocInt(1);
+
+            for (int i = 0; i < count; ++i) {
+                final String name = glGetActiveUniform(program, i, size, type);
+                locations.put(name, glGetUniformLocation(program, name));
+            }
+        }
+
+        return locations;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Location of an active uniform. Uniforms the compiler optimized away are not
+     * active, so asking for one is almost certainly a bug.
+     */
+    public int getUniformLocation(final String name) {
+        final Integer location = uniformLocations.get(name);
+
+        if (location == null) {
+            throw new IllegalArgumentException("No active uniform " + name);
+        }
+
+        return location;
+    }
+
+    public void delete() {
+        glDeleteProgram(id);
+    }
+}
@@ -0,0 +1,548 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Draw primitives shared by every backend that renders in software into a
+ * frame buffer in one of the {@link PixelFormat}s. Packed 32 bit formats are
+ * written one aligned int per pixel through an IntBuffer view.
+ */
+public abstract class SoftwareRasterizer implements WindowContext {
+    private static final int MAX_CACHED_MASKS = 64;
+
+    protected final ByteBuffer frameBuffer;
+    protected final PixelFormat pixelFormat;
+    protected final int viewPortWidth;
+    protected final int viewPortHeight;
+    protected final int numPixels;
+
+    // View of a packed frame buffer, null for RGB888
+    private final IntBuffer packedPixels;
+    private final boolean swapRedBlue;
+    private final int bytesPerPixel;
+
+    private long frameTimeNanos = 0;
+
+    // Drawing is limited to [clipLeft, clipRight) x [clipTop, clipBottom)
+    private int clipLeft;
+    private int clipTop;
+    private int clipRight;
+    private int clipBottom;
+
+    private final RadialMaskCache radialMasks = new RadialMaskCache(MAX_CACHED_MASKS);
+    private BlendMode blendMode = BlendMode.ALPHA_OVER;
+
+    // Everything drawn since the last clearFrame
+    protected final DirtyRows dirtyRows;
+    // What clearFrame reset plus what has been drawn since, i.e. what changed in the frame buffer
+    private final DirtyRows changedRows;
+    private boolean dirtyClearing = true;
+
+    // Rows of solid colour, bulk copied into the frame buffer when filling
+    private final ByteBuffer clearRow;
+    private final ByteBuffer fillRow;
+    private int clearColor = 0x000000;
+    private int fillColor = 0x000000;
+
+    // Views of the frame buffer and fill rows used for bulk copies, kept to avoid per-call allocation
+    private final ByteBuffer fillTarget;
+    private final ByteBuffer clearRowSource;
+    private final ByteBuffer fillRowSource;
+
+    protected SoftwareRasterizer(final ByteBuffer frameBuffer,
+                                 final PixelFormat pixelFormat,
+                                 final int viewPortWidth,
+                                 final int viewPortHeight) {
+        this.frameBuffer = frameBuffer;
+        this.pixelFormat = pixelFormat;
+        this.packedPixels = pixelFormat.isPacked() ? frameBuffer.asIntBuffer() : null;
+        this.swapRedBlue = pixelFormat == PixelFormat.RGBA8888;
+        this.bytesPerPixel = pixelFormat.bytesPerPixel;
+        this.viewPortWidth = viewPortWidth;
+        this.viewPortHeight = viewPortHeight;
+        this.numPixels = viewPortWidth * viewPortHeight;
+        resetClip();
+
+        this.dirtyRows = new DirtyRows(viewPortWidth, viewPortHeight);
+        this.changedRows = new DirtyRows(viewPortWidth, viewPortHeight);
+        this.clearRow = pixelFormat.allocate(viewPortWidth);
+        this.fillRow = pixelFormat.allocate(viewPortWidth);
+        fillSolidRow(clearRow, clearColor);
+        fillSolidRow(fillRow, fillColor);
+        this.fillTarget = frameBuffer.duplicate();
+        this.clearRowSource = clearRow.duplicate();
+        this.fillRowSource = fillRow.duplicate();
+
+        // Nothing is known about the initial contents, so the first frame clears and uploads all of it
+        dirtyRows.markAll();
+    }
+
+    public void setFrameTimeNanos(final long frameTimeNanos) {
+        this.frameTimeNanos = frameTimeNanos;
+    }
+
+    @Override
+    public long getFrameTimeNanos() {
+        return frameTimeNanos;
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    /**
+     * Limits all drawing to a rectangle, right and bottom exclusive. Clipped to the viewport.
+     */
+    public void setClip(final int left, final int top, final int right, final int bottom) {
+        clipLeft = Math.max(0, left);
+        clipTop = Math.max(0, top);
+        clipRight = Math.min(viewPortWidth, right);
+        clipBottom = Math.min(viewPortHeight, bottom);
+    }
+
+    public void resetClip() {
+        setClip(0, 0, viewPortWidth, viewPortHeight);
+    }
+
+    @Override
+    public void setBlendMode(final BlendMode blendMode) {
+        this.blendMode = blendMode;
+    }
+
+    @Override
+    public BlendMode getBlendMode() {
+        return blendMode;
+    }
+
+    /**
+     * Colour that clearFrame resets the frame to.
+     */
+    public void setClearColor(final int r, final int g, final int b) {
+        clearColor = packRgb(r, g, b);
+        fillSolidRow(clearRow, clearColor);
+
+        // Pixels outside what has been drawn still have the old colour
+        dirtyRows.markAll();
+    }
+
+    /**
+     * When enabled, clearFrame only resets the rows and spans drawn to since the
+     * previous clear. Otherwise the whole frame is cleared every time.
+     */
+    public void setDirtyClearing(final boolean dirtyClearing) {
+        this.dirtyClearing = dirtyClearing;
+    }
+
+    /**
+     * Resets the frame to the clear colour, called at the start of each frame.
+     */
+    public void clearFrame() {
+        if (!dirtyClearing) {
+            dirtyRows.markAll();
+        }
+
+        changedRows.reset();
+        changedRows.add(dirtyRows);
+
+        for (int row = dirtyRows.getMinRow(); row < dirtyRows.getMaxRow(); ++row) {
+            if (dirtyRows.isRowDirty(row)) {
+                fillSpan(row * viewPortWidth + dirtyRows.getMinX(row),
+                        row * viewPortWidth + dirtyRows.getMaxX(row),
+                        clearRowSource);
+            }
+        }
+
+        dirtyRows.reset();
+    }
+
+    /**
+     * Everything that differs from the previous frame: what clearFrame reset and
+     * what has been drawn since. Only meaningful once the frame is finished, and
+     * the basis for partial texture uploads.
+     */
+    public DirtyRows getChangedRows() {
+        changedRows.add(dirtyRows);
+        return changedRows;
+    }
+
+    @Override
+    public void clear(final int r, final int g, final int b) {
+        final int color = packRgb(r, g, b);
+
+        if (color != fillColor) {
+            fillColor = color;
+            fillSolidRow(fillRow, fillColor);
+        }
+
+        if (clipLeft >= clipRight) {
+            return;
+        }
+
+        for (int row = clipTop; row < clipBottom; ++row) {
+            fillSpan(row * viewPortWidth + clipLeft, row * viewPortWidth + clipRight, fillRowSource);
+        }
+
+        dirtyRows.markRect(clipLeft, clipTop, clipRight - clipLeft, clipBottom - clipTop);
+    }
+
+    // Copies the first (toPixel - fromPixel) pixels of a solid row into the frame buffer
+    private void fillSpan(final int fromPixel, final int toPixel, final ByteBuffer rowSource) {
+        fillTarget.clear();
+        fillTarget.position(fromPixel * bytesPerPixel);
+        fillTarget.limit(toPixel * bytesPerPixel);
+
+        rowSource.clear();
+        rowSource.limit((toPixel - fromPixel) * bytesPerPixel);
+
+        fillTarget.put(rowSource);
+    }
+
+    private void fillSolidRow(final ByteBuffer row, final int color) {
+        for (int i = 0; i < viewPortWidth; ++i) {
+            pixelFormat.put(row, i, color);
+        }
+    }
+
+    private static int packRgb(final int r, final int g, final int b) {
+        return (r & 0xFF) << 16 | (g & 0xFF) << 8 | (b & 0xFF);
+    }
+
+    @Override
+    public void drawGradient() {
+        dirtyRows.markRect(clipLeft, clipTop, clipRight - clipLeft, clipBottom - clipTop);
+
+        for (int row = clipTop; row < clipBottom; ++row) {
+            for (int col = clipLeft; col < clipRight; ++col) {
+                final int red = (int) (255 * (col / (float) viewPortWidth)) & 0xFF;
+                setPixel(row * viewPortWidth + col, red << 16);
+            }
+        }
+    }
+
+    @Override
+    public void drawRect(final int x, final int y,
+                         final int width, final int height,
+                         final int r, final int g, final int b) {
+        dirtyRows.markRect(x, y, width, height);
+
+        final int color = packRgb(r, g, b);
+        final int fromCol = Math.max(x, clipLeft);
+        final int toCol = Math.min(x + width, clipRight);
+
+        // Going row by row as it fits our data structure
+        for (int row = Math.max(y, clipTop); row < y + height && row < clipBottom; ++row) {
+            for (int i = row * viewPortWidth + fromCol; i < row * viewPortWidth + toCol; ++i) {
+                setPixel(i, color);
+            }
+        }
+    }
+
+    @Override
+    public void drawLine(
+            final int x1, final int y1, final int x2, final int y2,
+            final int width,
+            final int r, final int g, final int b) {
+        // TODO: remove multiplication and other optimzations
+        // TODO: thickness
+
+        // Compute slope k
+        // Draw line by line
+        // Maybe draw from the other axis when slope is above 1 for more consistent thickness?
+
+        // Line thickness spills over the row ends, so take whole rows
+        dirtyRows.markRows(Math.min(y1, y2) - 1, Math.max(y1, y2) + 2);
+
+        final float k = Math.abs(y2 - y1) / (float) Math.abs(x1 - x2);
+
+        if (Float.isInfinite(k) || k > 1.0f) {
+            drawLineAlongY(x1, y1, x2, y2, width, r, g, b);
+        } else {
+            drawLineAlongX(x1, y1, x2, y2, width, r, g, b);
+        }
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final byte[] pixels) {
+        dirtyRows.markRect(x, y, 1, pixels.length / 3);
+
+        if (x < clipLeft || x >= clipRight) {
+            return;
+        }
+
+        for (int i = 0; i < pixels.length; i += 3) {
+            final int row = y + i / 3;
+
+            if (clipTop <= row && row < clipBottom) {
+                setPixel(row * viewPortWidth + x,
+                        packRgb(pixels[i], pixels[i + 1], pixels[i + 2]));
+            }
+        }
+    }
+
+    @Override
+    public void drawParticles(final ParticleBatch batch) {
+        if (!drawParticleBatch(batch, blendMode)) {
+            WindowContext.super.drawParticles(batch);
+        } else if (batch.hasSprites()) {
+            batch.drawSprites(this);
+        }
+    }
+
+    /**
+     * Lets a backend draw the gradient circles of a particle batch some other
+     * way than rasterizing them into the frame buffer. The sprite particles of
+     * a batch it takes are still rasterized.
+     *
+     * @return false to have the batch rasterized as usual
+     */
+    protected boolean drawParticleBatch(final ParticleBatch batch, final BlendMode blendMode) {
+        return false;
+    }
+
+    @Override
+    public void drawGradientCircle(int x, int y, int radius, int r, int g, int b) {
+        if (radius <= 0) {
+            return;
+        }
+
+        dirtyRows.markRect(x - radius, y - radius, 2 * radius, 2 * radius);
+
+        final RadialMask mask = radialMasks.get(radius);
+        final BlendMode blendMode = this.blendMode;
+        final int color = packRgb(r, g, b);
+        final byte[] maskAlpha = mask.alpha;
+        final int maskSize = 2 * radius;
+        final int left = x - radius;
+        final int top = y - radius;
+
+        // Clip the mask rows and columns to the clip rectangle
+        final int fromRow = Math.max(0, clipTop - top);
+        final int toRow = Math.min(maskSize, clipBottom - top);
+
+        for (int maskRow = fromRow; maskRow < toRow; ++maskRow) {
+            final int fromCol = Math.max(mask.rowFrom[maskRow], clipLeft - left);
+            final int toCol = Math.min(mask.rowTo[maskRow], clipRight - left);
+
+            int i = (top + maskRow) * viewPortWidth + left + fromCol;
+            int m = maskRow * maskSize + fromCol;
+
+            for (int maskCol = fromCol; maskCol < toCol; ++maskCol, ++i, ++m) {
+                final int a = Byte.toUnsignedInt(maskAlpha[m]);
+
+                setPixel(i, blendMode.blend(getPixel(i), color, a));
+            }
+        }
+    }
+
+    @Override
+    public void drawSprite(final SpriteAtlas atlas, final int frame, final int x, final int y,
+                           final float scale, final int tint, final float alpha) {
+        final int width = atlas.scaledWidth(scale);
+        final int height = atlas.scaledHeight(scale);
+        final int alpha8 = Math.round(Math.max(0.0f, Math.min(1.0f, alpha)) * 255);
+
+        if (width <= 0 || height <= 0 || alpha8 == 0) {
+            return;
+        }
+
+        final int left = x - width / 2;
+        final int bottom = y - height / 2;
+        dirtyRows.markRect(left, bottom, width, height);
+
+        final int fromRow = Math.max(0, clipTop - bottom);
+        final int toRow = Math.min(height, clipBottom - bottom);
+        final int fromCol = Math.max(0, clipLeft - left);
+        final int toCol = Math.min(width, clipRight - left);
+
+        if (fromRow >= toRow || fromCol >= toCol) {
+            return;
+        }
+
+        final int[] pixels = atlas.pixels;
+        final int frameLeft = atlas.frameLeft(frame);
+        final int frameBottom = atlas.frameBottom(frame);
+        final BlendMode blendMode = this.blendMode;
+
+        // Untinted and opaque sprites skip the per pixel colour multiply
+        final boolean modulate = tint != 0xFFFFFF || alpha8 != 255;
+        final int alphaScale = alpha8 + (alpha8 >>> 7);
+        final int tintRed = toScale((tint >>> 16 & 0xFF) * alphaScale >>> 8);
+        final int tintGreen = toScale((tint >>> 8 & 0xFF) * alphaScale >>> 8);
+        final int tintBlue = toScale((tint & 0xFF) * alphaScale >>> 8);
+
+        // Sample the centre of each destination pixel, 16.16 fixed point
+        final int stepX = (atlas.frameWidth << 16) / width;
+        final int stepY = (atlas.frameHeight << 16) / height;
+        final int firstSampleX = fromCol * stepX + (stepX >>> 1);
+
+        for (int row = fromRow; row < toRow; ++row) {
+            final int sampleRow = frameBottom + ((row * stepY + (stepY >>> 1)) >>> 16);
+            final int rowStart = sampleRow * atlas.width + frameLeft;
+
+            int i = (bottom + row) * viewPortWidth + left + fromCol;
+            int sampleX = firstSampleX;
+
+            for (int col = fromCol; col < toCol; ++col, ++i, sampleX += stepX) {
+                final int pixel = pixels[rowStart + (sampleX >>> 16)];
+                int coverage = pixel >>> 24;
+
+                if (coverage == 0) {
+                    continue;
+                }
+
+                int src = pixel & 0xFFFFFF;
+
+                if (modulate) {
+                    src = modulate(src, tintRed, tintGreen, tintBlue);
+                    coverage = coverage * alphaScale >>> 8;
+                }
+
+                if (coverage == 255 && blendMode == BlendMode.ALPHA_OVER) {
+                    setPixel(i, src);
+                } else {
+                    setPixel(i, blendMode.blendPremultiplied(getPixel(i), src, coverage));
+                }
+            }
+        }
+    }
+
+    // 0-255 to a 0-256 multiplier, so 255 leaves a channel unchanged after >>> 8
+    private static int toScale(final int value) {
+        return value + (value >>> 7);
+    }
+
+    // Every channel of color times the matching 0-256 multiplier / 256
+    private static int modulate(final int color, final int red, final int green, final int blue) {
+        return ((color >>> 16 & 0xFF) * red >>> 8) << 16
+                | ((color >>> 8 & 0xFF) * green >>> 8) << 8
+                | (color & 0xFF) * blue >>> 8;
+    }
+
+    // Pixel i as 0x00RRGGBB
+    protected int getPixel(final int i) {
+        if (packedPixels != null) {
+            final int stored = packedPixels.get(i);
+            return (swapRedBlue ? PixelFormat.swapRedBlue(stored) : stored) & 0xFFFFFF;
+        }
+
+        return Byte.toUnsignedInt(frameBuffer.get(i * 3)) << 16
+                | Byte.toUnsignedInt(frameBuffer.get(i * 3 + 1)) << 8
+                | Byte.toUnsignedInt(frameBuffer.get(i * 3 + 2));
+    }
+
+    protected void setPixel(final int i, final int rgb) {
+        if (packedPixels != null) {
+            packedPixels.put(i, 0xFF000000 | (swapRedBlue ? PixelFormat.swapRedBlue(rgb) : rgb));
+            return;
+        }
+
+        frameBuffer.put(i * 3, (byte) (rgb >>> 16));
+        frameBuffer.put(i * 3 + 1, (byte) (rgb >>> 8));
+        frameBuffer.put(i * 3 + 2, (byte) rgb);
+    }
+
+    // Sets pixel i if it is inside the clip rectangle
+    private void plot(final int i, final int rgb) {
+        final int row = i / viewPortWidth;
+        final int col = i - row * viewPortWidth;
+
+        if (clipTop <= row && row < clipBottom && clipLeft <= col && col < clipRight) {
+            setPixel(i, rgb);
+        }
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final int height, int r, int g, int b) {
+        dirtyRows.markRect(x, y, 1, height);
+
+        if (x < clipLeft || x >= clipRight) {
+            return;
+        }
+
+        final int color = packRgb(r, g, b);
+        for (int row = Math.max(y, clipTop); row < y + height && row < clipBottom; ++row) {
+            setPixel(row * viewPortWidth + x, color);
+        }
+    }
+
+    @Override
+    public int getViewPortWidth() {
+        return viewPortWidth;
+    }
+
+    @Override
+    public int getViewPortHeight() {
+        return viewPortHeight;
+    }
+
+
+    private void drawLineAlongX(
+            final int x1, final int y1, final int x2, final int y2,
+            final int width,
+            final int r, final int g, final int b) {
+        int xa;
+        int ya;
+        int xb;
+        int yb;
+
+        if (x1 < x2) {
+            xa = x1;
+            ya = y1;
+            xb = x2;
+            yb = y2;
+        } else {
+            xa = x2;
+            ya = y2;
+            xb = x1;
+            yb = y1;
+        }
+
+        final float k = (yb - ya) / (float) (xb - xa);
+        final int color = packRgb(r, g, b);
+
+        int dx = (xb - xa);
+
+        for (int ix = 0; ix < dx; ++ix) {
+            float y = ya + ix * k;
+            int x = xa + ix;
+            int i = x + (int) (y) * viewPortWidth;
+
+            for (int j = Math.max(0, i - width / 2); j <= i + width / 2 && j < viewPortWidth * viewPortHeight; ++j) {
+                plot(j, color);
+            }
+        }
+    }
+
+    private void drawLineAlongY(
+            final int x1, final int y1, final int x2, final int y2,
+            final int width,
+            final int r, final int g, final int b) {
+        int xa;
+        int ya;
+        int xb;
+        int yb;
+
+        if (y1 < y2) {
+            xa = x1;
+            ya = y1;
+            xb = x2;
+            yb = y2;
+        } else {
+            xa = x2;
+            ya = y2;
+            xb = x1;
+            yb = y1;
+        }
+
+        final float k = (xb - xa) / (float) (yb - ya);
+        final int color = packRgb(r, g, b);
+
+        for (float i = ya * viewPortWidth + xa; i < yb * viewPortWidth; i += k + viewPortWidth) {
+            //TODO: fix the sides, dont' want to wrap around
+            for (int j = Math.max(0, (int) i - width / 2); j <= (int) i + width / 2 && j < viewPortWidth * viewPortHeight; ++j) {
+                plot(j, color);
+            }
+        }
+    }
+}
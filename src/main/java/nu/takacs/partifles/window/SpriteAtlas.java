@@ -0,0 +1,196 @@
+package nu.takacs.partifles.window;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An image cut into a grid of equally sized frames, decoded once into a flat
+ * array of premultiplied 0xAARRGGBB pixels for drawSprite. Rows are stored
+ * bottom up like the frame buffer, so drawing needs no flip.
+ * <p>
+ * Frames are numbered left to right, top to bottom in the source image, which
+ * makes a flipbook laid out in reading order play in order.
+ */
+public class SpriteAtlas {
+    // Premultiplied 0xAARRGGBB, row 0 is the bottom of the image
+    final int[] pixels;
+    final int width;
+    final int height;
+
+    final int frameWidth;
+    final int frameHeight;
+    private final int frameCount;
+    private final int columns;
+    private final int rows;
+
+    /**
+     * @param argb image pixels as non-premultiplied 0xAARRGGBB, top row first,
+     *             the layout BufferedImage.getRGB uses
+     */
+    public static SpriteAtlas fromArgb(final int[] argb, final int width, final int height,
+                                       final int frameWidth, final int frameHeight, final int frameCount) {
+        final int[] pixels = new int[width * height];
+
+        for (int row = 0; row < height; ++row) {
+            final int from = (height - 1 - row) * width;
+            for (int col = 0; col < width; ++col) {
+                pixels[row * width + col] = premultiply(argb[from + col]);
+            }
+        }
+
+        return new SpriteAtlas(pixels, width, height, frameWidth, frameHeight, frameCount);
+    }
+
+    /**
+     * Loads a class path resource as a single frame.
+     */
+    public static SpriteAtlas load(final String resource) {
+        final BufferedImage image = read(resource);
+        return fromImage(image, image.getWidth(), image.getHeight(), 1);
+    }
+
+    /**
+     * Loads a class path resource holding frameCount frames, the rest of the
+     * grid may be blank.
+     */
+    public static SpriteAtlas load(final String resource,
+                                   final int frameWidth, final int frameHeight, final int frameCount) {
+        return fromImage(read(resource), frameWidth, frameHeight, frameCount);
+    }
+
+    private static BufferedImage read(final String resource) {
+        try {
+            return decode(readResource(resource));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load sprite " + resource, e);
+        }
+    }
+
+    static byte[] readResource(final String resource) throws IOException {
+        try (InputStream stream = ClassLoader.getSystemResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IOException("No such resource");
+            }
+            return stream.readAllBytes();
+        }
+    }
+
+    static BufferedImage decode(final byte[] encoded) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (image == null) {
+            throw new IOException("Unknown image format");
+        }
+        return image;
+    }
+
+    private static SpriteAtlas fromImage(final BufferedImage image,
+                                         final int frameWidth, final int frameHeight, final int frameCount) {
+        return new SpriteAtlas(premultipliedPixels(image), image.getWidth(), image.getHeight(),
+                frameWidth, frameHeight, frameCount);
+    }
+
+    // Draws the image into one of premultiplied ints with Java2D's native loops instead of converting pixel by pixel
+    static int[] premultipliedPixels(final BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final var converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        final Graphics2D graphics = converted.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+
+        final int[] topDown = ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+        final int[] pixels = new int[width * height];
+        for (int row = 0; row < height; ++row) {
+            System.arraycopy(topDown, (height - 1 - row) * width, pixels, row * width, width);
+        }
+
+        return pixels;
+    }
+
+    // Takes pixels as stored, premultiplied and bottom up
+    SpriteAtlas(final int[] pixels, final int width, final int height,
+                        final int frameWidth, final int frameHeight, final int frameCount) {
+        if (frameWidth <= 0 || frameHeight <= 0 || width % frameWidth != 0 || height % frameHeight != 0) {
+            throw new IllegalArgumentException("Image of " + width + "x" + height
+                    + " can not be cut into frames of " + frameWidth + "x" + frameHeight);
+        }
+
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.columns = width / frameWidth;
+        this.rows = height / frameHeight;
+
+        if (frameCount < 1 || frameCount > columns * rows) {
+            throw new IllegalArgumentException("Image has room for " + columns * rows + " frames, not " + frameCount);
+        }
+        this.frameCount = frameCount;
+    }
+
+    private static int premultiply(final int argb) {
+        final int a = argb >>> 24;
+        if (a == 255) {
+            return argb;
+        }
+
+        final int scale = a + (a >>> 7);
+        final int rb = ((argb & 0xFF00FF) * scale) >>> 8;
+        final int g = ((argb & 0x00FF00) * scale) >>> 8;
+
+        return a << 24 | (rb & 0xFF00FF) | (g & 0x00FF00);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    // Column of the frame's left edge in pixels
+    int frameLeft(final int frame) {
+        return (frame % columns) * frameWidth;
+    }
+
+    // Row of the frame's bottom edge in pixels, counting from the bottom
+    int frameBottom(final int frame) {
+        return (rows - 1 - frame / columns) * frameHeight;
+    }
+
+    /**
+     * The frame's pixel at (col, row), row 0 at the bottom, as premultiplied 0xAARRGGBB.
+     */
+    public int getPixel(final int frame, final int col, final int row) {
+        return pixels[(frameBottom(frame) + row) * width + frameLeft(frame) + col];
+    }
+
+    // Size of a frame drawn at scale, the same rounding drawSprite uses
+    public int scaledWidth(final float scale) {
+        return Math.round(frameWidth * scale);
+    }
+
+    public int scaledHeight(final float scale) {
+        return Math.round(frameHeight * scale);
+    }
+}
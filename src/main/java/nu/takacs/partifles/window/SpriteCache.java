@@ -0,0 +1,280 @@
+package nu.takacs.partifles.window;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads sprites through a directory of already decoded images, so only the
+ * first run pays for PNG and JPEG decoding.
+ * <p>
+ * Entries are named by the SHA-256 of the encoded resource, so an edited
+ * image gets a new entry and a stale one is never used. An entry is a 16 byte
+ * little endian header of magic, version, width and height, followed by the
+ * premultiplied bottom up pixels exactly as SpriteAtlas keeps them. Reading one
+ * back maps the file and bulk copies the pixels out.
+ * <p>
+ * Entries are written to a temporary file and moved into place, so several
+ * processes can share a directory. A cache that can not be written only costs
+ * the decode on the next run.
+ */
+public class SpriteCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SpriteCache.class);
+
+    // "PSPR"
+    private static final int MAGIC = 0x50535052;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final String SUFFIX = ".sprite";
+
+    private final Path directory;
+
+    // Images already read by this cache, shared by all atlases cut from them
+    private final Map<String, Image> images = new ConcurrentHashMap<>();
+
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    public SpriteCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The directory named by the partifles.spriteCache property, by default
+     * partifles-sprites under the temporary directory.
+     */
+    public static Path defaultDirectory() {
+        final String directory = System.getProperty("partifles.spriteCache");
+        return directory != null
+                ? Path.of(directory)
+                : Path.of(System.getProperty("java.io.tmpdir"), "partifles-sprites");
+    }
+
+    /**
+     * Loads a class path resource as a single frame, like SpriteAtlas.load.
+     */
+    public SpriteAtlas load(final String resource) {
+        final Image image = image(resource);
+        return new SpriteAtlas(image.pixels, image.width, image.height, image.width, image.height, 1);
+    }
+
+    public SpriteAtlas load(final String resource,
+                            final int frameWidth, final int frameHeight, final int frameCount) {
+        final Image image = image(resource);
+        return new SpriteAtlas(image.pixels, image.width, image.height, frameWidth, frameHeight, frameCount);
+    }
+
+    /**
+     * Reads or decodes the resources on up to threads threads, so the loads
+     * that follow are instant. Returns when all are done, failing with the
+     * first resource that could not be loaded.
+     */
+    public void preload(final Collection<String> resources, final int threads) {
+        final List<String> missing = new ArrayList<>();
+        for (final String resource : new LinkedHashSet<>(resources)) {
+            if (!images.containsKey(resource)) {
+                missing.add(resource);
+            }
+        }
+
+        if (threads <= 1 || missing.size() <= 1) {
+            missing.forEach(this::image);
+            return;
+        }
+
+        final List<Callable<Image>> tasks = new ArrayList<>(missing.size());
+        for (final String resource : missing) {
+            tasks.add(() -> image(resource));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), runnable -> {
+            final var thread = new Thread(runnable, "sprite-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (final Future<Image> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading sprites", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to load sprites", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Entries read from disk, by this cache or another process
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    // Images that had to be decoded
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Image image(final String resource) {
+        final Image loaded = images.get(resource);
+        if (loaded != null) {
+            return loaded;
+        }
+
+        // Two threads may both read a resource, they get equal images and keep the first
+        final Image image = readOrDecode(resource);
+        final Image raced = images.putIfAbsent(resource, image);
+        return raced != null ? raced : image;
+    }
+
+    private Image readOrDecode(final String resource) {
+        try {
+            final byte[] encoded = SpriteAtlas.readResource(resource);
+            final Path file = directory.resolve(key(encoded) + SUFFIX);
+
+            final Image cached = read(file);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return cached;
+            }
+
+            final BufferedImage decoded = SpriteAtlas.decode(encoded);
+            final Image image = new Image(SpriteAtlas.premultipliedPixels(decoded),
+                    decoded.getWidth(), decoded.getHeight());
+            missCount.incrementAndGet();
+
+            write(file, image);
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load sprite " + resource, e);
+        }
+    }
+
+    // Null when there is no usable entry
+    private static Image read(final Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES) {
+                LOG.warn("Ignoring truncated sprite cache entry {}", file);
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            final int magic = buffer.getInt();
+            final int version = buffer.getInt();
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+
+            if (magic != MAGIC || version != VERSION || width <= 0 || height <= 0
+                    || size != HEADER_BYTES + 4L * width * height) {
+                LOG.warn("Ignoring unreadable sprite cache entry {}", file);
+                return null;
+            }
+
+            final int[] pixels = new int[width * height];
+            buffer.asIntBuffer().get(pixels);
+
+            return new Image(pixels, width, height);
+        } catch (IOException e) {
+            LOG.warn("Failed to read sprite cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    private void write(final Path file, final Image image) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "sprite", ".tmp");
+
+            final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * image.pixels.length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(image.width).putInt(image.height);
+            buffer.asIntBuffer().put(image.pixels);
+            buffer.rewind();
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.warn("Failed to write sprite cache entry {}", file, e);
+
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Left for whoever cleans the directory
+                }
+            }
+        }
+    }
+
+    private static String key(final byte[] encoded) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(encoded);
+            final var key = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                key.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Premultiplied bottom up pixels, never written to once read
+    private static final class Image {
+        final int[] pixels;
+        final int width;
+        final int height;
+
+        Image(final int[] pixels, final int width, final int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
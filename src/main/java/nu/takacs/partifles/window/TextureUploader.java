@@ -0,0 +1,13 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies a finished frame into the currently bound GL texture.
+ */
+public interface TextureUploader {
+    // Uploads rows [fromRow, toRow) of frame, the rest of the texture keeps its contents
+    void upload(ByteBuffer frame, int fromRow, int toRow);
+
+    void destroy();
+}
@@ -0,0 +1,21 @@
+package nu.takacs.partifles.window;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rasterizer used by a DeferredRasterizer worker to draw one tile at a time
+ * into a frame buffer it shares with the other workers.
+ */
+class TileRasterizer extends SoftwareRasterizer {
+    TileRasterizer(final ByteBuffer frameBuffer,
+                   final PixelFormat pixelFormat,
+                   final int viewPortWidth,
+                   final int viewPortHeight) {
+        super(frameBuffer, pixelFormat, viewPortWidth, viewPortHeight);
+    }
+
+    @Override
+    public boolean isKeyDown(final Key key) {
+        return false;
+    }
+}
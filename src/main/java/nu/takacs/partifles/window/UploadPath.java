@@ -0,0 +1,71 @@
+package nu.takacs.partifles.window;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ways of getting the software frame buffer into the GL texture, best first.
+ */
+public enum UploadPath {
+    // Ring of pixel unpack buffers that stay mapped for their whole lifetime
+    PBO_PERSISTENT {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return features.pixelBufferObject && features.bufferStorage && features.sync;
+        }
+    },
+
+    // Ring of pixel unpack buffers mapped every frame with glMapBufferRange
+    PBO_MAP_RANGE {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return features.pixelBufferObject && features.mapBufferRange;
+        }
+    },
+
+    // Texture storage allocated once, glTexSubImage2D from client memory every frame
+    TEX_SUB_IMAGE {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return true;
+        }
+    },
+
+    // The original path, glTexImage2D every frame which reallocates the texture storage
+    TEX_IMAGE {
+        @Override
+        public boolean isSupported(final GlFeatures features) {
+            return true;
+        }
+    };
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadPath.class);
+
+    public abstract boolean isSupported(GlFeatures features);
+
+    /**
+     * @param requested name of the path to use if supported, null to pick the best one
+     */
+    public static UploadPath select(final GlFeatures features, final String requested) {
+        if (requested != null) {
+            try {
+                final UploadPath path = valueOf(requested);
+
+                if (path.isSupported(features)) {
+                    return path;
+                }
+                LOG.warn("Upload path {} is not supported, picking another one", requested);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Unknown upload path {}", requested);
+            }
+        }
+
+        for (final UploadPath path : values()) {
+            if (path.isSupported(features)) {
+                return path;
+            }
+        }
+
+        return TEX_IMAGE;
+    }
+}
@@ -1,6 +1,9 @@
 package nu.takacs.partifles.window;
 
 public interface WindowContext {
+    // Fills the whole frame with one colour
+    void clear(int r, int g, int b);
+
     void drawGradient();
     void drawRect(int x1, int y1, int width, int height, int r, int g, int b);
     void drawLine(int x1, int y1, int x2, int y2, int width, int r, int g, int b);
@@ -8,10 +11,45 @@ public interface WindowContext {
 
     void drawGradientCircle(int x, int y, int radius, int r, int g, int b);
 
+    /**
+     * Draws a frame of a sprite centred on (x, y), scaled by nearest neighbour
+     * sampling. Colours are multiplied by tint, 0xRRGGBB, and the sprite's own
+     * alpha by alpha, 0-1.
+     */
+    void drawSprite(SpriteAtlas atlas, int frame, int x, int y, float scale, int tint, float alpha);
+
+    // Every particle as a gradient circle in its colour scaled by its alpha,
+    // or as its sprite frame tinted by its colour and as wide as its diameter.
+    // Backends that can draw a batch in bulk override this.
+    default void drawParticles(final ParticleBatch batch) {
+        final int size = batch.size();
+        for (int i = 0; i < size; ++i) {
+            if (batch.sprite[i] != null) {
+                batch.drawSprite(this, i);
+                continue;
+            }
+
+            final float alpha = batch.alpha[i];
+            final int color = batch.color[i];
+
+            drawGradientCircle((int) batch.x[i], (int) batch.y[i], (int) batch.radius[i],
+                    (int) ((color >>> 16 & 0xFF) * alpha),
+                    (int) ((color >>> 8 & 0xFF) * alpha),
+                    (int) ((color & 0xFF) * alpha));
+        }
+    }
+
+    // How drawGradientCircle combines with what is already drawn
+    void setBlendMode(BlendMode blendMode);
+    BlendMode getBlendMode();
+
     void drawColumn(int x, int y, int height, int r, int g, int b);
 
     int getViewPortWidth();
     int getViewPortHeight();
 
     boolean isKeyDown(Key key);
+
+    // Time the current frame started, on the clock driving the window
+    long getFrameTimeNanos();
 }
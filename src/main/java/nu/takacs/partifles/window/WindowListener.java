@@ -5,5 +5,7 @@ import nu.takacs.partifles.math.Vec2;
 public interface WindowListener {
     void onInit(final WindowContext windowContext);
     void onRender(final WindowContext windowContext);
+    // Cursor position in viewport pixels, y up like the frame buffer rows. Only valid during the call.
     void onMouseMove(Vec2 location);
+    void onClose();
 }
@@ -0,0 +1,306 @@
+package nu.takacs.partifles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import nu.takacs.partifles.window.SpriteAtlas;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class EmitterTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void emittersShareThePool() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(100);
+        final var second = emitter(50);
+        engine.addEmitter(second);
+
+        engine.update(1.0);
+
+        assertEquals(150, engine.getParticles().size());
+        assertEquals(100, engine.getDefaultEmitter().getLiveCount());
+        assertEquals(50, second.getLiveCount());
+    }
+
+    @Test
+    public void budgetCapsLiveParticles() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(100);
+        emitter.setBudget(30);
+        engine.addEmitter(emitter);
+
+        engine.update(1.0);
+        engine.update(1.0);
+
+        assertEquals(30, engine.getParticles().size());
+    }
+
+    @Test
+    public void fullPoolIsSharedByDemand() {
+        final var engine = new ParticleEngine(90);
+        engine.setEmissionRate(0);
+        final var big = emitter(200);
+        final var small = emitter(100);
+        engine.addEmitter(big);
+        engine.addEmitter(small);
+
+        engine.update(1.0);
+
+        assertEquals(60, countOwnedBy(engine, big));
+        assertEquals(30, countOwnedBy(engine, small));
+    }
+
+    @Test
+    public void droppedParticlesAreNotOwed() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(10);
+        emitter.setBudget(5);
+        engine.addEmitter(emitter);
+
+        engine.update(1.0);
+        emitter.setBudget(100);
+        engine.update(1.0);
+
+        assertEquals(15, engine.getParticles().size());
+    }
+
+    @Test
+    public void deferredParticlesAreEmittedWhenRoomFreesUp() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(10);
+        emitter.setBudget(5);
+        emitter.setOverflowPolicy(Emitter.OverflowPolicy.DEFER);
+        engine.addEmitter(emitter);
+
+        engine.update(1.0);
+        emitter.setBudget(100);
+        engine.update(1.0);
+
+        assertEquals(20, engine.getParticles().size());
+    }
+
+    @Test
+    public void deferredBacklogIsAtMostOneSecond() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(10);
+        emitter.setBudget(0);
+        emitter.setOverflowPolicy(Emitter.OverflowPolicy.DEFER);
+        engine.addEmitter(emitter);
+
+        for (int i = 0; i < 5; ++i) {
+            engine.update(1.0);
+        }
+        emitter.setBudget(100);
+        engine.update(0.0);
+
+        assertEquals(10, engine.getParticles().size());
+    }
+
+    @Test
+    public void removedEmitterDrainsBeforeItsSlotIsReused() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(10);
+        emitter.setTtl(1.5, 1.5);
+        engine.addEmitter(emitter);
+        engine.update(1.0);
+
+        engine.removeEmitter(emitter);
+        assertTrue(emitter.isAttached());
+        assertEquals(2, engine.getEmitterCount());
+
+        // Nothing new, the old particles keep living
+        engine.update(0.25);
+        assertEquals(10, engine.getParticles().size());
+        assertTrue(emitter.isAttached());
+
+        engine.update(1.5);
+        assertEquals(0, engine.getParticles().size());
+        assertFalse(emitter.isAttached());
+        assertEquals(1, engine.getEmitterCount());
+
+        final var replacement = emitter(10);
+        engine.addEmitter(replacement);
+        engine.update(1.0);
+        assertEquals(10, countOwnedBy(engine, replacement));
+        assertEquals(2, engine.getEmitterCount());
+    }
+
+    @Test
+    public void emittersComeAndGoWhileTheSimulationRuns() throws InterruptedException {
+        final var engine = new ParticleEngine(5000);
+        final var simulation = new FixedStepSimulation(engine, 1000);
+        final var emitters = new ArrayList<Emitter>();
+        final var removed = new ArrayList<Emitter>();
+        simulation.start();
+
+        for (int i = 0; i < 2000; ++i) {
+            final var emitter = emitter(2000);
+            emitter.setTtl(0.01, 0.05);
+            engine.addEmitter(emitter);
+            emitters.add(emitter);
+
+            if (emitters.size() > 20) {
+                final Emitter old = emitters.remove(i % emitters.size());
+                engine.removeEmitter(old);
+                removed.add(old);
+            }
+            if (i % 100 == 0) {
+                Thread.sleep(1);
+            }
+        }
+
+        // Still ticking
+        final long lastTick = simulation.getLatestSnapshot().timestampNanos;
+        Thread.sleep(20);
+        assertTrue(simulation.getLatestSnapshot().timestampNanos > lastTick);
+        simulation.stop();
+
+        engine.update(0.01);
+        int owned = countOwnedBy(engine, engine.getDefaultEmitter());
+        for (final Emitter emitter : emitters) {
+            assertTrue(emitter.isAttached());
+            assertEquals(emitter.getLiveCount(), countOwnedBy(engine, emitter));
+            owned += emitter.getLiveCount();
+        }
+        // Every other particle belongs to a removed emitter that is still draining
+        for (final Emitter emitter : removed) {
+            if (emitter.isAttached()) {
+                assertEquals(emitter.getLiveCount(), countOwnedBy(engine, emitter));
+                owned += emitter.getLiveCount();
+            }
+        }
+        assertEquals(engine.getParticles().size(), owned);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emitterBelongsToOneEngine() {
+        final var emitter = emitter(10);
+        new ParticleEngine(10).addEmitter(emitter);
+        new ParticleEngine(10).addEmitter(emitter);
+    }
+
+    @Test
+    public void colourFollowsTheRamp() {
+        final var emitter = new Emitter();
+        emitter.setColors(0xFF0000, 0x0000FF);
+
+        assertEquals(0xFF0000, emitter.colorAt(0));
+        assertEquals(0x7F007F, emitter.colorAt(0.5));
+        assertEquals(0x0000FF, emitter.colorAt(1));
+        assertEquals(0x0000FF, emitter.colorAt(2));
+    }
+
+    @Test
+    public void spriteFramesPlayOverTheLifetimeOrLoop() {
+        final var emitter = new Emitter();
+        final var atlas = SpriteAtlas.fromArgb(new int[4], 4, 1, 1, 1, 4);
+
+        emitter.setSprite(atlas, 0);
+        assertEquals(0, emitter.frameAt(0, 0));
+        assertEquals(2, emitter.frameAt(10, 0.6));
+        assertEquals(3, emitter.frameAt(10, 1));
+
+        emitter.setSprite(atlas, 2);
+        assertEquals(1, emitter.frameAt(0.5, 0));
+        assertEquals(1, emitter.frameAt(2.5, 0));
+    }
+
+    @Test
+    public void snapshotCarriesEmitterStyle() {
+        final var engine = new ParticleEngine(100);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(10);
+        emitter.setRadius(7);
+        emitter.setColors(0x102030, 0x102030);
+        engine.addEmitter(emitter);
+        engine.update(1.0);
+
+        final var snapshot = new ParticleSnapshot(100);
+        engine.snapshot(snapshot);
+
+        assertEquals(10, snapshot.count);
+        for (int i = 0; i < snapshot.count; ++i) {
+            assertEquals(7, snapshot.radius[i], 0);
+            assertEquals(0x102030, snapshot.color[i]);
+        }
+    }
+
+    @Test
+    public void shapesKeepParticlesInside() {
+        final var engine = new ParticleEngine(10000);
+        engine.setEmissionRate(0);
+
+        final var ellipse = emitter(1000);
+        ellipse.setShape(Emitter.Shape.ELLIPSE, 40, 10);
+        ellipse.setPosition(100, 200);
+        engine.addEmitter(ellipse);
+
+        final var point = emitter(1000);
+        point.setShape(Emitter.Shape.POINT, 0, 0);
+        point.setPosition(-50, 30);
+        engine.addEmitter(point);
+
+        engine.update(0.1);
+
+        final ParticleStore particles = engine.getParticles();
+        int inEllipse = 0;
+        for (int i = 0; i < particles.size(); ++i) {
+            // Back to where the particle was born
+            final double dx = particles.x[i] - particles.vx[i] * particles.age[i];
+            final double dy = particles.y[i] - particles.vy[i] * particles.age[i];
+
+            if (particles.emitter[i] == point.slot) {
+                assertEquals(-50, dx, 1e-6);
+                assertEquals(30, dy, 1e-6);
+            } else {
+                final double ex = (dx - 100) / 40;
+                final double ey = (dy - 200) / 10;
+                assertTrue(ex * ex + ey * ey <= 1 + 1e-6);
+                ++inEllipse;
+            }
+        }
+        assertTrue(inEllipse > 0);
+    }
+
+    @Test
+    public void ttlIsDrawnFromTheRange() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(0);
+        final var emitter = emitter(500);
+        emitter.setTtl(2, 3);
+        engine.addEmitter(emitter);
+        engine.update(0.5);
+
+        final ParticleStore particles = engine.getParticles();
+        for (int i = 0; i < particles.size(); ++i) {
+            assertTrue(particles.ttl[i] >= 2 - DELTA && particles.ttl[i] <= 3 + DELTA);
+        }
+    }
+
+    private static Emitter emitter(final double rate) {
+        final var emitter = new Emitter();
+        emitter.setRate(rate);
+        emitter.setSeed(7);
+        return emitter;
+    }
+
+    private static int countOwnedBy(final ParticleEngine engine, final Emitter emitter) {
+        final ParticleStore particles = engine.getParticles();
+        int count = 0;
+        for (int i = 0; i < particles.size(); ++i) {
+            if (particles.emitter[i] == emitter.slot) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,156 @@
+package nu.takacs.partifles;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import nu.takacs.partifles.random.Xoshiro256PlusPlus;
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.EmptyWindowListener;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.WindowContext;
+import org.junit.Test;
+
+public class ParticleEngineTest {
+
+    @Test
+    public void emitsFullRateAboveUpdateRate() {
+        final var engine = new ParticleEngine(200000);
+        engine.setEmissionRate(100000);
+
+        for (int frame = 0; frame < 60; ++frame) {
+            engine.update(1 / 60.0);
+        }
+
+        // Rounding may leave the very last particle in the remainder
+        final int emitted = engine.getParticles().size();
+        assertTrue("emitted " + emitted, emitted == 100000 || emitted == 99999);
+    }
+
+    @Test
+    public void carriesFractionalEmissionForward() {
+        final var engine = new ParticleEngine(100);
+        engine.setEmissionRate(25);
+
+        // 25/s at 100 Hz owes a quarter particle per update
+        for (int frame = 0; frame < 3; ++frame) {
+            engine.update(0.01);
+        }
+        assertEquals(0, engine.getParticles().size());
+
+        engine.update(0.01);
+        assertEquals(1, engine.getParticles().size());
+    }
+
+    @Test
+    public void batchIsSpreadOverTheFrame() {
+        final var engine = new ParticleEngine(100);
+        engine.setEmissionRate(10);
+        engine.update(1.0);
+
+        final ParticleStore particles = engine.getParticles();
+        assertEquals(10, particles.size());
+
+        // Emitted every 0.1 s, the first one has aged almost the whole frame
+        for (int i = 0; i < particles.size(); ++i) {
+            assertEquals(0.9 - i * 0.1, particles.age[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void parallelUpdateMatchesSerial() {
+        final var serial = new ParticleEngine(200000, 1);
+        final var parallel = new ParticleEngine(200000, 4);
+
+        for (final var engine : new ParticleEngine[]{serial, parallel}) {
+            engine.setSeed(42);
+            engine.setEmissionRate(60000);
+
+            // Long enough for the first particles to expire
+            for (int frame = 0; frame < 400; ++frame) {
+                engine.update(1 / 60.0);
+            }
+        }
+
+        final ParticleStore expected = serial.getParticles();
+        final ParticleStore actual = parallel.getParticles();
+
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.x, actual.x, 0.0);
+        assertArrayEquals(expected.y, actual.y, 0.0);
+        assertArrayEquals(expected.vx, actual.vx, 0.0);
+        assertArrayEquals(expected.vy, actual.vy, 0.0);
+        assertArrayEquals(expected.age, actual.age, 0.0);
+        parallel.close();
+    }
+
+    @Test
+    public void sameSeedEmitsTheSameParticles() {
+        final var first = new ParticleEngine(10000, 1);
+        final var second = new ParticleEngine(10000, 3);
+
+        for (final var engine : new ParticleEngine[]{first, second}) {
+            engine.setRandomSource(Xoshiro256PlusPlus::new);
+            engine.getDefaultEmitter().setVelocityDistribution(Emitter.Distribution.GAUSSIAN);
+            engine.setSeed(7);
+            engine.setEmissionRate(5000);
+
+            for (int frame = 0; frame < 60; ++frame) {
+                engine.update(1 / 60.0);
+            }
+        }
+
+        assertEquals(first.getParticles().size(), second.getParticles().size());
+        assertArrayEquals(first.getParticles().x, second.getParticles().x, 0.0);
+        assertArrayEquals(first.getParticles().vy, second.getParticles().vy, 0.0);
+        assertArrayEquals(first.getParticles().ttl, second.getParticles().ttl, 0.0);
+        second.close();
+    }
+
+    @Test
+    public void drawLeavesTheBlendModeAlone() {
+        final var engine = new ParticleEngine(100);
+        engine.setBlendMode(BlendMode.ADDITIVE);
+        engine.setEmissionRate(100);
+        engine.update(0.1);
+
+        final var snapshot = new ParticleSnapshot(100);
+        engine.snapshot(snapshot);
+
+        for (final boolean deferred : new boolean[]{false, true}) {
+            final var window = new OffscreenWindow(new EmptyWindowListener(), 64, 48);
+            if (deferred) {
+                window.setDeferredRendering(1);
+            }
+            window.init();
+            final WindowContext windowContext = window.getWindowContext();
+
+            windowContext.setBlendMode(BlendMode.MAX);
+            engine.draw(windowContext);
+            assertEquals(BlendMode.MAX, windowContext.getBlendMode());
+
+            windowContext.setBlendMode(BlendMode.ALPHA_OVER);
+            engine.draw(windowContext, snapshot, 0);
+            assertEquals(BlendMode.ALPHA_OVER, windowContext.getBlendMode());
+
+            window.terminate();
+        }
+    }
+
+    @Test
+    public void countsEmittedAndExpiredParticles() {
+        final var engine = new ParticleEngine(1000);
+        engine.setEmissionRate(100);
+        engine.getDefaultEmitter().setTtl(1.5, 1.5);
+
+        engine.update(1.0);
+        assertEquals(100, engine.getEmittedCount());
+        assertEquals(0, engine.getExpiredCount());
+
+        engine.update(1.0);
+        engine.update(1.0);
+        assertEquals(300, engine.getEmittedCount());
+        assertEquals(engine.getEmittedCount() - engine.getExpiredCount(), engine.getLiveCount());
+        assertEquals(engine.getParticles().size(), engine.getLiveCount());
+    }
+}
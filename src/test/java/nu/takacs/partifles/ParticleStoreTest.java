@@ -0,0 +1,35 @@
+package nu.takacs.partifles;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ParticleStoreTest {
+
+    @Test
+    public void addUntilFull() {
+        final var store = new ParticleStore(3);
+
+        assertEquals(0, store.add());
+        assertEquals(1, store.add());
+        assertEquals(2, store.add());
+        assertEquals(-1, store.add());
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    public void compactionFreesTail() {
+        final var store = new ParticleStore(3);
+        for (int i = 0; i < 3; ++i) {
+            store.x[store.add()] = i;
+        }
+
+        // Drop particle 1
+        store.move(2, 1);
+        store.truncate(2);
+
+        assertEquals(2, store.size());
+        assertEquals(2.0, store.x[1], 0.0);
+        assertEquals(2, store.add());
+    }
+}
@@ -0,0 +1,87 @@
+package nu.takacs.partifles;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class SpatialHashGridTest {
+
+    @Test
+    public void queryMatchesBruteForce() {
+        final int count = 5000;
+        final var random = new SplittableRandom(42);
+        final double[] x = new double[count];
+        final double[] y = new double[count];
+        for (int i = 0; i < count; ++i) {
+            x[i] = (random.nextDouble() - 0.5) * 1000;
+            y[i] = (random.nextDouble() - 0.5) * 1000;
+        }
+
+        // Few buckets so plenty of cells collide
+        final var grid = new SpatialHashGrid(10, 64, count);
+        grid.build(x, y, count);
+
+        final int[] result = new int[count];
+        for (int q = 0; q < 200; ++q) {
+            final double qx = (random.nextDouble() - 0.5) * 1000;
+            final double qy = (random.nextDouble() - 0.5) * 1000;
+            final double radius = random.nextDouble() * 40;
+
+            final int found = grid.query(qx, qy, radius, result);
+            final int[] actual = Arrays.copyOf(result, found);
+            Arrays.sort(actual);
+
+            final int[] expected = IntStream.range(0, count)
+                    .filter(i -> (x[i] - qx) * (x[i] - qx) + (y[i] - qy) * (y[i] - qy) <= radius * radius)
+                    .toArray();
+
+            assertArrayEquals("query " + q, expected, actual);
+        }
+    }
+
+    @Test
+    public void radiusWiderThanTheTableVisitsEveryBucketOnce() {
+        final double[] x = {0, 100, -100, 1000};
+        final double[] y = {0, 100, 50, 1000};
+        final var grid = new SpatialHashGrid(1, 4, 4);
+        grid.build(x, y, 4);
+
+        final int[] result = new int[8];
+        assertEquals(3, grid.query(0, 0, 200, result));
+    }
+
+    @Test
+    public void countsNeighboursBeyondTheResultArray() {
+        final double[] x = {0, 1, 2, 3};
+        final double[] y = {0, 0, 0, 0};
+        final var grid = new SpatialHashGrid(2, 16, 2);
+        grid.build(x, y, 4);
+
+        final int[] result = new int[2];
+        assertEquals(4, grid.query(0, 0, 5, result));
+    }
+
+    @Test
+    public void engineRebuildsGridAfterUpdate() {
+        final var engine = new ParticleEngine(1000);
+        engine.setSeed(1);
+        final var grid = new SpatialHashGrid(20, 256, 16);
+        engine.setNeighborGrid(grid);
+
+        engine.update(0.5);
+
+        assertEquals(engine.getParticles().size(), grid.size());
+    }
+
+    @Test
+    public void roundsBucketsUpToPowerOfTwo() {
+        assertEquals(1, new SpatialHashGrid(1, 1, 0).getBucketCount());
+        assertEquals(1024, new SpatialHashGrid(1, 1000, 0).getBucketCount());
+        assertEquals(1024, new SpatialHashGrid(1, 1024, 0).getBucketCount());
+    }
+}
@@ -0,0 +1,34 @@
+package nu.takacs.partifles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+
+    @Test
+    public void consumerSeesLatestPublished() {
+        final var buffer = new TripleBuffer<>(() -> new int[1]);
+
+        buffer.getBack()[0] = 1;
+        buffer.publish();
+        buffer.getBack()[0] = 2;
+        buffer.publish();
+
+        assertEquals(2, buffer.getFront()[0]);
+    }
+
+    @Test
+    public void frontIsStableWithoutNewPublish() {
+        final var buffer = new TripleBuffer<>(() -> new int[1]);
+
+        buffer.getBack()[0] = 1;
+        buffer.publish();
+
+        final int[] front = buffer.getFront();
+        assertSame(front, buffer.getFront());
+        assertNotSame(front, buffer.getBack());
+    }
+}
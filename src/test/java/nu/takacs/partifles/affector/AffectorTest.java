@@ -0,0 +1,162 @@
+package nu.takacs.partifles.affector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.ParticleStore;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class AffectorTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void gravityAddsConstantVelocity() {
+        final var particles = particles(new double[]{0, 5}, new double[]{0, 5});
+        particles.vx[1] = 3;
+
+        new Gravity(1, -10).apply(particles, 0, 2, 0.5);
+
+        assertEquals(0.5, particles.vx[0], DELTA);
+        assertEquals(-5, particles.vy[0], DELTA);
+        assertEquals(3.5, particles.vx[1], DELTA);
+    }
+
+    @Test
+    public void affectorsOnlyTouchTheirRange() {
+        final var particles = particles(new double[]{0, 0, 0}, new double[]{0, 0, 0});
+
+        new Gravity(0, 1).apply(particles, 1, 2, 1);
+
+        assertArrayEquals(new double[]{0, 1, 0}, particles.vy, DELTA);
+    }
+
+    @Test
+    public void dragDecaysExponentially() {
+        final var particles = particles(new double[]{0}, new double[]{0});
+        particles.vx[0] = 10;
+
+        final var drag = new Drag(2);
+        drag.apply(particles, 0, 1, 0.25);
+        drag.apply(particles, 0, 1, 0.25);
+
+        assertEquals(10 * Math.exp(-1), particles.vx[0], DELTA);
+    }
+
+    @Test
+    public void attractorPullsAndRepulsorPushes() {
+        final var particles = particles(new double[]{10, -10}, new double[]{0, 0});
+
+        new PointAttractor(0, 0, 100, 0).apply(particles, 0, 2, 1);
+        assertEquals(-1, particles.vx[0], DELTA);
+        assertEquals(1, particles.vx[1], DELTA);
+
+        new PointAttractor(0, 0, -200, 0).apply(particles, 0, 2, 1);
+        assertEquals(1, particles.vx[0], DELTA);
+    }
+
+    @Test
+    public void attractorMovesTakeEffectAtTheNextUpdate() {
+        final var particles = particles(new double[]{10, 10}, new double[]{0, 0});
+        final var attractor = new PointAttractor(0, 0, 100, 0);
+
+        // Moved between two chunks of the same update, both still see the old point
+        attractor.prepare(1);
+        attractor.apply(particles, 0, 1, 1);
+        attractor.setPosition(20, 0);
+        attractor.setStrength(200);
+        attractor.apply(particles, 1, 2, 1);
+        assertEquals(-1, particles.vx[0], DELTA);
+        assertEquals(-1, particles.vx[1], DELTA);
+
+        attractor.prepare(1);
+        attractor.apply(particles, 0, 1, 1);
+        assertEquals(1, particles.vx[0], DELTA);
+        assertEquals(20, attractor.getX(), 0);
+    }
+
+    @Test
+    public void vortexPushesAtRightAngles() {
+        final var particles = particles(new double[]{10}, new double[]{0});
+
+        new Vortex(0, 0, 100, 0).apply(particles, 0, 1, 1);
+
+        assertEquals(0, particles.vx[0], DELTA);
+        assertEquals(1, particles.vy[0], DELTA);
+    }
+
+    @Test
+    public void noiseIsSmoothAndBounded() {
+        double previous = NoiseField.valueNoise(0, 0.5, 7);
+
+        for (int step = 1; step < 1000; ++step) {
+            final double value = NoiseField.valueNoise(step * 0.01, 0.5, 7);
+
+            assertTrue(value >= -1 && value <= 1);
+            assertTrue("jump at " + step, Math.abs(value - previous) < 0.1);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void engineResultIsTheSameForAnyParallelism() {
+        final var serial = engine(1);
+        final var parallel = engine(4);
+
+        for (int step = 0; step < 30; ++step) {
+            serial.update(1 / 60.0);
+            parallel.update(1 / 60.0);
+        }
+
+        final int size = serial.getParticles().size();
+        assertEquals(size, parallel.getParticles().size());
+        assertArrayEquals(Arrays.copyOf(serial.getParticles().x, size),
+                Arrays.copyOf(parallel.getParticles().x, size), 0);
+        assertArrayEquals(Arrays.copyOf(serial.getParticles().vy, size),
+                Arrays.copyOf(parallel.getParticles().vy, size), 0);
+        parallel.close();
+    }
+
+    @Test
+    public void removedAffectorsStopActing() {
+        final var engine = new ParticleEngine(10);
+        engine.setEmissionRate(0);
+        final int index = engine.getParticles().add();
+        engine.getParticles().ttl[index] = 100;
+
+        final var gravity = new Gravity(0, -100);
+        engine.addAffector(gravity);
+        engine.update(0.1);
+        assertEquals(-10, engine.getParticles().vy[0], DELTA);
+
+        engine.removeAffector(gravity);
+        engine.update(0.1);
+        assertEquals(1, engine.getParticles().size());
+        assertEquals(-10, engine.getParticles().vy[0], DELTA);
+    }
+
+    private static ParticleEngine engine(final int parallelism) {
+        final var engine = new ParticleEngine(100000, parallelism);
+        engine.setSeed(3);
+        engine.setEmissionRate(100000);
+        engine.addAffector(new Gravity(0, -50));
+        engine.addAffector(new Drag(0.5));
+        engine.addAffector(new PointAttractor(20, 100, 1e5, 10));
+        engine.addAffector(new Vortex(0, 50, 1e5, 10));
+        engine.addAffector(new NoiseField(30, 40, 10, 11));
+        return engine;
+    }
+
+    private static ParticleStore particles(final double[] x, final double[] y) {
+        final var particles = new ParticleStore(x.length);
+        for (int i = 0; i < x.length; ++i) {
+            final int index = particles.add();
+            particles.x[index] = x[i];
+            particles.y[index] = y[i];
+        }
+        return particles;
+    }
+}
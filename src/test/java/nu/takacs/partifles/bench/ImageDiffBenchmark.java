@@ -0,0 +1,74 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.golden.ImageDiff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of holding a frame against its golden image, for identical frames
+ * (one mismatch pass), frames with a few scattered errors, like particle
+ * scenes a JVM rounds differently, and frames with small errors everywhere
+ * (the full per channel pass).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageDiffBenchmark {
+    @Param({"320x240", "1920x1080"})
+    public String viewPort;
+
+    private int[] expected;
+    private int[] same;
+    private int[] noisy;
+    private int[] sparse;
+
+    @Setup
+    public void setUp() {
+        final int pixels = ViewPorts.width(viewPort) * ViewPorts.height(viewPort);
+        final var random = new SplittableRandom(1);
+
+        expected = new int[pixels];
+        noisy = new int[pixels];
+        for (int i = 0; i < pixels; ++i) {
+            expected[i] = random.nextInt(0x1000000);
+            noisy[i] = expected[i] ^ random.nextInt(4);
+        }
+        same = expected.clone();
+
+        // One pixel in a thousand off by one
+        sparse = expected.clone();
+        for (int i = 0; i < pixels; i += 1000) {
+            sparse[i + random.nextInt(Math.min(1000, pixels - i))] ^= 1;
+        }
+    }
+
+    @Benchmark
+    public ImageDiff identical() {
+        return ImageDiff.compare(expected, same, 0);
+    }
+
+    @Benchmark
+    public ImageDiff scattered() {
+        return ImageDiff.compare(expected, sparse, 2);
+    }
+
+    @Benchmark
+    public ImageDiff different() {
+        return ImageDiff.compare(expected, noisy, 2);
+    }
+}
@@ -0,0 +1,84 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.Key;
+import nu.takacs.partifles.window.SpriteAtlas;
+import nu.takacs.partifles.window.WindowContext;
+
+/**
+ * Discards all draw calls, used to measure simulation cost on its own.
+ */
+public class NullWindowContext implements WindowContext {
+    private final int viewPortWidth;
+    private final int viewPortHeight;
+
+    public NullWindowContext(final int viewPortWidth, final int viewPortHeight) {
+        this.viewPortWidth = viewPortWidth;
+        this.viewPortHeight = viewPortHeight;
+    }
+
+    @Override
+    public void clear(final int r, final int g, final int b) {
+    }
+
+    @Override
+    public void drawGradient() {
+    }
+
+    @Override
+    public void drawRect(final int x1, final int y1, final int width, final int height,
+                         final int r, final int g, final int b) {
+    }
+
+    @Override
+    public void drawLine(final int x1, final int y1, final int x2, final int y2, final int width,
+                         final int r, final int g, final int b) {
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final byte[] pixels) {
+    }
+
+    @Override
+    public void drawGradientCircle(final int x, final int y, final int radius,
+                                   final int r, final int g, final int b) {
+    }
+
+    @Override
+    public void drawSprite(final SpriteAtlas atlas, final int frame, final int x, final int y,
+                           final float scale, final int tint, final float alpha) {
+    }
+
+    @Override
+    public void setBlendMode(final BlendMode blendMode) {
+    }
+
+    @Override
+    public BlendMode getBlendMode() {
+        return BlendMode.ALPHA_OVER;
+    }
+
+    @Override
+    public void drawColumn(final int x, final int y, final int height, final int r, final int g, final int b) {
+    }
+
+    @Override
+    public int getViewPortWidth() {
+        return viewPortWidth;
+    }
+
+    @Override
+    public int getViewPortHeight() {
+        return viewPortHeight;
+    }
+
+    @Override
+    public boolean isKeyDown(final Key key) {
+        return false;
+    }
+
+    @Override
+    public long getFrameTimeNanos() {
+        return 0;
+    }
+}
@@ -0,0 +1,66 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.ParticleStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Particles updated per second as the simulation is spread over more threads.
+ * Run with e.g. -p parallelism=1,2,4,8,16,32 to match the machine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelUpdateBenchmark {
+    private static final int PARTICLES = 1_000_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private ParticleEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new ParticleEngine(PARTICLES, parallelism);
+        engine.setEmissionRate(0);
+
+        final ParticleStore particles = engine.getParticles();
+        final int first = particles.addBatch(PARTICLES);
+
+        for (int i = first; i < particles.size(); ++i) {
+            particles.vx[i] = 1.0;
+            particles.vy[i] = 1.0;
+            particles.ttl[i] = Double.MAX_VALUE;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PARTICLES)
+    public int update() {
+        engine.update(1 / 60.0);
+        return engine.getParticles().size();
+    }
+}
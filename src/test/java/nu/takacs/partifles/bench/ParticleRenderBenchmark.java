@@ -0,0 +1,95 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.ParticleStore;
+import nu.takacs.partifles.window.DeferredRasterizer;
+import nu.takacs.partifles.window.EmptyWindowListener;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.WindowContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full ParticleEngine.render, simulation and rasterization, into an offscreen frame buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ParticleRenderBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int particles;
+
+    @Param({"800x600", "1920x1080"})
+    public String viewPort;
+
+    // Zero draws directly, otherwise through a DeferredRasterizer with this many threads
+    @Param({"0", "4"})
+    public int rasterThreads;
+
+    private ParticleEngine engine;
+    private OffscreenWindow window;
+    private WindowContext windowContext;
+
+    @Setup
+    public void setUp() {
+        final int width = ViewPorts.width(viewPort);
+        final int height = ViewPorts.height(viewPort);
+
+        window = new OffscreenWindow(new EmptyWindowListener(), width, height);
+        if (rasterThreads > 0) {
+            window.setDeferredRendering(rasterThreads);
+        }
+        window.init();
+        windowContext = window.getWindowContext();
+
+        engine = new ParticleEngine(particles);
+        engine.init(windowContext);
+        engine.setEmissionRate(0);
+
+        // Spread over the whole viewport
+        final var random = new SplittableRandom(1);
+        final ParticleStore store = engine.getParticles();
+        final int first = store.addBatch(particles);
+
+        for (int i = first; i < store.size(); ++i) {
+            store.x[i] = random.nextDouble() * width;
+            store.y[i] = random.nextDouble() * height;
+            store.vx[i] = (random.nextDouble() - 0.5) * 40.0;
+            store.vy[i] = random.nextDouble() * 40.0;
+            store.age[i] = random.nextDouble();
+            store.ttl[i] = Double.MAX_VALUE;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        window.terminate();
+    }
+
+    @Benchmark
+    public int render() {
+        engine.render(windowContext, 1 / 60.0);
+
+        if (windowContext instanceof DeferredRasterizer) {
+            ((DeferredRasterizer) windowContext).flush();
+        }
+        return engine.getParticles().size();
+    }
+}
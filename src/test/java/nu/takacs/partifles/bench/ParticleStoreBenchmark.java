@@ -0,0 +1,63 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.ParticleStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Update cost for a fixed number of live particles as the capacity grows.
+ * With the dense layout the time per frame should stay flat across maxParticles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleStoreBenchmark {
+
+    @Param({"50000", "200000", "1000000"})
+    public int maxParticles;
+
+    @Param({"10000"})
+    public int liveParticles;
+
+    private ParticleEngine engine;
+    private NullWindowContext windowContext;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        windowContext = new NullWindowContext(800, 600);
+        engine = new ParticleEngine(maxParticles);
+        engine.init(windowContext);
+        engine.setEmissionRate(0);
+
+        final ParticleStore particles = engine.getParticles();
+
+        for (int n = 0; n < liveParticles; ++n) {
+            final int i = particles.add();
+            particles.vx[i] = 1.0;
+            particles.vy[i] = 1.0;
+            particles.ttl[i] = Double.MAX_VALUE;
+        }
+    }
+
+    @Benchmark
+    public int render() {
+        engine.render(windowContext, 1 / 60.0);
+        return engine.getParticles().size();
+    }
+}
@@ -0,0 +1,69 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.random.RandomSource;
+import nu.takacs.partifles.random.SplitMix64;
+import nu.takacs.partifles.random.Xoshiro256PlusPlus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling an emission chunk worth of uniforms, from the generators emission
+ * can use against Math.random. Run with -t to see Math.random contend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class RandomSourceBenchmark {
+    private static final int COUNT = 1 << 14;
+
+    @Param({"SPLITMIX64", "XOSHIRO256PLUSPLUS"})
+    public String generator;
+
+    private final double[] target = new double[COUNT];
+    private RandomSource random;
+
+    @Setup
+    public void setUp() {
+        random = generator.equals("SPLITMIX64") ? new SplitMix64(1) : new Xoshiro256PlusPlus(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public double[] fillUniform() {
+        random.fillUniform(target, 0, COUNT, -20, 20);
+        return target;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public double[] fillGaussian() {
+        random.fillGaussian(target, 0, COUNT, 0, 20);
+        return target;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public double[] mathRandom() {
+        for (int i = 0; i < COUNT; ++i) {
+            target[i] = -20 + Math.random() * 40;
+        }
+        return target;
+    }
+}
@@ -0,0 +1,103 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.EmptyWindowListener;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.PixelFormat;
+import nu.takacs.partifles.window.WindowContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Software rasterizer primitives and the per-frame clear, drawn into an offscreen frame buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterizerBenchmark {
+
+    @Param({"800x600", "1920x1080", "3840x2160"})
+    public String viewPort;
+
+    @Param({"RGB888", "BGRA8888"})
+    public PixelFormat pixelFormat;
+
+    private OffscreenWindow window;
+    private WindowContext windowContext;
+    private int centerX;
+    private int centerY;
+
+    @Setup
+    public void setUp() {
+        final int width = ViewPorts.width(viewPort);
+        final int height = ViewPorts.height(viewPort);
+
+        window = new OffscreenWindow(new EmptyWindowListener(), width, height, pixelFormat);
+        window.init();
+        windowContext = window.getWindowContext();
+
+        centerX = width / 2;
+        centerY = height / 2;
+    }
+
+    // A frame with nothing drawn, i.e. the frame buffer clear
+    @Benchmark
+    public void emptyFrame() {
+        window.renderFrame();
+    }
+
+    // Clearing after a typical sparse frame, only the drawn rows are reset
+    @Benchmark
+    public void sparseFrame() {
+        windowContext.drawGradientCircle(centerX, centerY, 50, 150, 60, 0);
+        window.renderFrame();
+    }
+
+    @Benchmark
+    public void clear() {
+        windowContext.clear(20, 20, 40);
+    }
+
+    @Benchmark
+    public void drawGradientCircle() {
+        windowContext.drawGradientCircle(centerX, centerY, 50, 150, 60, 0);
+    }
+
+    @Benchmark
+    public void drawGradientCircleAdditive() {
+        windowContext.setBlendMode(BlendMode.ADDITIVE);
+        windowContext.drawGradientCircle(centerX, centerY, 50, 150, 60, 0);
+        windowContext.setBlendMode(BlendMode.ALPHA_OVER);
+    }
+
+    @Benchmark
+    public void drawRect() {
+        windowContext.drawRect(centerX - 50, centerY - 50, 100, 100, 150, 60, 0);
+    }
+
+    // Slope below one, goes through drawLineAlongX
+    @Benchmark
+    public void drawLineShallow() {
+        windowContext.drawLine(centerX - 200, centerY - 50, centerX + 200, centerY + 50, 3, 255, 255, 255);
+    }
+
+    // Slope above one, goes through drawLineAlongY
+    @Benchmark
+    public void drawLineSteep() {
+        windowContext.drawLine(centerX - 50, centerY - 200, centerX + 50, centerY + 200, 3, 255, 255, 255);
+    }
+}
@@ -0,0 +1,88 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.SpatialHashGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding the neighbour grid every tick, and radius queries against it.
+ * Particles are spread over an area that keeps the density at about
+ * particlesPerCell for cells the size of the query radius.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialHashGridBenchmark {
+    private static final double RADIUS = 10;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int particles;
+
+    @Param({"4"})
+    public int particlesPerCell;
+
+    private double[] x;
+    private double[] y;
+    private double[] queryX;
+    private double[] queryY;
+    private int[] result;
+    private SpatialHashGrid grid;
+
+    @Setup
+    public void setUp() {
+        final double side = Math.sqrt((double) particles / particlesPerCell) * RADIUS;
+        final var random = new SplittableRandom(1);
+
+        x = new double[particles];
+        y = new double[particles];
+        for (int i = 0; i < particles; ++i) {
+            x[i] = random.nextDouble() * side;
+            y[i] = random.nextDouble() * side;
+        }
+
+        queryX = new double[QUERIES];
+        queryY = new double[QUERIES];
+        for (int q = 0; q < QUERIES; ++q) {
+            queryX[q] = random.nextDouble() * side;
+            queryY[q] = random.nextDouble() * side;
+        }
+
+        result = new int[1024];
+        grid = new SpatialHashGrid(RADIUS, particles, particles);
+        grid.build(x, y, particles);
+    }
+
+    @Benchmark
+    public SpatialHashGrid build() {
+        grid.build(x, y, particles);
+        return grid;
+    }
+
+    // Time per query, neighbours within one cell size
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int query() {
+        int found = 0;
+        for (int q = 0; q < QUERIES; ++q) {
+            found += grid.query(queryX[q], queryY[q], RADIUS, result);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,109 @@
+package nu.takacs.partifles.bench;
+
+import nu.takacs.partifles.math.Vec2;
+import nu.takacs.partifles.math.Vec2Kernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocating Vec2 operations against their in-place and destination
+ * counterparts, and the array kernels against a loop over Vec2 objects.
+ * Run with -prof gc to see the allocation rate, gc.alloc.rate.norm should
+ * be about zero for everything but the allocating variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Vec2Benchmark {
+    private static final int COUNT = 1 << 14;
+
+    private final Vec2 position = new Vec2(10, 20);
+    private final Vec2 velocity = new Vec2(1.5, -2.5);
+    private final Vec2 scratch = new Vec2();
+
+    private final double[] x = new double[COUNT];
+    private final double[] y = new double[COUNT];
+    private final double[] vx = new double[COUNT];
+    private final double[] vy = new double[COUNT];
+    private final Vec2[] positions = new Vec2[COUNT];
+    private final Vec2[] velocities = new Vec2[COUNT];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < COUNT; ++i) {
+            vx[i] = i % 7 - 3;
+            vy[i] = i % 5 - 2;
+            positions[i] = new Vec2();
+            velocities[i] = new Vec2(vx[i], vy[i]);
+        }
+    }
+
+    @Benchmark
+    public Vec2 integrateAllocating() {
+        return position.add(velocity.mult(1 / 60.0));
+    }
+
+    @Benchmark
+    public Vec2 integrateLocal() {
+        scratch.set(velocity.x, velocity.y);
+        return position.addLocal(scratch.multLocal(1 / 60.0));
+    }
+
+    @Benchmark
+    public Vec2 integrateDest() {
+        return position.add(velocity.mult(1 / 60.0, scratch), position);
+    }
+
+    @Benchmark
+    public Vec2 normalize() {
+        return velocity.sub(position).normalize();
+    }
+
+    @Benchmark
+    public Vec2 normalizeDest() {
+        return velocity.sub(position, scratch).normalize(scratch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public Vec2[] integrateObjects() {
+        for (int i = 0; i < COUNT; ++i) {
+            positions[i].addScaledLocal(velocities[i], 1 / 60.0);
+        }
+        return positions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public double[] integrateKernel() {
+        Vec2Kernels.axpy(1 / 60.0, vx, x, 0, COUNT);
+        Vec2Kernels.axpy(1 / 60.0, vy, y, 0, COUNT);
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public double[] normalizeKernel() {
+        Vec2Kernels.normalize(vx, vy, 0, COUNT);
+        return vx;
+    }
+
+    @Benchmark
+    public double length() {
+        return velocity.length();
+    }
+}
@@ -0,0 +1,17 @@
+package nu.takacs.partifles.bench;
+
+/**
+ * Parses the WIDTHxHEIGHT viewport parameters used by the benchmarks.
+ */
+final class ViewPorts {
+    private ViewPorts() {
+    }
+
+    static int width(final String viewPort) {
+        return Integer.parseInt(viewPort.substring(0, viewPort.indexOf('x')));
+    }
+
+    static int height(final String viewPort) {
+        return Integer.parseInt(viewPort.substring(viewPort.indexOf('x') + 1));
+    }
+}
@@ -0,0 +1,308 @@
+package nu.takacs.partifles.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import nu.takacs.partifles.math.Vec2;
+import nu.takacs.partifles.metrics.FrameMetrics;
+import nu.takacs.partifles.metrics.MetricsReport;
+import nu.takacs.partifles.metrics.MetricsSink;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.PixelFormat;
+import nu.takacs.partifles.window.WindowContext;
+import nu.takacs.partifles.window.WindowListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+public class FrameCaptureTest {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rawFramesAreTopDownRgb() throws IOException {
+        for (final PixelFormat format : PixelFormat.values()) {
+            final Path file = folder.getRoot().toPath().resolve(format + ".rgb");
+            final var capture = new FrameCapture(new RawRgbEncoder(file), WIDTH, HEIGHT, format, 2,
+                    FrameCapture.Backpressure.BLOCK);
+
+            assertTrue(capture.submit(frame(format, 0)));
+            assertTrue(capture.submit(frame(format, 1)));
+            capture.close();
+
+            final byte[] bytes = Files.readAllBytes(file);
+            assertEquals(2 * WIDTH * HEIGHT * 3, bytes.length);
+
+            for (int frame = 0; frame < 2; ++frame) {
+                for (int row = 0; row < HEIGHT; ++row) {
+                    for (int col = 0; col < WIDTH; ++col) {
+                        final int offset = ((frame * HEIGHT + row) * WIDTH + col) * 3;
+                        final int rgb = Byte.toUnsignedInt(bytes[offset]) << 16
+                                | Byte.toUnsignedInt(bytes[offset + 1]) << 8
+                                | Byte.toUnsignedInt(bytes[offset + 2]);
+
+                        // The file's first row is the frame buffer's last
+                        assertEquals(format.name(), color(frame, col, HEIGHT - 1 - row), rgb);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void y4mHasHeaderAndPlanes() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("frames.y4m");
+        final var capture = new FrameCapture(new Y4mEncoder(file, 30), WIDTH, HEIGHT, PixelFormat.RGB888, 2,
+                FrameCapture.Backpressure.BLOCK);
+
+        final ByteBuffer white = PixelFormat.RGB888.allocate(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            PixelFormat.RGB888.put(white, i, 0xFFFFFF);
+        }
+        capture.submit(white);
+        capture.close();
+
+        final byte[] bytes = Files.readAllBytes(file);
+        final String header = "YUV4MPEG2 W4 H3 F30:1 Ip A1:1 C444\nFRAME\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+        assertEquals(header.length() + 3 * WIDTH * HEIGHT, bytes.length);
+
+        // Studio range white, neutral chroma
+        assertEquals(235, Byte.toUnsignedInt(bytes[header.length()]));
+        assertEquals(128, Byte.toUnsignedInt(bytes[header.length() + WIDTH * HEIGHT]));
+        assertEquals(128, Byte.toUnsignedInt(bytes[bytes.length - 1]));
+    }
+
+    @Test
+    public void pngSequenceHasAFilePerFrame() throws IOException {
+        final Path directory = folder.getRoot().toPath().resolve("frames");
+        final var capture = new FrameCapture(new PngSequenceEncoder(directory), WIDTH, HEIGHT,
+                PixelFormat.BGRA8888, 2, FrameCapture.Backpressure.BLOCK);
+
+        for (int frame = 0; frame < 3; ++frame) {
+            capture.submit(frame(PixelFormat.BGRA8888, frame));
+        }
+        capture.close();
+
+        for (int frame = 0; frame < 3; ++frame) {
+            final BufferedImage image = ImageIO.read(PngSequenceEncoder.framePath(directory, frame).toFile());
+            assertEquals(WIDTH, image.getWidth());
+            assertEquals(color(frame, 1, HEIGHT - 1), image.getRGB(1, 0) & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    public void dropsFramesWhileTheWriterIsBehind() throws InterruptedException {
+        final var release = new CountDownLatch(1);
+        final var encoder = new CountingEncoder(release);
+        final var capture = new FrameCapture(encoder, WIDTH, HEIGHT, PixelFormat.RGB888, 1,
+                FrameCapture.Backpressure.DROP);
+
+        assertTrue(capture.submit(frame(PixelFormat.RGB888, 0)));
+        assertFalse(capture.submit(frame(PixelFormat.RGB888, 1)));
+        assertFalse(capture.submit(frame(PixelFormat.RGB888, 2)));
+
+        release.countDown();
+        capture.close();
+
+        assertEquals(1, capture.getSubmittedCount());
+        assertEquals(2, capture.getDroppedCount());
+        assertEquals(1, capture.getEncodedCount());
+        assertTrue(encoder.closed);
+    }
+
+    @Test
+    public void blockingKeepsEveryFrame() {
+        final var encoder = new CountingEncoder(null);
+        final var capture = new FrameCapture(encoder, WIDTH, HEIGHT, PixelFormat.RGB888, 1,
+                FrameCapture.Backpressure.BLOCK);
+
+        for (int frame = 0; frame < 20; ++frame) {
+            assertTrue(capture.submit(frame(PixelFormat.RGB888, frame)));
+        }
+        capture.close();
+
+        assertEquals(20, capture.getEncodedCount());
+        assertEquals(0, capture.getDroppedCount());
+        assertEquals(20, encoder.frames);
+    }
+
+    @Test
+    public void writerFailureIsThrownOnTheRenderThread() {
+        final var capture = new FrameCapture(new FailingEncoder(), WIDTH, HEIGHT, PixelFormat.RGB888, 1,
+                FrameCapture.Backpressure.BLOCK);
+
+        try {
+            for (int frame = 0; frame < 10; ++frame) {
+                capture.submit(frame(PixelFormat.RGB888, frame));
+            }
+            capture.close();
+            fail("Expected the encoder failure");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void frameOfTheWrongSizeIsRejected() {
+        final var encoder = new CountingEncoder(null);
+        final var capture = new FrameCapture(encoder, WIDTH, HEIGHT, PixelFormat.RGB888, 1,
+                FrameCapture.Backpressure.BLOCK);
+
+        try {
+            capture.submit(PixelFormat.BGRA8888.allocate(WIDTH * HEIGHT));
+            fail("Expected the size mismatch");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(WIDTH + "x" + HEIGHT + " RGB888"));
+        }
+
+        // Nothing was taken from the ring
+        assertTrue(capture.submit(frame(PixelFormat.RGB888, 0)));
+        capture.close();
+        assertEquals(1, encoder.frames);
+    }
+
+    @Test
+    public void windowClosesMetricsWhenTheCaptureFailed() {
+        final var window = new OffscreenWindow(new FillListener(), WIDTH, HEIGHT);
+        final var metrics = new FrameMetrics(Long.MAX_VALUE);
+        final boolean[] sinkClosed = {false};
+        metrics.addSink(new MetricsSink() {
+            @Override
+            public void publish(final MetricsReport report) {
+            }
+
+            @Override
+            public void close() {
+                sinkClosed[0] = true;
+            }
+        });
+        window.setMetrics(metrics);
+        window.setCapture(new FrameCapture(new FailingEncoder(), WIDTH, HEIGHT, window.getPixelFormat(), 1,
+                FrameCapture.Backpressure.DROP));
+
+        window.init();
+        window.run(1);
+
+        try {
+            window.terminate();
+            fail("Expected the encoder failure");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(sinkClosed[0]);
+    }
+
+    @Test
+    public void offscreenWindowCapturesEveryFrame() {
+        final var encoder = new CountingEncoder(null);
+        final var window = new OffscreenWindow(new FillListener(), WIDTH, HEIGHT);
+        window.setCapture(new FrameCapture(encoder, WIDTH, HEIGHT, window.getPixelFormat(), 2,
+                FrameCapture.Backpressure.BLOCK));
+
+        window.init();
+        window.run(5);
+        window.terminate();
+
+        assertEquals(5, encoder.frames);
+        assertEquals(0x203040, encoder.lastPixel);
+        assertTrue(encoder.closed);
+    }
+
+    // Distinct colour for every pixel of every frame
+    private static int color(final int frame, final int col, final int row) {
+        return frame << 16 | row << 8 | col * 40;
+    }
+
+    private static ByteBuffer frame(final PixelFormat format, final int frame) {
+        final ByteBuffer buffer = format.allocate(WIDTH * HEIGHT);
+        for (int row = 0; row < HEIGHT; ++row) {
+            for (int col = 0; col < WIDTH; ++col) {
+                format.put(buffer, row * WIDTH + col, color(frame, col, row));
+            }
+        }
+        return buffer;
+    }
+
+    private static class CountingEncoder implements FrameEncoder {
+        private final CountDownLatch release;
+        volatile int frames = 0;
+        volatile int lastPixel = 0;
+        volatile boolean closed = false;
+
+        CountingEncoder(final CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void start(final int width, final int height) {
+        }
+
+        @Override
+        public void encode(final ByteBuffer frame, final PixelFormat format) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            lastPixel = format.get(frame, 0);
+            ++frames;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class FailingEncoder implements FrameEncoder {
+        @Override
+        public void start(final int width, final int height) {
+        }
+
+        @Override
+        public void encode(final ByteBuffer frame, final PixelFormat format) throws IOException {
+            throw new IOException("Disk full");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FillListener implements WindowListener {
+        @Override
+        public void onInit(final WindowContext windowContext) {
+        }
+
+        @Override
+        public void onRender(final WindowContext windowContext) {
+            windowContext.clear(0x20, 0x30, 0x40);
+        }
+
+        @Override
+        public void onMouseMove(final Vec2 location) {
+        }
+
+        @Override
+        public void onClose() {
+        }
+    }
+}
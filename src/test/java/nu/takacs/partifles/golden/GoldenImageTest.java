@@ -0,0 +1,285 @@
+package nu.takacs.partifles.golden;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import nu.takacs.partifles.Emitter;
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.affector.Drag;
+import nu.takacs.partifles.affector.Gravity;
+import nu.takacs.partifles.window.BlendMode;
+import nu.takacs.partifles.window.EmptyWindowListener;
+import nu.takacs.partifles.window.OffscreenWindow;
+import nu.takacs.partifles.window.PixelFormat;
+import nu.takacs.partifles.window.SpriteAtlas;
+import nu.takacs.partifles.window.WindowContext;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Renders deterministic scenes offscreen and holds them against the
+ * reference images. Particle scenes use seeded emitters and a fixed time
+ * step, so every run draws the same frames whatever the thread count or
+ * rendering mode.
+ */
+public class GoldenImageTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final double STEP_SECONDS = 1 / 60.0;
+
+    // Particle scenes go through Math.sin and friends, which may differ in the last bit between JVMs
+    private static final int PARTICLE_TOLERANCE = 2;
+    private static final double PARTICLE_MIN_PSNR = 50;
+
+    @Test
+    public void primitives() {
+        for (final PixelFormat format : PixelFormat.values()) {
+            final var window = new OffscreenWindow(new PrimitivesListener(), WIDTH, HEIGHT, format);
+            window.init();
+            window.renderFrame();
+
+            GoldenImages.assertMatches("primitives", window, 0, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    @Test
+    public void primitivesDeferred() {
+        final var window = new OffscreenWindow(new PrimitivesListener(), WIDTH, HEIGHT);
+        window.setDeferredRendering(4);
+        window.init();
+        window.renderFrame();
+        window.terminate();
+
+        GoldenImages.assertMatches("primitives", window, 0, Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void fountain() {
+        for (final int parallelism : new int[]{1, 4}) {
+            final var window = new OffscreenWindow(new EngineListener(fountain(parallelism)), WIDTH, HEIGHT);
+            window.init();
+
+            renderFrames(window, 30);
+            GoldenImages.assertMatches("fountain-30", window, PARTICLE_TOLERANCE, PARTICLE_MIN_PSNR);
+
+            renderFrames(window, 30);
+            window.terminate();
+            GoldenImages.assertMatches("fountain-60", window, PARTICLE_TOLERANCE, PARTICLE_MIN_PSNR);
+        }
+    }
+
+    @Test
+    public void emitters() {
+        for (final boolean deferred : new boolean[]{false, true}) {
+            final var window = new OffscreenWindow(new EngineListener(emitters(1)), WIDTH, HEIGHT);
+            if (deferred) {
+                window.setDeferredRendering(3);
+            }
+            window.init();
+
+            renderFrames(window, 90);
+            window.terminate();
+            GoldenImages.assertMatches("emitters-90", window, PARTICLE_TOLERANCE, PARTICLE_MIN_PSNR);
+        }
+    }
+
+    /**
+     * Every frame of a long run, drawn immediately on one thread and deferred
+     * on several, must be identical.
+     */
+    @Test
+    public void immediateAndDeferredAgreeOnEveryFrame() {
+        final int frames = 600;
+        final var immediate = new OffscreenWindow(new EngineListener(emitters(1)), WIDTH, HEIGHT);
+        final var deferred = new OffscreenWindow(new EngineListener(emitters(4)), WIDTH, HEIGHT);
+        deferred.setDeferredRendering(4);
+        immediate.init();
+        deferred.init();
+
+        for (int frame = 0; frame < frames; ++frame) {
+            immediate.renderFrame();
+            deferred.renderFrame();
+
+            final ImageDiff diff = ImageDiff.compare(
+                    GoldenImages.pixels(immediate), GoldenImages.pixels(deferred), 0);
+            assertEquals("frame " + frame + ": " + diff, 0, diff.maxError);
+        }
+
+        immediate.terminate();
+        deferred.terminate();
+    }
+
+    @Test
+    public void diffReportsErrors() {
+        final int[] expected = {0x000000, 0x102030, 0xFFFFFF, 0x808080};
+        final int[] actual = {0x000000, 0x102031, 0xF0FFFF, 0x808080};
+
+        final ImageDiff diff = ImageDiff.compare(expected, actual, 1);
+        assertEquals(15, diff.maxError);
+        assertEquals(1, diff.pixelsOverTolerance);
+        // Mean squared error of (1 + 225) / 12
+        assertEquals(10 * Math.log10(255.0 * 255.0 * 12 / 226), diff.psnr, 1e-9);
+
+        assertTrue(ImageDiff.compare(expected, expected.clone(), 0).passes(Double.POSITIVE_INFINITY));
+        assertTrue(ImageDiff.compare(expected, actual, 15).passes(20));
+    }
+
+    @Test
+    public void diffMatchesAPlainPerChannelPass() {
+        final var random = new SplittableRandom(9);
+
+        // Errors everywhere, and a few scattered ones between long equal runs
+        final int[] expected = new int[1001];
+        final int[] dense = new int[expected.length];
+        final int[] sparse = new int[expected.length];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = random.nextInt(0x1000000);
+            dense[i] = random.nextInt(4) == 0 ? random.nextInt(0x1000000) : expected[i] ^ random.nextInt(8);
+            sparse[i] = random.nextInt(150) == 0 || i == expected.length - 1
+                    ? random.nextInt(0x1000000) : expected[i];
+        }
+
+        assertMatchesPlainPass(expected, dense);
+        assertMatchesPlainPass(expected, sparse);
+    }
+
+    private static void assertMatchesPlainPass(final int[] expected, final int[] actual) {
+        for (final int tolerance : new int[]{0, 3, 100, 255, 1000}) {
+            int maxError = 0;
+            int over = 0;
+            long squares = 0;
+            for (int i = 0; i < expected.length; ++i) {
+                int error = 0;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    final int channel = Math.abs((expected[i] >>> shift & 0xFF) - (actual[i] >>> shift & 0xFF));
+                    error = Math.max(error, channel);
+                    squares += channel * channel;
+                }
+                maxError = Math.max(maxError, error);
+                over += error > tolerance ? 1 : 0;
+            }
+
+            final ImageDiff diff = ImageDiff.compare(expected, actual, tolerance);
+            assertEquals(maxError, diff.maxError);
+            assertEquals("tolerance " + tolerance, over, diff.pixelsOverTolerance);
+            assertEquals(10 * Math.log10(255.0 * 255.0 * 3 * expected.length / squares), diff.psnr, 1e-9);
+        }
+    }
+
+    private static void renderFrames(final OffscreenWindow window, final int frames) {
+        for (int frame = 0; frame < frames; ++frame) {
+            window.renderFrame();
+        }
+    }
+
+    // The original fountain, seeded
+    private static ParticleEngine fountain(final int parallelism) {
+        final var engine = new ParticleEngine(2000, parallelism);
+        engine.setSeed(1);
+        return engine;
+    }
+
+    // Every emitter shape, velocity distribution and style, with forces and blending
+    private static ParticleEngine emitters(final int parallelism) {
+        final var engine = new ParticleEngine(3000, parallelism);
+        engine.setEmissionRate(0);
+        engine.setBlendMode(BlendMode.ADDITIVE);
+        engine.addAffector(new Gravity(0, -20));
+        engine.addAffector(new Drag(0.3));
+
+        final var ellipse = new Emitter();
+        ellipse.setSeed(2);
+        ellipse.setPosition(80, 120);
+        ellipse.setShape(Emitter.Shape.ELLIPSE, 40, 20);
+        ellipse.setVelocityDistribution(Emitter.Distribution.GAUSSIAN);
+        ellipse.setVelocity(10, 40, 15, 15);
+        ellipse.setRadius(12);
+        ellipse.setColors(0x3060C0, 0x401000);
+        ellipse.setRate(150);
+        ellipse.setTtl(1, 2);
+        engine.addEmitter(ellipse);
+
+        final var point = new Emitter();
+        point.setSeed(3);
+        point.setPosition(240, 40);
+        point.setShape(Emitter.Shape.POINT, 0, 0);
+        point.setVelocity(-30, 80, 30, 10);
+        point.setRadius(6);
+        point.setColors(0xFFFF40, 0xFF2000);
+        point.setRate(300);
+        point.setTtl(1.5, 1.5);
+        point.setBudget(200);
+        engine.addEmitter(point);
+
+        final var sprites = new Emitter();
+        sprites.setSeed(4);
+        sprites.setPosition(160, 20);
+        sprites.setShape(Emitter.Shape.BOX, 60, 5);
+        sprites.setSprite(SpriteAtlas.load("partifles/flower1.png"), 0);
+        sprites.setVelocity(0, 50, 10, 10);
+        sprites.setRadius(10);
+        sprites.setColors(0xFFFFFF, 0x80FF80);
+        sprites.setRate(20);
+        sprites.setTtl(2, 3);
+        engine.addEmitter(sprites);
+
+        return engine;
+    }
+
+    private static class EngineListener extends EmptyWindowListener {
+        private final ParticleEngine engine;
+
+        private EngineListener(final ParticleEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public void onInit(final WindowContext windowContext) {
+            engine.init(windowContext);
+        }
+
+        @Override
+        public void onRender(final WindowContext windowContext) {
+            engine.render(windowContext, STEP_SECONDS);
+        }
+
+        @Override
+        public void onClose() {
+            engine.close();
+        }
+    }
+
+    private static class PrimitivesListener extends EmptyWindowListener {
+        private static final SpriteAtlas FLOWER = SpriteAtlas.load("partifles/flower1.png");
+
+        @Override
+        public void onRender(final WindowContext windowContext) {
+            windowContext.clear(20, 20, 40);
+            windowContext.drawRect(-10, 200, 100, 60, 0, 90, 30);
+            windowContext.drawRect(250, -5, 100, 50, 90, 0, 60);
+
+            // Lines of every width and direction, some leaving the frame
+            final int[] dx = {200, 173, 100, 0, -100, -173, -200, -173, -100, 0, 100, 173};
+            for (int i = 0; i < dx.length; ++i) {
+                final int dy = dx[(i + 9) % dx.length];
+                windowContext.drawLine(160, 120, 160 + dx[i], 120 + dy, 1 + i % 4, 255, 40 * (i % 6), 255 - 20 * i);
+            }
+
+            final IntFunction<BlendMode> modes = i -> BlendMode.values()[i % BlendMode.values().length];
+            for (int i = 0; i < 24; ++i) {
+                windowContext.setBlendMode(modes.apply(i / 8));
+                windowContext.drawGradientCircle(14 * i, 30 + 8 * (i % 8), 6 + 2 * i % 30, 200, 100 + 4 * i, 50);
+            }
+
+            windowContext.setBlendMode(BlendMode.ALPHA_OVER);
+            windowContext.drawColumn(300, 60, 120, 255, 255, 0);
+            windowContext.drawColumn(10, 10, new byte[]{(byte) 255, 0, 0, 0, (byte) 255, 0, 0, 0, (byte) 255});
+
+            for (int i = 0; i < 4; ++i) {
+                windowContext.drawSprite(FLOWER, 0, 40 + 70 * i, 180, 0.5f + i * 0.5f, 0xFFFFFF - 0x300000 * i, 1 - i * 0.2f);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nu.takacs.partifles.golden;
+
+import static org.junit.Assert.fail;
+
+import nu.takacs.partifles.capture.RgbRows;
+import nu.takacs.partifles.window.OffscreenWindow;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares rendered frames with reference PNGs in src/test/resources/golden.
+ * <p>
+ * A frame that is off writes the actual image and a heatmap of the
+ * differences to target/golden before failing. Running the tests with
+ * -Dgolden.update=true writes the current frames as the new references
+ * instead, for changes that are meant to alter the output.
+ */
+final class GoldenImages {
+    static final Path REFERENCE_DIRECTORY = Path.of("src", "test", "resources", "golden");
+    static final Path FAILURE_DIRECTORY = Path.of("target", "golden");
+
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+
+    private GoldenImages() {
+    }
+
+    /**
+     * The window's last frame as top down 0xRRGGBB.
+     */
+    static int[] pixels(final OffscreenWindow window) {
+        final int width = window.getWindowContext().getViewPortWidth();
+        final int height = window.getWindowContext().getViewPortHeight();
+        final int[] rgb = new int[width * height];
+
+        new RgbRows(width, height).convert(window.getFrameBuffer(), window.getPixelFormat(), rgb);
+        return rgb;
+    }
+
+    static void assertMatches(final String name, final OffscreenWindow window,
+                              final int tolerance, final double minPsnr) {
+        final int width = window.getWindowContext().getViewPortWidth();
+        final int height = window.getWindowContext().getViewPortHeight();
+        assertMatches(name, pixels(window), width, height, tolerance, minPsnr);
+    }
+
+    /**
+     * @param tolerance largest difference of any channel that still counts as equal
+     * @param minPsnr   lowest PSNR over the whole image that passes, infinite to require an exact match
+     */
+    static void assertMatches(final String name, final int[] actual, final int width, final int height,
+                              final int tolerance, final double minPsnr) {
+        final Path reference = REFERENCE_DIRECTORY.resolve(name + ".png");
+
+        if (UPDATE) {
+            write(toImage(actual, width, height), reference);
+            return;
+        }
+
+        if (!Files.exists(reference)) {
+            write(toImage(actual, width, height), FAILURE_DIRECTORY.resolve(name + "-actual.png"));
+            fail("No reference image " + reference + ", run with -Dgolden.update=true to create it");
+        }
+
+        final BufferedImage expectedImage = read(reference);
+        if (expectedImage.getWidth() != width || expectedImage.getHeight() != height) {
+            fail(name + " is " + width + "x" + height + " but the reference is "
+                    + expectedImage.getWidth() + "x" + expectedImage.getHeight());
+        }
+
+        final int[] expected = expectedImage.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] &= 0xFFFFFF;
+        }
+
+        final ImageDiff diff = ImageDiff.compare(expected, actual, tolerance);
+        if (!diff.passes(minPsnr)) {
+            final Path actualPath = FAILURE_DIRECTORY.resolve(name + "-actual.png");
+            final Path heatmapPath = FAILURE_DIRECTORY.resolve(name + "-heatmap.png");
+            write(toImage(actual, width, height), actualPath);
+            write(ImageDiff.heatmap(expected, actual, width, height, tolerance), heatmapPath);
+
+            fail(name + " differs from the reference: " + diff + ", see " + actualPath + " and " + heatmapPath);
+        }
+    }
+
+    private static BufferedImage toImage(final int[] rgb, final int width, final int height) {
+        final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, rgb, 0, width);
+        return image;
+    }
+
+    private static BufferedImage read(final Path file) {
+        try {
+            return ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+
+    private static void write(final BufferedImage image, final Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            ImageIO.write(image, "png", file.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package nu.takacs.partifles.golden;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Per channel difference of two images of 0xRRGGBB ints.
+ * <p>
+ * Arrays.mismatch, whose intrinsic compares many pixels per instruction,
+ * skips every block of pixels that are equal, so identical images, the usual
+ * case, cost one pass of it and nearly identical ones little more. Blocks that
+ * differ get a branch free pass that collects the largest channel error, the
+ * squared error for PSNR and the number of pixels over the tolerance. See
+ * ImageDiffBenchmark for what this costs per frame.
+ */
+public final class ImageDiff {
+    private static final double MAX_SQUARED = 255.0 * 255.0;
+
+    // Pixels checked for a mismatch at a time, small enough that a scattered
+    // difference does not drag in many equal pixels
+    private static final int BLOCK = 64;
+
+    // Largest difference of any channel of any pixel, 0-255
+    public final int maxError;
+
+    // Pixels with a channel off by more than the tolerance
+    public final int pixelsOverTolerance;
+
+    // Peak signal to noise ratio over all channels in dB, infinite for identical images
+    public final double psnr;
+
+    private ImageDiff(final int maxError, final int pixelsOverTolerance, final double psnr) {
+        this.maxError = maxError;
+        this.pixelsOverTolerance = pixelsOverTolerance;
+        this.psnr = psnr;
+    }
+
+    public static ImageDiff compare(final int[] expected, final int[] actual, final int tolerance) {
+        if (expected.length != actual.length) {
+            throw new IllegalArgumentException("Images have " + expected.length + " and " + actual.length + " pixels");
+        }
+
+        int maxError = 0;
+        int over = 0;
+        long squares = 0;
+
+        int i = Arrays.mismatch(expected, actual);
+        while (i >= 0 && i < expected.length) {
+            final int end = Math.min(expected.length, i + BLOCK);
+
+            for (; i < end; ++i) {
+                final int a = expected[i];
+                final int b = actual[i];
+
+                final int red = Math.abs((a >>> 16 & 0xFF) - (b >>> 16 & 0xFF));
+                final int green = Math.abs((a >>> 8 & 0xFF) - (b >>> 8 & 0xFF));
+                final int blue = Math.abs((a & 0xFF) - (b & 0xFF));
+                final int error = Math.max(red, Math.max(green, blue));
+
+                maxError = Math.max(maxError, error);
+                squares += red * red + green * green + blue * blue;
+
+                // One when error is over the tolerance, without a branch
+                over += (tolerance - error) >>> 31;
+            }
+
+            // On to the next pixel that differs
+            if (end < expected.length) {
+                final int next = Arrays.mismatch(expected, end, expected.length, actual, end, actual.length);
+                i = next < 0 ? -1 : end + next;
+            }
+        }
+
+        final double meanSquared = (double) squares / (3.0 * expected.length);
+        final double psnr = meanSquared == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(MAX_SQUARED / meanSquared);
+
+        return new ImageDiff(maxError, over, psnr);
+    }
+
+    public boolean passes(final double minPsnr) {
+        return pixelsOverTolerance == 0 && psnr >= minPsnr;
+    }
+
+    /**
+     * Where the images differ: pixels within the tolerance are the expected
+     * image dimmed to grey, the others run from dark red to yellow with the
+     * size of their error relative to the largest.
+     */
+    public static BufferedImage heatmap(final int[] expected, final int[] actual,
+                                        final int width, final int height, final int tolerance) {
+        final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int maxError = 1;
+        for (int i = 0; i < expected.length; ++i) {
+            maxError = Math.max(maxError, channelError(expected[i], actual[i]));
+        }
+
+        for (int i = 0; i < expected.length; ++i) {
+            final int error = channelError(expected[i], actual[i]);
+            final int rgb;
+
+            if (error <= tolerance) {
+                final int a = expected[i];
+                final int grey = ((a >>> 16 & 0xFF) + (a >>> 8 & 0xFF) + (a & 0xFF)) / 12;
+                rgb = grey << 16 | grey << 8 | grey;
+            } else {
+                final int heat = 255 * error / maxError;
+                rgb = (128 + heat / 2) << 16 | heat << 8;
+            }
+
+            image.setRGB(i % width, i / width, rgb);
+        }
+
+        return image;
+    }
+
+    private static int channelError(final int a, final int b) {
+        return Math.max(Math.abs((a >>> 16 & 0xFF) - (b >>> 16 & 0xFF)),
+                Math.max(Math.abs((a >>> 8 & 0xFF) - (b >>> 8 & 0xFF)), Math.abs((a & 0xFF) - (b & 0xFF))));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("max error %d, %d pixels over tolerance, PSNR %.2f dB", maxError, pixelsOverTolerance, psnr);
+    }
+}
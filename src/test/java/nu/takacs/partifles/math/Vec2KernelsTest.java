@@ -0,0 +1,123 @@
+package nu.takacs.partifles.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class Vec2KernelsTest {
+    private static final int COUNT = 1001;
+
+    @Test
+    public void axpyMatchesVec2() {
+        final var random = new SplittableRandom(1);
+        final double[] x = new double[COUNT];
+        final double[] y = new double[COUNT];
+        final double[] vx = new double[COUNT];
+        final double[] vy = new double[COUNT];
+        final Vec2[] expected = new Vec2[COUNT];
+
+        for (int i = 0; i < COUNT; ++i) {
+            x[i] = random.nextDouble() * 100;
+            y[i] = random.nextDouble() * 100;
+            vx[i] = random.nextDouble() - 0.5;
+            vy[i] = random.nextDouble() - 0.5;
+            expected[i] = new Vec2(x[i], y[i]).addScaledLocal(new Vec2(vx[i], vy[i]), 1 / 60.0);
+        }
+
+        Vec2Kernels.axpy(1 / 60.0, vx, x, 0, COUNT);
+        Vec2Kernels.axpy(1 / 60.0, vy, y, 0, COUNT);
+
+        // Bit for bit, the kernels must not change simulation results
+        for (int i = 0; i < COUNT; ++i) {
+            assertEquals(expected[i].x, x[i], 0);
+            assertEquals(expected[i].y, y[i], 0);
+        }
+    }
+
+    @Test
+    public void lengthAndNormalizeMatchVec2() {
+        final var random = new SplittableRandom(2);
+        final double[] x = new double[COUNT];
+        final double[] y = new double[COUNT];
+        final double[] length = new double[COUNT];
+
+        for (int i = 0; i < COUNT; ++i) {
+            x[i] = random.nextDouble() * 10 - 5;
+            y[i] = random.nextDouble() * 10 - 5;
+        }
+        final double[] originalX = x.clone();
+        final double[] originalY = y.clone();
+
+        Vec2Kernels.length(x, y, length, 0, COUNT);
+        Vec2Kernels.normalize(x, y, 0, COUNT);
+
+        for (int i = 0; i < COUNT; ++i) {
+            final var v = new Vec2(originalX[i], originalY[i]);
+            assertEquals(v.length(), length[i], 0);
+
+            final var unit = v.normalize();
+            assertEquals(unit.x, x[i], 0);
+            assertEquals(unit.y, y[i], 0);
+        }
+    }
+
+    @Test
+    public void normalizeLeavesZeroVectors() {
+        final double[] x = {0, 3};
+        final double[] y = {0, 4};
+
+        Vec2Kernels.normalize(x, y, 0, 2);
+
+        assertEquals(0, x[0], 0);
+        assertEquals(0, y[0], 0);
+        assertEquals(0.6, x[1], 1e-15);
+        assertEquals(0.8, y[1], 1e-15);
+    }
+
+    @Test
+    public void kernelsStayInTheirRange() {
+        final double[] x = {1, 1, 1, 1};
+        final double[] v = {1, 1, 1, 1};
+
+        Vec2Kernels.axpy(2, v, x, 1, 3);
+        Vec2Kernels.scale(10, x, 2, 4);
+        Vec2Kernels.add(-1, x, 0, 1);
+
+        assertEquals(0, x[0], 0);
+        assertEquals(3, x[1], 0);
+        assertEquals(30, x[2], 0);
+        assertEquals(10, x[3], 0);
+    }
+
+    @Test
+    public void destinationVariantsWriteIntoDest() {
+        final var a = new Vec2(3, 4);
+        final var b = new Vec2(1, 2);
+        final var dest = new Vec2();
+
+        assertSame(dest, a.add(b, dest));
+        assertEquals(4, dest.x, 0);
+        assertEquals(6, dest.y, 0);
+
+        a.sub(b, dest);
+        assertEquals(2, dest.x, 0);
+        assertEquals(2, dest.y, 0);
+
+        a.mult(2, dest);
+        assertEquals(6, dest.x, 0);
+        assertEquals(8, dest.y, 0);
+
+        a.normalize(dest);
+        assertEquals(0.6, dest.x, 1e-15);
+        assertEquals(0.8, dest.y, 1e-15);
+
+        // Aliasing the argument is fine
+        a.add(b, b);
+        assertEquals(4, b.x, 0);
+        assertEquals(6, b.y, 0);
+        assertEquals(3, a.x, 0);
+    }
+}
@@ -0,0 +1,206 @@
+package nu.takacs.partifles.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FrameMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reportsPhasesGaugesAndCounterRates() throws InterruptedException {
+        final var metrics = new FrameMetrics(Long.MAX_VALUE);
+        final var emitted = new AtomicLong(100);
+        final var sink = new CapturingSink();
+        metrics.addGauge("particles", () -> 42);
+        metrics.addCounter("emitted", emitted::get);
+        metrics.addSink(sink);
+
+        for (int frame = 0; frame < 3; ++frame) {
+            metrics.beginFrame();
+            metrics.endPhase(FramePhase.CLEAR);
+            Thread.sleep(2);
+            metrics.endPhase(FramePhase.RENDER);
+            emitted.addAndGet(50);
+            metrics.endFrame();
+        }
+        metrics.close();
+
+        assertEquals(1, sink.reports.size());
+        final double[] values = sink.reports.get(0);
+        final List<String> names = sink.names;
+
+        assertEquals(3, sink.frames);
+        assertTrue(values[names.indexOf("renderP50Ms")] >= 2);
+        assertTrue(values[names.indexOf("clearP50Ms")] < values[names.indexOf("renderP50Ms")]);
+        assertTrue(values[names.indexOf("frameMaxMs")] >= values[names.indexOf("renderMaxMs")]);
+        assertEquals(0, values[names.indexOf("swapMaxMs")], 0);
+        assertEquals(42, values[names.indexOf("particles")], 0);
+        assertTrue(values[names.indexOf("emittedPerSecond")] > 0);
+        assertTrue(sink.closed);
+    }
+
+    @Test
+    public void publishesOncePerInterval() throws InterruptedException {
+        final var metrics = new FrameMetrics(5_000_000);
+        final var sink = new CapturingSink();
+        metrics.addSink(sink);
+
+        metrics.beginFrame();
+        metrics.endFrame();
+        assertEquals(0, sink.reports.size());
+
+        Thread.sleep(10);
+        metrics.beginFrame();
+        metrics.endFrame();
+        assertEquals(1, sink.reports.size());
+        assertEquals(2, sink.frames);
+
+        // Nothing left over, so closing adds no report
+        metrics.close();
+        assertEquals(1, sink.reports.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void columnsAreFixedAfterTheFirstReport() {
+        final var metrics = new FrameMetrics(1);
+        metrics.beginFrame();
+        metrics.endFrame();
+        metrics.addGauge("late", () -> 0);
+    }
+
+    @Test
+    public void csvHasAHeaderAndARowPerReport() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("metrics.csv");
+        final var metrics = new FrameMetrics(1);
+        metrics.addGauge("particles", () -> 7);
+        metrics.addSink(new CsvMetricsSink(file));
+
+        for (int frame = 0; frame < 2; ++frame) {
+            metrics.beginFrame();
+            metrics.endFrame();
+        }
+        metrics.close();
+
+        final List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("seconds,fps,frameMeanMs,"));
+        assertTrue(lines.get(0).endsWith(",particles"));
+        assertTrue(lines.get(2).endsWith(",7.0000"));
+        assertEquals(lines.get(0).split(",").length, lines.get(1).split(",").length);
+    }
+
+    @Test
+    public void logLineNamesEveryPhase() {
+        final var metrics = new FrameMetrics(Long.MAX_VALUE);
+        final var lines = new ArrayList<String>();
+        metrics.addCounter("expired", () -> 0);
+        metrics.addSink(report -> lines.add(Slf4jMetricsSink.format(report)));
+
+        metrics.beginFrame();
+        metrics.endFrame();
+        metrics.close();
+
+        for (final FramePhase phase : FramePhase.values()) {
+            assertTrue(lines.get(0).contains(phase.name().toLowerCase() + " "));
+        }
+        assertTrue(lines.get(0).contains("expired 0/s"));
+    }
+
+    @Test
+    public void jmxExposesTheLatestReport() throws Exception {
+        final String name = "nu.takacs.partifles:type=FrameMetrics,name=test";
+        final var metrics = new FrameMetrics(Long.MAX_VALUE);
+        metrics.addGauge("particles", () -> 9);
+        metrics.addSink(new JmxMetricsSink(name));
+
+        metrics.beginFrame();
+        metrics.endFrame();
+        metrics.close();
+
+        // Closing unregisters it again
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(name)));
+
+        final var open = new FrameMetrics(1);
+        open.addGauge("particles", () -> 9);
+        open.addSink(new JmxMetricsSink(name));
+        open.beginFrame();
+        open.endFrame();
+        try {
+            assertEquals(9.0, ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(name), "particles"));
+        } finally {
+            open.close();
+        }
+    }
+
+    @Test
+    public void jmxBeanRejectsWritesAndOperations() throws Exception {
+        final String name = "nu.takacs.partifles:type=FrameMetrics,name=readOnly";
+        final var server = ManagementFactory.getPlatformMBeanServer();
+        final var metrics = new FrameMetrics(1);
+        metrics.addGauge("particles", () -> 9);
+        metrics.addSink(new JmxMetricsSink(name));
+        metrics.beginFrame();
+        metrics.endFrame();
+
+        try {
+            final var attributes = new AttributeList();
+            attributes.add(new Attribute("particles", 1.0));
+            final AttributeList rejected = server.setAttributes(new ObjectName(name), attributes);
+            assertEquals(1, rejected.size());
+            assertEquals("particles", rejected.asList().get(0).getName());
+            assertEquals(9.0, server.getAttribute(new ObjectName(name), "particles"));
+
+            try {
+                server.invoke(new ObjectName(name), "reset", new Object[0], new String[0]);
+                fail();
+            } catch (ReflectionException e) {
+                assertTrue(e.getCause() instanceof NoSuchMethodException);
+                assertEquals("reset", e.getCause().getMessage());
+            }
+        } finally {
+            metrics.close();
+        }
+    }
+
+    private static class CapturingSink implements MetricsSink {
+        final List<double[]> reports = new ArrayList<>();
+        List<String> names;
+        long frames = 0;
+        boolean closed = false;
+
+        @Override
+        public void publish(final MetricsReport report) {
+            names = report.names();
+            final double[] values = new double[names.size()];
+            report.values(values);
+            reports.add(values);
+            frames += report.getFrameCount();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
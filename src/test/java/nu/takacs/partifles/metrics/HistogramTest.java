@@ -0,0 +1,76 @@
+package nu.takacs.partifles.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        final var histogram = new Histogram();
+        for (int value = 1; value <= 100; ++value) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(99, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void largeValuesAreWithinTheirBucket() {
+        final var histogram = new Histogram();
+        final long[] values = {1000, 16_666_667, 33_000_000, 250_000_000_000L};
+
+        for (final long value : values) {
+            final var single = new Histogram();
+            single.record(value);
+            single.record(value + value / 200);
+
+            // The smaller of two values less than a bucket apart
+            final long median = single.getPercentile(50);
+            assertTrue(median >= value && median <= value + value / 64);
+        }
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Histogram.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        long previous = -1;
+        for (int index = 0; index < Histogram.BUCKET_COUNT; ++index) {
+            final long highest = Histogram.highestInBucket(index);
+
+            assertEquals(index, Histogram.index(previous + 1));
+            assertEquals(index, Histogram.index(highest));
+            previous = highest;
+        }
+        assertEquals(Histogram.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void resetAndCopy() {
+        final var histogram = new Histogram();
+        histogram.record(5);
+        histogram.record(500);
+
+        final var copy = new Histogram();
+        copy.copyFrom(histogram);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMin());
+
+        assertEquals(2, copy.getCount());
+        assertEquals(5, copy.getMin());
+        assertEquals(500, copy.getPercentile(100));
+    }
+}
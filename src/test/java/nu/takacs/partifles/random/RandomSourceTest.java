@@ -0,0 +1,90 @@
+package nu.takacs.partifles.random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class RandomSourceTest {
+    private static final int COUNT = 100001;
+
+    @Test
+    public void splitMixMatchesSplittableRandom() {
+        final var expected = new SplittableRandom(42);
+        final var actual = new SplitMix64(42);
+
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(expected.nextDouble(), actual.nextDouble(), 0);
+        }
+    }
+
+    @Test
+    public void reseedingRestartsTheStream() {
+        for (final RandomSource random : new RandomSource[]{new SplitMix64(5), new Xoshiro256PlusPlus(5)}) {
+            final double[] first = new double[100];
+            final double[] second = new double[100];
+
+            random.fillUniform(first, 0, first.length, 0, 1);
+            random.reseed(5);
+            random.fillUniform(second, 0, second.length, 0, 1);
+
+            assertArrayEquals(first, second, 0);
+        }
+    }
+
+    @Test
+    public void neighbouringSeedsGiveDifferentStreams() {
+        assertNotEquals(new Xoshiro256PlusPlus(1).nextLong(), new Xoshiro256PlusPlus(2).nextLong());
+        assertNotEquals(new SplitMix64(1).nextLong(), new SplitMix64(2).nextLong());
+    }
+
+    @Test
+    public void uniformsStayInRange() {
+        for (final RandomSource random : new RandomSource[]{new SplitMix64(1), new Xoshiro256PlusPlus(1)}) {
+            final double[] values = new double[COUNT];
+            random.fillUniform(values, 0, COUNT, -3, 5);
+
+            double sum = 0;
+            for (final double value : values) {
+                assertTrue(value >= -3 && value < 5);
+                sum += value;
+            }
+            assertEquals(1, sum / COUNT, 0.05);
+        }
+    }
+
+    @Test
+    public void gaussiansHaveTheRequestedMoments() {
+        for (final RandomSource random : new RandomSource[]{new SplitMix64(1), new Xoshiro256PlusPlus(1)}) {
+            // Odd length, the last value comes from a half used pair
+            final double[] values = new double[COUNT];
+            random.fillGaussian(values, 0, COUNT, 10, 2);
+
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (final double value : values) {
+                assertTrue(Double.isFinite(value));
+                sum += value;
+                sumOfSquares += value * value;
+            }
+
+            final double mean = sum / COUNT;
+            assertEquals(10, mean, 0.05);
+            assertEquals(2, Math.sqrt(sumOfSquares / COUNT - mean * mean), 0.05);
+        }
+    }
+
+    @Test
+    public void fillsOnlyTheRange() {
+        final double[] values = new double[10];
+        new SplitMix64(1).fillGaussian(values, 3, 6, 100, 1);
+
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(i >= 3 && i < 6, values[i] != 0);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BlendModeTest {
+
+    @Test
+    public void alphaOverInterpolates() {
+        assertEquals(0x102030, BlendMode.ALPHA_OVER.blend(0xFFFFFF, 0x102030, 255));
+        assertEquals(0xFFFFFF, BlendMode.ALPHA_OVER.blend(0xFFFFFF, 0x102030, 0));
+        assertEquals(0x808080, BlendMode.ALPHA_OVER.blend(0x000000, 0xFFFFFF, 128));
+    }
+
+    @Test
+    public void additiveSaturatesPerChannel() {
+        assertEquals(0xFF8030, BlendMode.ADDITIVE.blend(0xC04010, 0x804020, 255));
+        assertEquals(0x204060, BlendMode.ADDITIVE.blend(0x204060, 0xFFFFFF, 0));
+        assertEquals(0xFFFFFF, BlendMode.ADDITIVE.blend(0xFFFFFF, 0xFFFFFF, 255));
+    }
+
+    @Test
+    public void screenBrightensWithoutClipping() {
+        assertEquals(0xFFFFFF, BlendMode.SCREEN.blend(0xFFFFFF, 0x808080, 255));
+        assertEquals(0x808080, BlendMode.SCREEN.blend(0x000000, 0x808080, 255));
+        assertEquals(0xC0C0C0, BlendMode.SCREEN.blend(0x808080, 0x808080, 255));
+    }
+
+    @Test
+    public void maxKeepsBrightestChannel() {
+        assertEquals(0xFF4080, BlendMode.MAX.blend(0xFF0080, 0x004010, 255));
+        assertEquals(0x102030, BlendMode.MAX.blend(0x102030, 0xFFFFFF, 0));
+    }
+}
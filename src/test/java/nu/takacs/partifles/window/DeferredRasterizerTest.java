@@ -0,0 +1,131 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class DeferredRasterizerTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private static final SpriteAtlas SPRITE = checkerboardSprite();
+
+    @Test
+    public void matchesDirectRendering() {
+        final Consumer<WindowContext> scene = windowContext -> {
+            windowContext.clear(10, 10, 30);
+            windowContext.drawRect(-20, 50, 400, 30, 0, 80, 0);
+            windowContext.setBlendMode(BlendMode.ADDITIVE);
+
+            // Overlapping circles across tile corners, order matters for the blend
+            for (int i = 0; i < 40; ++i) {
+                windowContext.drawGradientCircle(7 * i, 5 * i, 10 + i, 150, 60, 0);
+            }
+
+            windowContext.setBlendMode(BlendMode.ALPHA_OVER);
+            windowContext.drawGradientCircle(64, 64, 30, 0, 0, 255);
+            windowContext.drawLine(10, 190, 290, 120, 3, 255, 255, 255);
+            windowContext.drawLine(150, 5, 170, 195, 2, 255, 0, 255);
+            windowContext.drawColumn(128, 20, 100, 255, 255, 0);
+            windowContext.drawColumn(200, 10, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+            // Sprites straddling tile edges, scaled and tinted
+            for (int i = 0; i < 10; ++i) {
+                windowContext.drawSprite(SPRITE, i % 2, 30 * i + 5, 100 + 7 * i, 1 + i / 3.0f, 0xFF80FF, 0.8f);
+            }
+        };
+
+        final var direct = new OffscreenWindow(new SceneListener(scene), WIDTH, HEIGHT);
+        direct.init();
+        direct.renderFrame();
+
+        final var deferred = new OffscreenWindow(new SceneListener(scene), WIDTH, HEIGHT);
+        deferred.setDeferredRendering(4);
+        deferred.init();
+        deferred.renderFrame();
+        deferred.terminate();
+
+        for (int i = 0; i < WIDTH * HEIGHT * 3; ++i) {
+            assertEquals("byte " + i, direct.getFrameBuffer().get(i), deferred.getFrameBuffer().get(i));
+        }
+    }
+
+    @Test
+    public void linesMatchDirectRendering() {
+        final var random = new Random(5);
+        final int[][] lines = new int[400][];
+        for (int n = 0; n < lines.length; ++n) {
+            // Mostly inside, some past the edges, steep and shallow, up to 9 pixels wide
+            lines[n] = new int[]{
+                    random.nextInt(WIDTH + 40) - 20, random.nextInt(HEIGHT + 40) - 20,
+                    random.nextInt(WIDTH + 40) - 20, random.nextInt(HEIGHT + 40) - 20,
+                    1 + random.nextInt(9)};
+        }
+
+        final Consumer<WindowContext> scene = windowContext -> {
+            windowContext.clear(0, 0, 0);
+            for (final int[] line : lines) {
+                windowContext.drawLine(line[0], line[1], line[2], line[3], line[4], 255, line[4] * 28, 0);
+            }
+        };
+
+        final var direct = new OffscreenWindow(new SceneListener(scene), WIDTH, HEIGHT);
+        direct.init();
+        direct.renderFrame();
+
+        final var deferred = new OffscreenWindow(new SceneListener(scene), WIDTH, HEIGHT);
+        deferred.setDeferredRendering(4);
+        deferred.init();
+        deferred.renderFrame();
+        deferred.terminate();
+
+        for (int i = 0; i < WIDTH * HEIGHT * 3; ++i) {
+            assertEquals("byte " + i, direct.getFrameBuffer().get(i), deferred.getFrameBuffer().get(i));
+        }
+    }
+
+    @Test
+    public void linesOnlyGoToTheTilesTheyCover() {
+        final var window = new OffscreenWindow(new EmptyWindowListener(), WIDTH, HEIGHT);
+        window.init();
+        final var deferred = new DeferredRasterizer((SoftwareRasterizer) window.getWindowContext(), 64, 1);
+
+        // Columns 98 to 203 and rows 99 to 132 are tiles 1 to 3 of rows 1 and 2
+        deferred.drawLine(100, 100, 200, 130, 3, 255, 255, 255);
+        deferred.flush();
+        assertEquals(6, deferred.getBinnedCount());
+
+        // Past the left edge it wraps around to the row above, so it takes all 5 tiles of its rows
+        deferred.drawLine(1, 100, 50, 110, 5, 255, 255, 255);
+        deferred.flush();
+        assertEquals(5, deferred.getBinnedCount());
+    }
+
+    // Two 8x8 frames of half transparent checkers in different colours
+    private static SpriteAtlas checkerboardSprite() {
+        final int[] argb = new int[16 * 8];
+        for (int row = 0; row < 8; ++row) {
+            for (int col = 0; col < 16; ++col) {
+                final int alpha = (row + col) % 2 == 0 ? 0xFF : 0x80;
+                argb[row * 16 + col] = alpha << 24 | (col < 8 ? 0xFF4000 : 0x2080FF);
+            }
+        }
+        return SpriteAtlas.fromArgb(argb, 16, 8, 8, 8, 2);
+    }
+
+    private static class SceneListener extends EmptyWindowListener {
+        private final Consumer<WindowContext> scene;
+
+        private SceneListener(final Consumer<WindowContext> scene) {
+            this.scene = scene;
+        }
+
+        @Override
+        public void onRender(final WindowContext windowContext) {
+            scene.accept(windowContext);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package nu.takacs.partifles.window;
+
+import nu.takacs.partifles.math.Vec2;
+
+/**
+ * Renders nothing, so a frame costs only what the window itself does.
+ */
+public class EmptyWindowListener implements WindowListener {
+    @Override
+    public void onInit(final WindowContext windowContext) {
+    }
+
+    @Override
+    public void onRender(final WindowContext windowContext) {
+    }
+
+    @Override
+    public void onMouseMove(final Vec2 location) {
+    }
+
+    @Override
+    public void onClose() {
+    }
+}
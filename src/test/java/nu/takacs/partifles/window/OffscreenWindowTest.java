@@ -0,0 +1,100 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import nu.takacs.partifles.ParticleEngine;
+import nu.takacs.partifles.ParticlesWindowListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OffscreenWindowTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+    private static final long INTERVAL = 1000000000L / 60;
+
+    @Test
+    public void fixedIntervalAdvancesTheClockByExactlyOneIntervalPerFrame() {
+        final var listener = new FrameTimeListener();
+        final var window = new OffscreenWindow(listener, WIDTH, HEIGHT);
+        window.setFixedFrameInterval(INTERVAL);
+        window.init();
+
+        window.renderFrame();
+        window.renderFrame();
+        window.run(5);
+        window.terminate();
+
+        assertEquals(7, listener.frameTimes.size());
+        for (int frame = 0; frame < 7; ++frame) {
+            assertEquals((frame + 1) * INTERVAL, (long) listener.frameTimes.get(frame));
+        }
+    }
+
+    @Test
+    public void zeroIntervalGoesBackToRealTime() {
+        final var listener = new FrameTimeListener();
+        final var window = new OffscreenWindow(listener, WIDTH, HEIGHT);
+        window.setFixedFrameInterval(INTERVAL);
+        window.init();
+        window.renderFrame();
+
+        window.setFixedFrameInterval(0);
+        final long before = System.nanoTime();
+        window.renderFrame();
+        final long after = System.nanoTime();
+        window.terminate();
+
+        final long frameTime = listener.frameTimes.get(1);
+        assertTrue(frameTime >= before && frameTime <= after);
+    }
+
+    @Test
+    public void virtualTimeMakesFramesIndependentOfWallClock() throws InterruptedException {
+        final var fast = particlesWindow();
+        fast.run(30);
+
+        // The same frames with the render thread stalling in between
+        final var slow = particlesWindow();
+        for (int frame = 0; frame < 30; ++frame) {
+            slow.renderFrame();
+            Thread.sleep(frame % 3);
+        }
+
+        try {
+            int lit = 0;
+            for (int i = 0; i < WIDTH * HEIGHT * 3; ++i) {
+                lit += fast.getFrameBuffer().get(i) != 0 ? 1 : 0;
+            }
+            assertTrue("no particles drawn", lit > 0);
+
+            for (int i = 0; i < WIDTH * HEIGHT * 3; ++i) {
+                assertEquals("byte " + i, fast.getFrameBuffer().get(i), slow.getFrameBuffer().get(i));
+            }
+        } finally {
+            fast.terminate();
+            slow.terminate();
+        }
+    }
+
+    // Steps its simulation on the render thread by the window's frame time
+    private static OffscreenWindow particlesWindow() {
+        final var engine = new ParticleEngine(500);
+        engine.setSeed(7);
+        final var window = new OffscreenWindow(new ParticlesWindowListener(engine, 0), WIDTH, HEIGHT);
+        window.setFixedFrameInterval(INTERVAL);
+        window.init();
+        return window;
+    }
+
+    private static class FrameTimeListener extends EmptyWindowListener {
+        final List<Long> frameTimes = new ArrayList<>();
+
+        @Override
+        public void onRender(final WindowContext windowContext) {
+            frameTimes.add(windowContext.getFrameTimeNanos());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ParticleInstanceBufferTest {
+
+    @Test
+    public void packsInterleavedInstances() {
+        final var instances = new ParticleInstanceBuffer(8);
+        final var batch = batch(3);
+        batch.setStyle(50, 150, 60, 0);
+        batch.add(1, 2, 0.5f);
+        batch.add(3, 4, 1.0f, 12.5f, 0x0080FF);
+
+        instances.add(batch, BlendMode.ADDITIVE);
+
+        assertEquals(2, instances.getInstanceCount());
+        final ByteBuffer data = instances.getData();
+        assertEquals(2 * ParticleInstanceBuffer.BYTES_PER_INSTANCE, data.remaining());
+
+        assertEquals(1, data.getFloat(0), 0);
+        assertEquals(2, data.getFloat(4), 0);
+        assertEquals(50, data.getFloat(8), 0);
+        assertEquals(0.5f, data.getFloat(12), 0);
+        assertEquals(150, data.get(16) & 0xFF);
+        assertEquals(60, data.get(17) & 0xFF);
+        assertEquals(0, data.get(18) & 0xFF);
+
+        final int second = ParticleInstanceBuffer.BYTES_PER_INSTANCE;
+        assertEquals(3, data.getFloat(second), 0);
+        assertEquals(4, data.getFloat(second + 4), 0);
+        assertEquals(12.5f, data.getFloat(second + 8), 0);
+        assertEquals(1.0f, data.getFloat(second + 12), 0);
+        assertEquals(0x00, data.get(second + 16) & 0xFF);
+        assertEquals(0x80, data.get(second + 17) & 0xFF);
+        assertEquals(0xFF, data.get(second + 18) & 0xFF);
+        assertEquals(0xFF, data.get(second + 19) & 0xFF);
+    }
+
+    @Test
+    public void everyBatchIsOneDraw() {
+        final var instances = new ParticleInstanceBuffer(8);
+        final var first = batch(2);
+        first.setStyle(50, 150, 60, 0);
+        first.add(1, 1, 1);
+        first.add(2, 2, 1);
+        final var second = batch(1);
+        second.setStyle(10, 0, 0, 255);
+        second.add(3, 3, 1);
+
+        instances.add(first, BlendMode.ADDITIVE);
+        instances.add(second, BlendMode.MAX);
+
+        assertEquals(2, instances.getDrawCount());
+        assertEquals(0, instances.getFirst(0));
+        assertEquals(2, instances.getInstances(0));
+        assertEquals(BlendMode.ADDITIVE, instances.getBlendMode(0));
+        assertEquals(2, instances.getFirst(1));
+        assertEquals(1, instances.getInstances(1));
+        assertEquals(BlendMode.MAX, instances.getBlendMode(1));
+
+        instances.reset();
+        assertEquals(0, instances.getDrawCount());
+        assertEquals(0, instances.getInstanceCount());
+    }
+
+    @Test
+    public void skipsInvisibleParticles() {
+        final var instances = new ParticleInstanceBuffer(8);
+        final var batch = batch(3);
+        batch.add(1, 1, 0);
+        batch.add(2, 2, 0.25f);
+        batch.add(3, 3, -0.5f);
+
+        instances.add(batch, BlendMode.ALPHA_OVER);
+        assertEquals(1, instances.getInstanceCount());
+        assertEquals(2, instances.getData().getFloat(0), 0);
+
+        // A batch with nothing visible does not become a draw
+        final var invisible = batch(1);
+        invisible.add(1, 1, 0);
+        instances.add(invisible, BlendMode.ALPHA_OVER);
+        assertEquals(1, instances.getDrawCount());
+    }
+
+    @Test
+    public void skipsSpriteParticles() {
+        final var instances = new ParticleInstanceBuffer(8);
+        final var atlas = SpriteAtlas.fromArgb(new int[]{0xFFFFFFFF}, 1, 1, 1, 1, 1);
+        final var batch = batch(3);
+        batch.add(1, 1, 1);
+        batch.add(2, 2, 1, 5, 0xFFFFFF, atlas, 0);
+        batch.add(3, 3, 1);
+
+        instances.add(batch, BlendMode.ALPHA_OVER);
+        assertEquals(2, instances.getInstanceCount());
+        assertEquals(3, instances.getData().getFloat(ParticleInstanceBuffer.BYTES_PER_INSTANCE), 0);
+    }
+
+    @Test
+    public void growsKeepingPackedInstances() {
+        final var instances = new ParticleInstanceBuffer(2);
+        final var batch = batch(2);
+        batch.add(7, 8, 1);
+        batch.add(9, 10, 1);
+        instances.add(batch, BlendMode.ALPHA_OVER);
+
+        final var more = batch(5);
+        for (int i = 0; i < 5; ++i) {
+            more.add(i, i, 1);
+        }
+        instances.add(more, BlendMode.ALPHA_OVER);
+
+        assertEquals(7, instances.getInstanceCount());
+        final ByteBuffer data = instances.getData();
+        final int stride = ParticleInstanceBuffer.BYTES_PER_INSTANCE;
+        assertEquals(7, data.getFloat(0), 0);
+        assertEquals(10, data.getFloat(stride + 4), 0);
+        assertEquals(4, data.getFloat(6 * stride), 0);
+    }
+
+    private static ParticleBatch batch(final int capacity) {
+        return new ParticleBatch(capacity);
+    }
+}
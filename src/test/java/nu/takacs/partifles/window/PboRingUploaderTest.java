@@ -0,0 +1,204 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PboRingUploaderTest {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 2;
+    private static final PixelFormat FORMAT = PixelFormat.RGB888;
+    private static final int FRAME_BYTES = WIDTH * HEIGHT * 3;
+
+    @Test
+    public void cyclesThroughRing() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 3, WIDTH, HEIGHT, FORMAT, false, true);
+
+        for (int frame = 0; frame < 7; ++frame) {
+            uploader.upload(frame((byte) frame), 0, HEIGHT);
+        }
+
+        assertEquals(List.of(1, 2, 3, 1, 2, 3, 1), gl.uploadedFrom);
+        assertEquals(5, gl.frameContents.get(3)[0]);
+        assertEquals(6, gl.frameContents.get(1)[0]);
+    }
+
+    @Test
+    public void waitsForFenceBeforeReusingBuffer() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 2, WIDTH, HEIGHT, FORMAT, false, true);
+
+        uploader.upload(frame((byte) 0), 0, HEIGHT);
+        uploader.upload(frame((byte) 1), 0, HEIGHT);
+        assertTrue(gl.waited.isEmpty());
+
+        // Third frame reuses the first buffer and must wait for its upload
+        uploader.upload(frame((byte) 2), 0, HEIGHT);
+        assertEquals(List.of(1L), gl.waited);
+        assertEquals(List.of(1L), gl.deletedSyncs);
+    }
+
+    @Test
+    public void persistentBuffersAreMappedOnce() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 3, WIDTH, HEIGHT, FORMAT, true, true);
+
+        for (int frame = 0; frame < 5; ++frame) {
+            uploader.upload(frame((byte) frame), 0, HEIGHT);
+        }
+
+        assertEquals(3, gl.persistentMaps);
+        assertEquals(0, gl.frameMaps);
+        assertEquals(4, gl.frameContents.get(2)[0]);
+
+        uploader.destroy();
+        assertEquals(3, gl.deletedBuffers);
+    }
+
+    @Test
+    public void unfencedMapsSynchronized() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 2, WIDTH, HEIGHT, FORMAT, false, false);
+
+        uploader.upload(frame((byte) 0), 0, HEIGHT);
+        uploader.upload(frame((byte) 1), 0, HEIGHT);
+        uploader.upload(frame((byte) 2), 0, HEIGHT);
+
+        assertEquals(0, gl.fences);
+        assertEquals(0, gl.unsynchronizedMaps);
+    }
+
+    @Test
+    public void uploadsOnlyChangedRows() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 2, WIDTH, HEIGHT, FORMAT, false, true);
+
+        uploader.upload(frame((byte) 7), 1, 2);
+
+        assertEquals(List.of(1), gl.uploadedFrom);
+        assertEquals(List.of(1), gl.uploadedRows);
+        assertEquals(List.of((long) WIDTH * 3), gl.uploadedOffsets);
+        assertEquals(7, gl.frameContents.get(1)[WIDTH * 3]);
+        assertEquals(0, gl.frameContents.get(1)[0]);
+    }
+
+    @Test
+    public void skipsUnchangedFrames() {
+        final var gl = new FakeGl();
+        final var uploader = new PboRingUploader(gl, 2, WIDTH, HEIGHT, FORMAT, false, true);
+
+        uploader.upload(frame((byte) 1), HEIGHT, 0);
+
+        assertTrue(gl.uploadedFrom.isEmpty());
+        assertEquals(0, gl.fences);
+    }
+
+    private static ByteBuffer frame(final byte value) {
+        final ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_BYTES);
+        for (int i = 0; i < FRAME_BYTES; ++i) {
+            frame.put(i, value);
+        }
+        return frame;
+    }
+
+    private static class FakeGl implements PixelBufferGl {
+        final Map<Integer, ByteBuffer> storage = new HashMap<>();
+        final Map<Integer, byte[]> frameContents = new HashMap<>();
+        final List<Integer> uploadedFrom = new ArrayList<>();
+        final List<Integer> uploadedRows = new ArrayList<>();
+        final List<Long> uploadedOffsets = new ArrayList<>();
+        final List<Long> waited = new ArrayList<>();
+        final List<Long> deletedSyncs = new ArrayList<>();
+        int nextBuffer = 1;
+        int bound = 0;
+        int persistentMaps = 0;
+        int frameMaps = 0;
+        int unsynchronizedMaps = 0;
+        int deletedBuffers = 0;
+        long fences = 0;
+
+        @Override
+        public void allocateTexture(final int width, final int height, final PixelFormat format) {
+        }
+
+        @Override
+        public int createBuffer() {
+            return nextBuffer++;
+        }
+
+        @Override
+        public void deleteBuffer(final int buffer) {
+            ++deletedBuffers;
+        }
+
+        @Override
+        public void bindUnpackBuffer(final int buffer) {
+            bound = buffer;
+        }
+
+        @Override
+        public void bufferData(final long size) {
+            storage.put(bound, ByteBuffer.allocateDirect((int) size));
+        }
+
+        @Override
+        public ByteBuffer bufferStorageMapped(final long size) {
+            ++persistentMaps;
+            bufferData(size);
+            return storage.get(bound);
+        }
+
+        @Override
+        public ByteBuffer mapForWrite(final long size, final boolean unsynchronized) {
+            ++frameMaps;
+            if (unsynchronized) {
+                ++unsynchronizedMaps;
+            }
+            return storage.get(bound);
+        }
+
+        @Override
+        public void unmap() {
+        }
+
+        @Override
+        public void texSubImageFromUnpackBuffer(final int y,
+                                                final int width,
+                                                final int height,
+                                                final PixelFormat format,
+                                                final long offset) {
+            uploadedFrom.add(bound);
+            uploadedRows.add(y);
+            uploadedOffsets.add(offset);
+
+            final byte[] contents = new byte[FRAME_BYTES];
+            final ByteBuffer source = storage.get(bound).duplicate();
+            source.clear();
+            source.get(contents);
+            frameContents.put(bound, contents);
+        }
+
+        @Override
+        public long fenceSync() {
+            return ++fences;
+        }
+
+        @Override
+        public void waitSync(final long sync) {
+            waited.add(sync);
+        }
+
+        @Override
+        public void deleteSync(final long sync) {
+            deletedSyncs.add(sync);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class RadialMaskCacheTest {
+
+    @Test
+    public void maskFallsOffFromCentre() {
+        final var mask = new RadialMask(10);
+
+        assertEquals(255, mask.getAlpha(10, 10));
+        assertEquals(128, mask.getAlpha(10, 15), 1);
+        assertEquals(0, mask.getAlpha(0, 0));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final var cache = new RadialMaskCache(2);
+
+        final RadialMask five = cache.get(5);
+        cache.get(6);
+        assertSame(five, cache.get(5));
+
+        // 6 is now the eldest and goes first
+        cache.get(7);
+        assertEquals(2, cache.size());
+        assertSame(five, cache.get(5));
+
+        final RadialMask six = cache.get(6);
+        assertNotSame(six, cache.get(7));
+    }
+}
@@ -0,0 +1,26 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RenderBackendTest {
+    private static final GlFeatures GL_33 = new GlFeatures(true, true, true, false, true, true);
+    private static final GlFeatures GL_32 = new GlFeatures(true, true, true, false, true, false);
+
+    @Test
+    public void defaultsToSoftware() {
+        assertEquals(RenderBackend.SOFTWARE, RenderBackend.select(GL_33, null));
+    }
+
+    @Test
+    public void honoursSupportedRequest() {
+        assertEquals(RenderBackend.INSTANCED, RenderBackend.select(GL_33, "INSTANCED"));
+    }
+
+    @Test
+    public void fallsBackFromUnsupportedOrUnknownRequest() {
+        assertEquals(RenderBackend.SOFTWARE, RenderBackend.select(GL_32, "INSTANCED"));
+        assertEquals(RenderBackend.SOFTWARE, RenderBackend.select(GL_33, "RAYTRACED"));
+    }
+}
@@ -0,0 +1,294 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class SoftwareRasterizerTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private OffscreenWindow window;
+    private WindowContext windowContext;
+    private ByteBuffer frameBuffer;
+
+    @Before
+    public void setUp() {
+        window = new OffscreenWindow(new EmptyWindowListener(), WIDTH, HEIGHT);
+        window.init();
+        windowContext = window.getWindowContext();
+        frameBuffer = window.getFrameBuffer();
+    }
+
+    @Test
+    public void clearFillsEveryPixel() {
+        windowContext.clear(10, 20, 30);
+
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            assertEquals(0x0A141E, pixel(i));
+        }
+    }
+
+    @Test
+    public void frameClearResetsDrawnRegions() {
+        windowContext.drawRect(5, 5, 10, 10, 255, 255, 255);
+        windowContext.drawGradientCircle(40, 30, 8, 255, 0, 0);
+        windowContext.drawLine(0, 40, 63, 45, 3, 0, 255, 0);
+
+        window.renderFrame();
+
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            assertEquals("pixel " + i, 0, pixel(i));
+        }
+    }
+
+    @Test
+    public void frameClearUsesClearColor() {
+        ((SoftwareRasterizer) windowContext).setClearColor(1, 2, 3);
+        window.renderFrame();
+
+        windowContext.drawRect(5, 5, 10, 10, 255, 255, 255);
+        window.renderFrame();
+
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            assertEquals(0x010203, pixel(i));
+        }
+    }
+
+    @Test
+    public void gradientCircleIsOpaqueInTheCentre() {
+        windowContext.drawGradientCircle(20, 20, 10, 200, 100, 50);
+
+        assertEquals(0xC86432, pixel(20 * WIDTH + 20));
+        assertEquals(0, pixel(20 * WIDTH + 31));
+    }
+
+    @Test
+    public void gradientCircleIsClippedAtTheEdges() {
+        windowContext.drawGradientCircle(0, 0, 10, 255, 255, 255);
+        windowContext.drawGradientCircle(WIDTH - 1, HEIGHT - 1, 10, 255, 255, 255);
+
+        assertEquals(0xFFFFFF, pixel(0));
+        assertEquals(0xFFFFFF, pixel(WIDTH * HEIGHT - 1));
+    }
+
+    @Test
+    public void packedFormatsDrawTheSamePixels() {
+        drawScene(windowContext);
+
+        for (final PixelFormat format : PixelFormat.values()) {
+            final var packed = new OffscreenWindow(new EmptyWindowListener(), WIDTH, HEIGHT, format);
+            packed.init();
+            drawScene(packed.getWindowContext());
+
+            for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+                assertEquals(format + " pixel " + i, pixel(i), format.get(packed.getFrameBuffer(), i));
+            }
+        }
+    }
+
+    @Test
+    public void packedFormatsAreOpaque() {
+        final var packed = new OffscreenWindow(new EmptyWindowListener(), WIDTH, HEIGHT, PixelFormat.BGRA8888);
+        packed.init();
+        packed.renderFrame();
+        packed.getWindowContext().drawRect(0, 0, 4, 4, 1, 2, 3);
+
+        final var pixels = packed.getFrameBuffer().asIntBuffer();
+        assertEquals(0xFF010203, pixels.get(0));
+        assertEquals(0xFF000000, pixels.get(WIDTH * HEIGHT - 1));
+    }
+
+    @Test
+    public void changedRowsCoverClearedAndDrawnRows() {
+        window.renderFrame();
+        assertEquals("first frame changes everything", HEIGHT, window.getChangedRows().getMaxRow());
+
+        window.renderFrame();
+        assertTrue(window.getChangedRows().isEmpty());
+
+        // The old rect gets cleared, the new one drawn
+        windowContext.drawRect(5, 10, 4, 4, 255, 255, 255);
+        window.renderFrame();
+        windowContext.drawRect(5, 20, 4, 4, 255, 255, 255);
+        final DirtyRows changed = window.getChangedRows();
+        assertEquals(10, changed.getMinRow());
+        assertEquals(24, changed.getMaxRow());
+        assertFalse(changed.isRowDirty(15));
+    }
+
+    @Test
+    public void particleBatchDrawsGradientCircles() {
+        final var batch = new ParticleBatch(2);
+        batch.setStyle(6, 200, 100, 0);
+        batch.add(10.7f, 12.2f, 1.0f);
+        batch.add(30, 20, 0.5f);
+        windowContext.drawParticles(batch);
+
+        final var reference = new OffscreenWindow(new EmptyWindowListener(), WIDTH, HEIGHT);
+        reference.init();
+        reference.getWindowContext().drawGradientCircle(10, 12, 6, 200, 100, 0);
+        reference.getWindowContext().drawGradientCircle(30, 20, 6, 100, 50, 0);
+
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            assertEquals("pixel " + i, PixelFormat.RGB888.get(reference.getFrameBuffer(), i), pixel(i));
+        }
+    }
+
+    @Test
+    public void opaqueSpriteIsCopiedUpright() {
+        // 2x2, red and green on the top row of the image, blue and white below
+        final var atlas = SpriteAtlas.fromArgb(new int[]{
+                0xFFFF0000, 0xFF00FF00,
+                0xFF0000FF, 0xFFFFFFFF}, 2, 2, 2, 2, 1);
+
+        windowContext.drawSprite(atlas, 0, 11, 21, 1, 0xFFFFFF, 1);
+
+        // Row 20 is the bottom of the sprite
+        assertEquals(0x0000FF, pixel(20 * WIDTH + 10));
+        assertEquals(0xFFFFFF, pixel(20 * WIDTH + 11));
+        assertEquals(0xFF0000, pixel(21 * WIDTH + 10));
+        assertEquals(0x00FF00, pixel(21 * WIDTH + 11));
+        assertEquals(0, pixel(22 * WIDTH + 10));
+    }
+
+    @Test
+    public void scaledSpriteRepeatsPixels() {
+        final var atlas = SpriteAtlas.fromArgb(new int[]{0xFFFF0000, 0xFF00FF00}, 2, 1, 2, 1, 1);
+
+        windowContext.drawSprite(atlas, 0, 20, 10, 3, 0xFFFFFF, 1);
+
+        for (int col = 17; col < 20; ++col) {
+            assertEquals(0xFF0000, pixel(10 * WIDTH + col));
+            assertEquals(0xFF0000, pixel(9 * WIDTH + col));
+        }
+        for (int col = 20; col < 23; ++col) {
+            assertEquals(0x00FF00, pixel(10 * WIDTH + col));
+        }
+        assertEquals(0, pixel(10 * WIDTH + 23));
+    }
+
+    @Test
+    public void spriteIsTintedAndBlendedByAlpha() {
+        windowContext.clear(0, 0, 200);
+        final var atlas = SpriteAtlas.fromArgb(new int[]{0xFFFFFFFF, 0x00FFFFFF, 0x80FFFFFF}, 3, 1, 3, 1, 1);
+
+        windowContext.drawSprite(atlas, 0, 1, 0, 1, 0xFF8000, 0.5f);
+
+        // Half of the tint over half of the background
+        final int tinted = pixel(0);
+        assertEquals(0x80, tinted >>> 16, 1);
+        assertEquals(0x40, tinted >>> 8 & 0xFF, 1);
+        assertEquals(100, tinted & 0xFF, 1);
+
+        // Fully transparent pixels leave the frame alone
+        assertEquals(200, pixel(1));
+
+        // Quarter coverage
+        final int faint = pixel(2);
+        assertEquals(0x40, faint >>> 16, 1);
+        assertEquals(150, faint & 0xFF, 1);
+    }
+
+    @Test
+    public void spriteIsClippedAtTheEdges() {
+        final int[] argb = new int[16 * 16];
+        java.util.Arrays.fill(argb, 0xFF102030);
+        final var atlas = SpriteAtlas.fromArgb(argb, 16, 16, 16, 16, 1);
+
+        windowContext.drawSprite(atlas, 0, 0, 0, 1, 0xFFFFFF, 1);
+        windowContext.drawSprite(atlas, 0, WIDTH, HEIGHT, 2, 0xFFFFFF, 1);
+
+        assertEquals(0x102030, pixel(0));
+        assertEquals(0x102030, pixel(7 * WIDTH + 7));
+        assertEquals(0, pixel(8 * WIDTH + 8));
+        assertEquals(0x102030, pixel(WIDTH * HEIGHT - 1));
+    }
+
+    @Test
+    public void spriteParticlesUseTheirFrame() {
+        // Two frames side by side, red then green
+        final var atlas = SpriteAtlas.fromArgb(new int[]{
+                0xFFFF0000, 0xFFFF0000, 0xFF00FF00, 0xFF00FF00}, 4, 1, 2, 1, 2);
+        final var batch = new ParticleBatch(2);
+        batch.add(5, 5, 1, 1, 0xFFFFFF, atlas, 1);
+        batch.add(9, 5, 1, 1, 0xFFFFFF, atlas, 0);
+        assertTrue(batch.hasSprites());
+
+        windowContext.drawParticles(batch);
+
+        assertEquals(0x00FF00, pixel(5 * WIDTH + 5));
+        assertEquals(0xFF0000, pixel(5 * WIDTH + 9));
+    }
+
+    @Test
+    public void mixedBatchStillInstancesItsCircles() {
+        final var instances = new ParticleInstanceBuffer(4);
+        final var instancing = new InstancingRasterizer(instances);
+        final var deferredTarget = new InstancingRasterizer(instances);
+        final var deferred = new DeferredRasterizer(deferredTarget, 16, 2);
+
+        final var atlas = SpriteAtlas.fromArgb(new int[]{0xFF00FF00}, 1, 1, 1, 1, 1);
+        final var batch = new ParticleBatch(3);
+        batch.add(5, 5, 1, 4, 0xFF0000);
+        batch.add(20, 20, 1, 0.5f, 0xFFFFFF, atlas, 0);
+        batch.add(30, 5, 1, 4, 0x0000FF);
+
+        for (final WindowContext context : new WindowContext[]{instancing, deferred}) {
+            instances.reset();
+            context.drawParticles(batch);
+            if (context == deferred) {
+                deferred.flush();
+            }
+
+            // The circles went to the GPU, the sprite into the frame buffer
+            assertEquals(2, instances.getInstanceCount());
+            assertEquals(30, instances.getData().getFloat(ParticleInstanceBuffer.BYTES_PER_INSTANCE), 0);
+        }
+
+        for (final SoftwareRasterizer target : new SoftwareRasterizer[]{instancing, deferredTarget}) {
+            assertEquals(0x00FF00, PixelFormat.BGRA8888.get(target.frameBuffer, 20 * WIDTH + 20));
+            assertEquals(0, PixelFormat.BGRA8888.get(target.frameBuffer, 5 * WIDTH + 5));
+        }
+        deferred.shutdown();
+    }
+
+    private static void drawScene(final WindowContext context) {
+        context.clear(10, 20, 30);
+        context.drawRect(5, 5, 10, 10, 255, 128, 1);
+        context.drawGradientCircle(40, 30, 8, 200, 60, 0);
+        context.setBlendMode(BlendMode.ADDITIVE);
+        context.drawGradientCircle(44, 30, 8, 0, 60, 200);
+        context.drawLine(0, 40, 63, 45, 3, 0, 255, 0);
+    }
+
+    private int pixel(final int i) {
+        return window.getPixelFormat().get(frameBuffer, i);
+    }
+
+    // Takes particle batches the way the GLFW window does with the instanced backend
+    private static class InstancingRasterizer extends SoftwareRasterizer {
+        private final ParticleInstanceBuffer instances;
+
+        private InstancingRasterizer(final ParticleInstanceBuffer instances) {
+            super(PixelFormat.BGRA8888.allocate(WIDTH * HEIGHT), PixelFormat.BGRA8888, WIDTH, HEIGHT);
+            this.instances = instances;
+        }
+
+        @Override
+        protected boolean drawParticleBatch(final ParticleBatch batch, final BlendMode blendMode) {
+            instances.add(batch, blendMode);
+            return true;
+        }
+
+        @Override
+        public boolean isKeyDown(final Key key) {
+            return false;
+        }
+    }
+}
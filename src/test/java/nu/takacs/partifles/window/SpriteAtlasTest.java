@@ -0,0 +1,64 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SpriteAtlasTest {
+
+    @Test
+    public void loadsBundledImagePremultiplied() {
+        final var atlas = SpriteAtlas.load("partifles/flower1.png");
+
+        assertEquals(32, atlas.getFrameWidth());
+        assertEquals(32, atlas.getFrameHeight());
+        assertEquals(1, atlas.getFrameCount());
+
+        int visible = 0;
+        for (int row = 0; row < 32; ++row) {
+            for (int col = 0; col < 32; ++col) {
+                final int pixel = atlas.getPixel(0, col, row);
+                final int alpha = pixel >>> 24;
+
+                assertTrue((pixel >>> 16 & 0xFF) <= alpha);
+                assertTrue((pixel >>> 8 & 0xFF) <= alpha);
+                assertTrue((pixel & 0xFF) <= alpha);
+                if (alpha > 0) {
+                    ++visible;
+                }
+            }
+        }
+        assertTrue(visible > 0);
+    }
+
+    @Test
+    public void framesAreNumberedInReadingOrder() {
+        // 2x2 grid of 1 pixel frames, the image's top left is frame 0
+        final var atlas = SpriteAtlas.fromArgb(new int[]{
+                0xFF000001, 0xFF000002,
+                0xFF000003, 0xFF000004}, 2, 2, 1, 1, 3);
+
+        assertEquals(3, atlas.getFrameCount());
+        assertEquals(0xFF000001, atlas.getPixel(0, 0, 0));
+        assertEquals(0xFF000002, atlas.getPixel(1, 0, 0));
+        assertEquals(0xFF000003, atlas.getPixel(2, 0, 0));
+    }
+
+    @Test
+    public void premultipliesTranslucentPixels() {
+        final var atlas = SpriteAtlas.fromArgb(new int[]{0x80FF8000}, 1, 1, 1, 1, 1);
+
+        assertEquals(0x80804000, atlas.getPixel(0, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFramesThatDoNotTileTheImage() {
+        SpriteAtlas.fromArgb(new int[6], 3, 2, 2, 2, 1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void missingResourceFails() {
+        SpriteAtlas.load("partifles/no-such-sprite.png");
+    }
+}
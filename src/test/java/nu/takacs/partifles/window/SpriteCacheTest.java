@@ -0,0 +1,112 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SpriteCacheTest {
+    private static final String FLOWER = "partifles/flower1.png";
+    private static final String UNICORN = "partifles/unicorn.jpg";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void secondRunReadsTheDecodedImage() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final var first = new SpriteCache(directory);
+        first.load(FLOWER);
+        assertEquals(0, first.getHitCount());
+        assertEquals(1, first.getMissCount());
+        assertEquals(1, entries(directory).size());
+
+        final var second = new SpriteCache(directory);
+        assertSamePixels(SpriteAtlas.load(FLOWER), second.load(FLOWER));
+        assertEquals(1, second.getHitCount());
+        assertEquals(0, second.getMissCount());
+    }
+
+    @Test
+    public void imagesAreReadOncePerCache() {
+        final var cache = new SpriteCache(folder.getRoot().toPath());
+
+        cache.load(FLOWER);
+        final SpriteAtlas framed = cache.load(FLOWER, 16, 16, 3);
+
+        assertEquals(3, framed.getFrameCount());
+        assertEquals(1, cache.getMissCount() + cache.getHitCount());
+    }
+
+    @Test
+    public void unreadableEntryIsReplaced() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        new SpriteCache(directory).load(FLOWER);
+
+        final Path entry = entries(directory).get(0);
+        Files.write(entry, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+
+        final var cache = new SpriteCache(directory);
+        assertSamePixels(SpriteAtlas.load(FLOWER), cache.load(FLOWER));
+        assertEquals(1, cache.getMissCount());
+
+        final var repaired = new SpriteCache(directory);
+        repaired.load(FLOWER);
+        assertEquals(1, repaired.getHitCount());
+    }
+
+    @Test
+    public void preloadDecodesInParallel() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+        final var cache = new SpriteCache(directory);
+
+        cache.preload(List.of(FLOWER, UNICORN, FLOWER), 4);
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, entries(directory).size());
+
+        // Loading after the preload neither decodes nor reads the disk
+        assertSamePixels(SpriteAtlas.load(UNICORN), cache.load(UNICORN));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void preloadFailsOnMissingResource() {
+        new SpriteCache(folder.getRoot().toPath()).preload(List.of(FLOWER, "partifles/no-such-sprite.png"), 2);
+    }
+
+    @Test
+    public void unwritableDirectoryStillLoads() throws IOException {
+        // A file where the directory should be
+        final Path blocked = folder.newFile("blocked").toPath();
+
+        final var cache = new SpriteCache(blocked);
+        assertSamePixels(SpriteAtlas.load(FLOWER), cache.load(FLOWER));
+    }
+
+    private static List<Path> entries(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".sprite")).collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSamePixels(final SpriteAtlas expected, final SpriteAtlas actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int row = 0; row < expected.getHeight(); ++row) {
+            for (int col = 0; col < expected.getWidth(); ++col) {
+                assertEquals(expected.getPixel(0, col, row), actual.getPixel(0, col, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package nu.takacs.partifles.window;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class UploadPathTest {
+    private static final GlFeatures GL_44 = new GlFeatures(true, true, true, true, true, true);
+    private static final GlFeatures GL_32 = new GlFeatures(true, true, true, false, true, false);
+    private static final GlFeatures GL_11 = new GlFeatures(false, false, false, false, false, false);
+
+    @Test
+    public void picksBestSupportedPath() {
+        assertEquals(UploadPath.PBO_PERSISTENT, UploadPath.select(GL_44, null));
+        assertEquals(UploadPath.PBO_MAP_RANGE, UploadPath.select(GL_32, null));
+        assertEquals(UploadPath.TEX_SUB_IMAGE, UploadPath.select(GL_11, null));
+    }
+
+    @Test
+    public void honoursSupportedRequest() {
+        assertEquals(UploadPath.TEX_IMAGE, UploadPath.select(GL_44, "TEX_IMAGE"));
+        assertEquals(UploadPath.PBO_MAP_RANGE, UploadPath.select(GL_44, "PBO_MAP_RANGE"));
+    }
+
+    @Test
+    public void fallsBackFromUnsupportedOrUnknownRequest() {
+        assertEquals(UploadPath.TEX_SUB_IMAGE, UploadPath.select(GL_11, "PBO_PERSISTENT"));
+        assertEquals(UploadPath.PBO_MAP_RANGE, UploadPath.select(GL_32, "NO_SUCH_PATH"));
+    }
+}